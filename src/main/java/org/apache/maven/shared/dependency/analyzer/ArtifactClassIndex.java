@@ -0,0 +1,199 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Inverted index from class name to the artifacts containing it, built once from an artifact to classes map.
+ * <p>
+ * Lookups resolve to the first artifact in the iteration order of the source map, which matches the linear scan
+ * previously done by {@link DefaultProjectDependencyAnalyzer#findArtifactForClassName(Map, String)}. Classes found in
+ * more than one artifact (split packages, shaded copies) keep every candidate so they can still be reported.
+ * <p>
+ * Class names are interned into a {@link ClassSymbolTable}, possibly shared with the scanning of the project classes,
+ * and artifacts are held in an array indexed by class identifier.
+ *
+ * @see DefaultProjectDependencyAnalyzer#buildArtifactClassIndex(org.apache.maven.project.MavenProject)
+ */
+public class ArtifactClassIndex
+{
+    // fields -----------------------------------------------------------------
+
+    private final ClassSymbolTable symbols;
+
+    private Artifact[] artifactById;
+
+    private int size;
+
+    private final Map<String, List<Artifact>> candidatesByClass;
+
+    // constructors -----------------------------------------------------------
+
+    public ArtifactClassIndex( Map<Artifact, Set<String>> artifactClassMap )
+    {
+        this( artifactClassMap, new ClassSymbolTable() );
+    }
+
+    /**
+     * @param artifactClassMap the classes of each artifact, in artifact order
+     * @param symbols the symbol table interning the class names, not sealed
+     * @throws IllegalStateException if the symbol table is sealed, such as the table of a finished analysis
+     */
+    public ArtifactClassIndex( Map<Artifact, Set<String>> artifactClassMap, ClassSymbolTable symbols )
+    {
+        if ( symbols.isSealed() )
+        {
+            throw new IllegalStateException( "Cannot index artifact classes into a sealed symbol table" );
+        }
+
+        this.symbols = symbols;
+
+        int size = 0;
+        for ( Set<String> classes : artifactClassMap.values() )
+        {
+            size += classes.size();
+        }
+
+        artifactById = new Artifact[symbols.size() + size];
+        candidatesByClass = new HashMap<String, List<Artifact>>();
+
+        for ( Map.Entry<Artifact, Set<String>> entry : artifactClassMap.entrySet() )
+        {
+            Artifact artifact = entry.getKey();
+
+            for ( String className : entry.getValue() )
+            {
+                int id = symbols.intern( className );
+                if ( id < 0 )
+                {
+                    // sealed by another thread meanwhile
+                    throw new IllegalStateException( "Cannot index artifact classes into a sealed symbol table" );
+                }
+                if ( id >= artifactById.length )
+                {
+                    // another thread interned classes meanwhile
+                    artifactById = Arrays.copyOf( artifactById, Math.max( id + 1, artifactById.length * 2 ) );
+                }
+
+                Artifact first = artifactById[id];
+                if ( first == null )
+                {
+                    artifactById[id] = artifact;
+                    this.size++;
+                }
+                else if ( first != artifact )
+                {
+                    String name = symbols.getName( id );
+                    List<Artifact> candidates = candidatesByClass.get( name );
+                    if ( candidates == null )
+                    {
+                        candidates = new ArrayList<Artifact>( 2 );
+                        candidates.add( first );
+                        candidatesByClass.put( name, candidates );
+                    }
+                    candidates.add( artifact );
+                }
+            }
+        }
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @param className the fully qualified class name
+     * @return the first artifact containing the class, or <code>null</code> if no artifact contains it
+     */
+    public Artifact findArtifact( String className )
+    {
+        return findArtifact( symbols.lookup( className ) );
+    }
+
+    /**
+     * @param classId the identifier of the class in the symbol table of this index
+     * @return the first artifact containing the class, or <code>null</code> if no artifact contains it
+     */
+    public Artifact findArtifact( int classId )
+    {
+        return classId >= 0 && classId < artifactById.length ? artifactById[classId] : null;
+    }
+
+    /**
+     * Finds the artifact of a class referenced by a class file, probing the index with the modified UTF8 bytes of its
+     * name: no string is created.
+     *
+     * @param b the bytes holding the class name, in internal form or dotted
+     * @param offset the offset of the encoded class name in <code>b</code>
+     * @param length the number of bytes of the encoded class name
+     * @return the first artifact containing the class, or <code>null</code> if no artifact contains it
+     */
+    public Artifact findArtifact( byte[] b, int offset, int length )
+    {
+        return findArtifact( symbols.lookup( b, offset, length ) );
+    }
+
+    /**
+     * @param className the fully qualified class name
+     * @return every artifact containing the class, in artifact order, or an empty list
+     */
+    public List<Artifact> findArtifacts( String className )
+    {
+        List<Artifact> candidates = candidatesByClass.get( className );
+        if ( candidates != null )
+        {
+            return Collections.unmodifiableList( candidates );
+        }
+
+        Artifact artifact = findArtifact( className );
+        return artifact == null ? Collections.<Artifact>emptyList() : Collections.singletonList( artifact );
+    }
+
+    /**
+     * @return the classes found in more than one artifact, mapped to all their candidate artifacts in artifact order
+     */
+    public Map<String, List<Artifact>> getAmbiguousClasses()
+    {
+        return Collections.unmodifiableMap( candidatesByClass );
+    }
+
+    /**
+     * @return the symbol table interning the class names of this index
+     */
+    public ClassSymbolTable getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * @return the number of distinct indexed class names
+     */
+    public int size()
+    {
+        return size;
+    }
+}
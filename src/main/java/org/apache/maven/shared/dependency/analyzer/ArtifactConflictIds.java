@@ -0,0 +1,87 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Gives the artifacts of an analysis dense identifiers, equal for the artifacts of the same
+ * {@link Artifact#getDependencyConflictId() conflict id}: the version does not matter, as there can be only one for a
+ * given artifact. The conflict id of an artifact instance is computed once, so that sets of artifacts are compared as
+ * {@link BitSet}s of identifiers.
+ */
+final class ArtifactConflictIds
+{
+    // fields -----------------------------------------------------------------
+
+    private final Map<Artifact, Integer> idsByArtifact = new IdentityHashMap<Artifact, Integer>();
+
+    private final Map<String, Integer> idsByConflictId = new HashMap<String, Integer>();
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @param artifact an artifact
+     * @return the identifier of its conflict id, given on the first call
+     */
+    int getId( Artifact artifact )
+    {
+        Integer id = idsByArtifact.get( artifact );
+        if ( id == null )
+        {
+            String conflictId = artifact.getDependencyConflictId();
+            id = idsByConflictId.get( conflictId );
+            if ( id == null )
+            {
+                id = idsByConflictId.size();
+                idsByConflictId.put( conflictId, id );
+            }
+            idsByArtifact.put( artifact, id );
+        }
+        return id;
+    }
+
+    /**
+     * @param artifacts some artifacts
+     * @return the identifiers of their conflict ids
+     */
+    BitSet getIds( Iterable<Artifact> artifacts )
+    {
+        BitSet ids = new BitSet();
+        for ( Artifact artifact : artifacts )
+        {
+            ids.set( getId( artifact ) );
+        }
+        return ids;
+    }
+
+    /**
+     * @return the number of identifiers given so far
+     */
+    int size()
+    {
+        return idsByConflictId.size();
+    }
+}
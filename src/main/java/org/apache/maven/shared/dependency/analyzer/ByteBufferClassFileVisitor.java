@@ -0,0 +1,43 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * A class file visitor that can be given the content of class files as buffers rather than streams, saving the copy
+ * of every class into a new array.
+ * <p>
+ * Buffers are only valid for the duration of the call: they may be reused for the next class file or be a slice of a
+ * memory mapped jar, so their content must be copied if kept.
+ *
+ * @see ClassFileVisitorUtils#accept(java.net.URL, java.util.function.Supplier, int)
+ */
+public interface ByteBufferClassFileVisitor
+    extends ClassFileVisitor
+{
+    /**
+     * Visits a class file.
+     *
+     * @param className the class name, with dots
+     * @param buffer the class file, from its position to its limit
+     */
+    void visitClass( String className, ByteBuffer buffer );
+}
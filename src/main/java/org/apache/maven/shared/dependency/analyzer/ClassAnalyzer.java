@@ -21,6 +21,7 @@ package org.apache.maven.shared.dependency.analyzer;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.Set;
 
 /**
@@ -39,4 +40,19 @@ public interface ClassAnalyzer
 
     Set<String> analyze( URL url )
         throws IOException;
+
+    /**
+     * Gets the classes contained in a library given as a path, which is a jar file or an exploded directory. The
+     * analyzers of this library read the path directly, their {@link #analyze(URL)} delegating here for
+     * <code>file</code> URLs; the default implementation analyzes the URL of the path instead.
+     *
+     * @param path the jar file or directory
+     * @return the classes contained in the library
+     * @throws IOException if the library cannot be read
+     */
+    default Set<String> analyze( Path path )
+        throws IOException
+    {
+        return analyze( path.toUri().toURL() );
+    }
 }
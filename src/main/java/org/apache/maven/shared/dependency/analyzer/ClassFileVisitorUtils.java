@@ -21,15 +21,30 @@ package org.apache.maven.shared.dependency.analyzer;
 
 import org.codehaus.plexus.util.DirectoryScanner;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
+import java.util.zip.Inflater;
 
 
 /**
@@ -44,6 +59,15 @@ public final class ClassFileVisitorUtils
 
     private static final String[] CLASS_INCLUDES = { "**/*.class" };
 
+    /**
+     * Class files are split in about this many ranges per thread, to balance the load of uneven class sizes.
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
+    private static final int MIN_RANGE_SIZE = 64;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     // constructors -----------------------------------------------------------
 
     private ClassFileVisitorUtils()
@@ -56,43 +80,428 @@ public final class ClassFileVisitorUtils
     public static void accept( URL url, ClassFileVisitor visitor )
         throws IOException
     {
-        if ( url.getPath().endsWith( ".jar" ) )
+        Path path = toPath( url );
+
+        if ( path != null )
         {
-            acceptJar( url, visitor );
+            accept( path.toFile(), visitor, "URL: " + url );
         }
-        else if ( url.getProtocol().equalsIgnoreCase( "file" ) )
+        else if ( url.getPath().endsWith( ".jar" ) )
         {
-            try
+            acceptJar( url.openStream(), visitor );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Cannot accept visitor on URL: " + url );
+        }
+    }
+
+    /**
+     * Visits the classes of a local library.
+     *
+     * @param path the jar file or directory
+     * @param visitor the visitor of every class file
+     * @throws IOException if a class file cannot be read
+     */
+    public static void accept( Path path, ClassFileVisitor visitor )
+        throws IOException
+    {
+        accept( path.toFile(), visitor, "path: " + path );
+    }
+
+    /**
+     * Visits the classes of a library on several threads, as {@link #accept(Path, Supplier, int)} does for a local
+     * library. A remote library is visited on the calling thread.
+     *
+     * @param url the jar file or directory
+     * @param visitorFactory creates the visitor of a range of class files
+     * @param parallelism the number of threads, <code>1</code> to visit every class file on the calling thread
+     * @return the visitors created, in class file order, so that callers merge their results deterministically
+     * @throws IOException if a class file cannot be read
+     */
+    public static <T extends ClassFileVisitor> List<T> accept( URL url, Supplier<T> visitorFactory, int parallelism )
+        throws IOException
+    {
+        Path path = toPath( url );
+
+        if ( path != null )
+        {
+            return accept( path.toFile(), visitorFactory, parallelism, "URL: " + url );
+        }
+
+        T visitor = visitorFactory.get();
+        accept( url, visitor );
+        return Collections.singletonList( visitor );
+    }
+
+    /**
+     * Visits the classes of a local library on several threads. Class files are split into contiguous ranges, each
+     * visited on a single thread by a visitor of its own, so visitors need not be thread-safe. Jars are read at random
+     * through their central directory, skipping resources.
+     * <p>
+     * A {@link ByteBufferClassFileVisitor} is given buffers rather than streams: class files of directories are read
+     * into a buffer reused by the range, and class files stored uncompressed in a jar are slices of its mapping, which
+     * is released once the jar is visited.
+     *
+     * @param path the jar file or directory
+     * @param visitorFactory creates the visitor of a range of class files
+     * @param parallelism the number of threads, <code>1</code> to visit every class file on the calling thread
+     * @return the visitors created, in class file order, so that callers merge their results deterministically
+     * @throws IOException if a class file cannot be read
+     */
+    public static <T extends ClassFileVisitor> List<T> accept( Path path, Supplier<T> visitorFactory, int parallelism )
+        throws IOException
+    {
+        return accept( path.toFile(), visitorFactory, parallelism, "path: " + path );
+    }
+
+    /**
+     * Visits the names of the classes in a library, as {@link #accept(URL, ClassFileVisitor)} would, without opening
+     * any class file: directories are only listed and local jars are read from their central directory.
+     *
+     * @param url the jar file or directory
+     * @param visitor the visitor of class names
+     * @throws IOException if the library cannot be read
+     */
+    public static void acceptClassNames( URL url, ClassNameVisitor visitor )
+        throws IOException
+    {
+        Path path = toPath( url );
+
+        if ( path != null )
+        {
+            acceptClassNames( path.toFile(), visitor, "URL: " + url );
+        }
+        else if ( url.getPath().endsWith( ".jar" ) )
+        {
+            acceptJarStreamClassNames( url, visitor );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Cannot accept visitor on URL: " + url );
+        }
+    }
+
+    /**
+     * Visits the names of the classes in a local library, as {@link #accept(Path, ClassFileVisitor)} would, without
+     * opening any class file.
+     *
+     * @param path the jar file or directory
+     * @param visitor the visitor of class names
+     * @throws IOException if the library cannot be read
+     */
+    public static void acceptClassNames( Path path, ClassNameVisitor visitor )
+        throws IOException
+    {
+        acceptClassNames( path.toFile(), visitor, "path: " + path );
+    }
+
+    /**
+     * @param url a library URL
+     * @return the local path of a <code>file</code> URL, or <code>null</code> for any other protocol
+     */
+    public static Path toPath( URL url )
+    {
+        return url.getProtocol().equalsIgnoreCase( "file" ) ? toFile( url ).toPath() : null;
+    }
+
+    // private methods --------------------------------------------------------
+
+    /**
+     * Visits the classes of a local library, which the message of an unsupported file names as given.
+     */
+    private static void accept( File file, ClassFileVisitor visitor, String library )
+        throws IOException
+    {
+        if ( isJar( file ) )
+        {
+            acceptJar( new FileInputStream( file ), visitor );
+        }
+        else if ( file.isDirectory() )
+        {
+            acceptDirectory( file, visitor );
+        }
+        else if ( file.exists() )
+        {
+            throw new IllegalArgumentException( "Cannot accept visitor on " + library );
+        }
+    }
+
+    private static <T extends ClassFileVisitor> List<T> accept( File file, Supplier<T> visitorFactory,
+                                                               int parallelism, String library )
+        throws IOException
+    {
+        if ( parallelism > 1 )
+        {
+            if ( isJar( file ) )
+            {
+                if ( file.isFile() )
+                {
+                    return acceptJar( file, visitorFactory, parallelism );
+                }
+            }
+            else if ( file.isDirectory() )
+            {
+                return acceptDirectory( file, visitorFactory, parallelism );
+            }
+        }
+
+        T visitor = visitorFactory.get();
+        accept( file, visitor, library );
+        return Collections.singletonList( visitor );
+    }
+
+    private static void acceptClassNames( File file, ClassNameVisitor visitor, String library )
+        throws IOException
+    {
+        if ( isJar( file ) )
+        {
+            acceptJarClassNames( file, visitor );
+        }
+        else if ( file.isDirectory() )
+        {
+            acceptDirectoryClassNames( file, visitor );
+        }
+        else if ( file.exists() )
+        {
+            throw new IllegalArgumentException( "Cannot accept visitor on " + library );
+        }
+    }
+
+    private static boolean isJar( File file )
+    {
+        return file.getName().endsWith( ".jar" ) && !file.isDirectory();
+    }
+
+    private static void acceptJar( InputStream stream, ClassFileVisitor visitor )
+        throws IOException
+    {
+        JarInputStream in = new JarInputStream( stream );
+        try
+        {
+            JarEntry entry = null;
+
+            while ( ( entry = in.getNextJarEntry() ) != null )
+            {
+                String name = entry.getName();
+
+                // ignore files like package-info.class and module-info.class
+                if ( name.endsWith( ".class" ) && name.indexOf( '-' ) == -1 )
+                {
+                    visitClass( name, in, visitor );
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void acceptDirectory( File directory, ClassFileVisitor visitor )
+        throws IOException
+    {
+        String[] paths = scanDirectory( directory );
+
+        acceptDirectory( directory, paths, 0, paths.length, visitor );
+    }
+
+    private static <T extends ClassFileVisitor> List<T> acceptDirectory( final File directory,
+                                                                        Supplier<T> visitorFactory, int parallelism )
+        throws IOException
+    {
+        final String[] paths = scanDirectory( directory );
+
+        return acceptRanges( paths.length, visitorFactory, parallelism, ( from, to, visitor ) ->
+            acceptDirectory( directory, paths, from, to, visitor ) );
+    }
+
+    private static <T extends ClassFileVisitor> List<T> acceptJar( File file, Supplier<T> visitorFactory,
+                                                                  int parallelism )
+        throws IOException
+    {
+        final ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+        final List<ZipCentralDirectory.Entry> entries = new ArrayList<ZipCentralDirectory.Entry>();
+        try
+        {
+            for ( ZipCentralDirectory.Entry entry : directory.getClassEntries() )
+            {
+                // ignore files like package-info.class and module-info.class
+                if ( entry.getName().indexOf( '-' ) == -1 )
+                {
+                    entries.add( entry );
+                }
+            }
+        }
+        finally
+        {
+            // entries are read through the channel and the mapping of the jar, not the directory
+            directory.close();
+        }
+
+        final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        final InflaterPool inflaters = new InflaterPool();
+        ByteBuffer mapping = null;
+        try
+        {
+            // stored entries are sliced from a mapping of the jar, a single mapping cannot exceed 2 GB
+            long size = channel.size();
+            mapping = size <= Integer.MAX_VALUE ? channel.map( FileChannel.MapMode.READ_ONLY, 0, size ) : null;
+            final ByteBuffer jar = mapping;
+
+            return acceptRanges( entries.size(), visitorFactory, parallelism, ( from, to, visitor ) ->
             {
-                File file = new File( new URI( url.toString() ) );
+                Inflater inflater = inflaters.get();
+                try
+                {
+                    ZipCentralDirectory.EntryBuffer buffer = new ZipCentralDirectory.EntryBuffer();
+                    for ( int i = from; i < to; i++ )
+                    {
+                        ZipCentralDirectory.Entry entry = entries.get( i );
+
+                        if ( entry.isStored() && jar != null && visitor instanceof ByteBufferClassFileVisitor )
+                        {
+                            ( (ByteBufferClassFileVisitor) visitor ).visitClass( toClassName( entry.getName() ),
+                                                                                 directory.sliceEntry( jar, entry ) );
+                        }
+                        else
+                        {
+                            byte[] data = directory.readEntry( channel, entry, inflater, buffer );
 
-                if ( file.isDirectory() )
+                            visitClass( entry.getName(), data, entry.getSize(), visitor );
+                        }
+                    }
+                }
+                finally
                 {
-                    acceptDirectory( file, visitor );
+                    inflaters.release( inflater );
                 }
-                else if ( file.exists() )
+            } );
+        }
+        finally
+        {
+            // visitors only use the slices of the mapping while visiting a class, all done by now
+            if ( mapping != null )
+            {
+                ZipCentralDirectory.unmap( mapping );
+            }
+            inflaters.end();
+            channel.close();
+        }
+    }
+
+    /**
+     * Splits class files into contiguous ranges and visits them on a fork-join pool, one visitor per range.
+     */
+    private static <T extends ClassFileVisitor> List<T> acceptRanges( int count, Supplier<T> visitorFactory,
+                                                                     int parallelism, RangeVisitor<T> rangeVisitor )
+        throws IOException
+    {
+        int rangeSize = Math.max( MIN_RANGE_SIZE, count / ( parallelism * RANGES_PER_THREAD ) + 1 );
+        int rangeCount = ( count + rangeSize - 1 ) / rangeSize;
+
+        if ( rangeCount <= 1 )
+        {
+            T visitor = visitorFactory.get();
+            rangeVisitor.accept( 0, count, visitor );
+            return Collections.singletonList( visitor );
+        }
+
+        List<T> visitors = new ArrayList<T>( Collections.<T>nCopies( rangeCount, null ) );
+
+        ForkJoinPool pool = new ForkJoinPool( parallelism );
+        try
+        {
+            pool.invoke( new RangeTask<T>( count, rangeSize, 0, rangeCount, visitorFactory, rangeVisitor, visitors ) );
+        }
+        catch ( UncheckedIOException exception )
+        {
+            throw exception.getCause();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        return visitors;
+    }
+
+    private static void acceptDirectory( File directory, String[] paths, int from, int to, ClassFileVisitor visitor )
+        throws IOException
+    {
+        // class files are read whole into a buffer sized from their length, reused for the whole range
+        byte[] buffer = visitor instanceof ByteBufferClassFileVisitor ? new byte[BUFFER_SIZE] : null;
+
+        for ( int i = from; i < to; i++ )
+        {
+            FileInputStream in = new FileInputStream( new File( directory, paths[i] ) );
+
+            try
+            {
+                if ( buffer != null )
                 {
-                    throw new IllegalArgumentException( "Cannot accept visitor on URL: " + url );
+                    long size = in.getChannel().size();
+                    if ( size > Integer.MAX_VALUE )
+                    {
+                        throw new IOException( "Class file too large: " + paths[i] );
+                    }
+                    if ( buffer.length < size )
+                    {
+                        buffer = new byte[Math.max( (int) size, buffer.length * 2 )];
+                    }
+
+                    visitClass( paths[i], buffer, read( in, buffer, (int) size ), visitor );
+                }
+                else
+                {
+                    visitClass( paths[i], in, visitor );
                 }
             }
-            catch ( URISyntaxException exception )
+            finally
             {
-                IllegalArgumentException e = new IllegalArgumentException( "Cannot accept visitor on URL: " + url );
-                e.initCause( exception );
-                throw e;
+                in.close();
             }
         }
-        else
+    }
+
+    private static int read( InputStream in, byte[] buffer, int size )
+        throws IOException
+    {
+        int length = 0;
+        int count;
+        while ( length < size && ( count = in.read( buffer, length, size - length ) ) != -1 )
         {
-            throw new IllegalArgumentException( "Cannot accept visitor on URL: " + url );
+            length += count;
         }
+
+        return length;
     }
 
-    // private methods --------------------------------------------------------
+    private static void acceptJarClassNames( File file, final ClassNameVisitor visitor )
+        throws IOException
+    {
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+        try
+        {
+            directory.acceptClassNames( className ->
+            {
+                // ignore files like package-info.class and module-info.class
+                if ( className.indexOf( '-' ) == -1 )
+                {
+                    visitor.visitClassName( className );
+                }
+            } );
+        }
+        finally
+        {
+            directory.close();
+        }
+    }
 
-    private static void acceptJar( URL url, ClassFileVisitor visitor )
+    private static void acceptJarStreamClassNames( URL url, ClassNameVisitor visitor )
         throws IOException
     {
+        // a remote jar can only be read sequentially, entries are skipped over without being visited
         JarInputStream in = new JarInputStream( url.openStream() );
         try
         {
@@ -105,7 +514,7 @@ public final class ClassFileVisitorUtils
                 // ignore files like package-info.class and module-info.class
                 if ( name.endsWith( ".class" ) && name.indexOf( '-' ) == -1 )
                 {
-                    visitClass( name, in, visitor );
+                    visitor.visitClassName( toClassName( name ) );
                 }
             }
         }
@@ -115,8 +524,15 @@ public final class ClassFileVisitorUtils
         }
     }
 
-    private static void acceptDirectory( File directory, ClassFileVisitor visitor )
-        throws IOException
+    private static void acceptDirectoryClassNames( File directory, ClassNameVisitor visitor )
+    {
+        for ( String path : scanDirectory( directory ) )
+        {
+            visitor.visitClassName( toClassName( path ) );
+        }
+    }
+
+    private static String[] scanDirectory( File directory )
     {
         if ( !directory.isDirectory() )
         {
@@ -132,25 +548,47 @@ public final class ClassFileVisitorUtils
 
         String[] paths = scanner.getIncludedFiles();
 
-        for ( String path : paths )
+        for ( int i = 0; i < paths.length; i++ )
         {
-            path = path.replace( File.separatorChar, '/' );
+            paths[i] = paths[i].replace( File.separatorChar, '/' );
+        }
 
-            File file = new File( directory, path );
-            FileInputStream in = new FileInputStream( file );
+        return paths;
+    }
 
-            try
-            {
-                visitClass( path, in, visitor );
-            }
-            finally
-            {
-                in.close();
-            }
+    private static File toFile( URL url )
+    {
+        try
+        {
+            return new File( new URI( url.toString() ) );
+        }
+        catch ( URISyntaxException exception )
+        {
+            IllegalArgumentException e = new IllegalArgumentException( "Cannot accept visitor on URL: " + url );
+            e.initCause( exception );
+            throw e;
         }
     }
 
     private static void visitClass( String path, InputStream in, ClassFileVisitor visitor )
+    {
+        visitor.visitClass( toClassName( path ), in );
+    }
+
+    private static void visitClass( String path, byte[] buffer, int length, ClassFileVisitor visitor )
+    {
+        if ( visitor instanceof ByteBufferClassFileVisitor )
+        {
+            ( (ByteBufferClassFileVisitor) visitor ).visitClass( toClassName( path ),
+                                                                 ByteBuffer.wrap( buffer, 0, length ) );
+        }
+        else
+        {
+            visitor.visitClass( toClassName( path ), new ByteArrayInputStream( buffer, 0, length ) );
+        }
+    }
+
+    private static String toClassName( String path )
     {
         if ( !path.endsWith( ".class" ) )
         {
@@ -159,8 +597,108 @@ public final class ClassFileVisitorUtils
 
         String className = path.substring( 0, path.length() - 6 );
 
-        className = className.replace( '/', '.' );
+        return className.replace( '/', '.' );
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * Visits the class files of a range with the visitor of the range.
+     */
+    private interface RangeVisitor<T extends ClassFileVisitor>
+    {
+        void accept( int from, int to, T visitor )
+            throws IOException;
+    }
+
+    /**
+     * Visits a span of ranges of class files, splitting it in halves until a single range is left.
+     */
+    private static final class RangeTask<T extends ClassFileVisitor>
+        extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int count;
 
-        visitor.visitClass( className, in );
+        private final int rangeSize;
+
+        private final int fromRange;
+
+        private final int toRange;
+
+        private final transient Supplier<T> visitorFactory;
+
+        private final transient RangeVisitor<T> rangeVisitor;
+
+        private final transient List<T> visitors;
+
+        RangeTask( int count, int rangeSize, int fromRange, int toRange, Supplier<T> visitorFactory,
+                   RangeVisitor<T> rangeVisitor, List<T> visitors )
+        {
+            this.count = count;
+            this.rangeSize = rangeSize;
+            this.fromRange = fromRange;
+            this.toRange = toRange;
+            this.visitorFactory = visitorFactory;
+            this.rangeVisitor = rangeVisitor;
+            this.visitors = visitors;
+        }
+
+        protected void compute()
+        {
+            if ( toRange - fromRange > 1 )
+            {
+                int middle = ( fromRange + toRange ) >>> 1;
+                invokeAll( new RangeTask<T>( count, rangeSize, fromRange, middle, visitorFactory, rangeVisitor,
+                                             visitors ),
+                           new RangeTask<T>( count, rangeSize, middle, toRange, visitorFactory, rangeVisitor,
+                                             visitors ) );
+                return;
+            }
+
+            T visitor = visitorFactory.get();
+            int from = fromRange * rangeSize;
+            try
+            {
+                rangeVisitor.accept( from, Math.min( from + rangeSize, count ), visitor );
+            }
+            catch ( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+
+            // each range has its own slot, published to the caller by the completion of the task
+            visitors.set( fromRange, visitor );
+        }
+    }
+
+    /**
+     * Raw inflaters shared by the threads reading a jar, native resources being released once the jar is read.
+     */
+    private static final class InflaterPool
+    {
+        private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+
+        Inflater get()
+        {
+            Inflater inflater = inflaters.poll();
+            return inflater != null ? inflater : new Inflater( true );
+        }
+
+        void release( Inflater inflater )
+        {
+            inflater.reset();
+            inflaters.offer( inflater );
+        }
+
+        void end()
+        {
+            Inflater inflater;
+            while ( ( inflater = inflaters.poll() ) != null )
+            {
+                inflater.end();
+            }
+        }
     }
 }
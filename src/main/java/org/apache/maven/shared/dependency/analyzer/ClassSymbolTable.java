@@ -0,0 +1,559 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Interns class names into dense <code>int</code> identifiers, so that the artifact indexing and the class file
+ * scanning of an analysis hold each class name once.
+ * <p>
+ * Names are looked up either in the internal form found in class files, with slashes, or in the dotted form of the
+ * API, and compare equal in both forms. The dotted name of a class is created once, when the class is first interned,
+ * and is then handed out for every reference to it; interning a dotted string keeps that string. Identifiers are
+ * allocated from <code>0</code>, in interning order.
+ * <p>
+ * Names found in class files can also be looked up from their modified UTF8 bytes, hashed and compared in place.
+ * <p>
+ * Once {@link #seal() sealed}, the table only resolves the names it already knows: interning an unknown name creates
+ * nothing and gives <code>-1</code>. An analysis seals the table holding the artifact classes before scanning the
+ * project classes, so that references to the JDK, to the project itself or to missing classes cost no string.
+ * <p>
+ * The table is thread-safe. Names are hashed into segments locked independently, so that the threads of a parallel
+ * scan seldom contend.
+ */
+public class ClassSymbolTable
+{
+    // constants --------------------------------------------------------------
+
+    private static final int SEGMENT_SHIFT = 4;
+
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_SHIFT;
+
+    private static final int PAGE_SHIFT = 12;
+
+    private static final int PAGE_MASK = ( 1 << PAGE_SHIFT ) - 1;
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    // fields -----------------------------------------------------------------
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * The names by identifier, in pages that are never moved once allocated.
+     */
+    private volatile String[][] pages = new String[16][];
+
+    private volatile int size;
+
+    private volatile boolean sealed;
+
+    // constructors -----------------------------------------------------------
+
+    public ClassSymbolTable()
+    {
+        for ( int i = 0; i < SEGMENT_COUNT; i++ )
+        {
+            segments[i] = new Segment();
+        }
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * Interns a class name.
+     *
+     * @param name the class name, dotted or in internal form
+     * @return the identifier of the class, or <code>-1</code> if the table is sealed and does not know the class
+     */
+    public int intern( String name )
+    {
+        int hash = hash( name );
+        Segment segment = getSegment( hash );
+
+        synchronized ( segment )
+        {
+            int slot = segment.indexOf( this, hash, name );
+            if ( slot >= 0 )
+            {
+                return segment.ids[slot];
+            }
+            if ( sealed )
+            {
+                return -1;
+            }
+
+            String dottedName = name.indexOf( '/' ) == -1 ? name : name.replace( '/', '.' );
+            return segment.add( ~slot, hash, add( dottedName ) );
+        }
+    }
+
+    /**
+     * Interns a class name given as characters, creating a string only if the class was not interned yet.
+     *
+     * @param chars the characters of the class name, dotted or in internal form
+     * @param offset the offset of the class name in <code>chars</code>
+     * @param length the length of the class name
+     * @return the identifier of the class, or <code>-1</code> if the table is sealed and does not know the class
+     */
+    public int intern( char[] chars, int offset, int length )
+    {
+        int hash = hash( chars, offset, length );
+        Segment segment = getSegment( hash );
+
+        synchronized ( segment )
+        {
+            int slot = segment.indexOf( this, hash, chars, offset, length );
+            if ( slot >= 0 )
+            {
+                return segment.ids[slot];
+            }
+            if ( sealed )
+            {
+                return -1;
+            }
+
+            char[] dottedName = Arrays.copyOfRange( chars, offset, offset + length );
+            for ( int i = 0; i < length; i++ )
+            {
+                if ( dottedName[i] == '/' )
+                {
+                    dottedName[i] = '.';
+                }
+            }
+            return segment.add( ~slot, hash, add( new String( dottedName ) ) );
+        }
+    }
+
+    /**
+     * Interns a class name given as modified UTF8 bytes, as found in class files, hashing and comparing the bytes in
+     * place and decoding them only if the class was not interned yet.
+     *
+     * @param b the bytes holding the class name, dotted or in internal form
+     * @param offset the offset of the encoded class name in <code>b</code>
+     * @param length the number of bytes of the encoded class name
+     * @return the identifier of the class, or <code>-1</code> if the table is sealed and does not know the class
+     */
+    public int intern( byte[] b, int offset, int length )
+    {
+        int hash = hash( b, offset, length );
+        Segment segment = getSegment( hash );
+
+        synchronized ( segment )
+        {
+            int slot = segment.indexOf( this, hash, b, offset, length );
+            if ( slot >= 0 )
+            {
+                return segment.ids[slot];
+            }
+            if ( sealed )
+            {
+                return -1;
+            }
+
+            // a modified UTF8 string has at most as many characters as bytes
+            char[] dottedName = new char[length];
+            int count = 0;
+            for ( int i = offset, end = offset + length; i < end; )
+            {
+                char c = decode( b, i );
+                i += getEncodedLength( b[i] );
+                dottedName[count++] = c == '/' ? '.' : c;
+            }
+            return segment.add( ~slot, hash, add( new String( dottedName, 0, count ) ) );
+        }
+    }
+
+    /**
+     * Looks a class name up without interning it.
+     *
+     * @param name the class name, dotted or in internal form
+     * @return the identifier of the class, or <code>-1</code> if the class was not interned
+     */
+    public int lookup( String name )
+    {
+        int hash = hash( name );
+        Segment segment = getSegment( hash );
+
+        synchronized ( segment )
+        {
+            int slot = segment.indexOf( this, hash, name );
+            return slot >= 0 ? segment.ids[slot] : -1;
+        }
+    }
+
+    /**
+     * Looks a class name given as modified UTF8 bytes up without interning it, creating no string.
+     *
+     * @param b the bytes holding the class name, dotted or in internal form
+     * @param offset the offset of the encoded class name in <code>b</code>
+     * @param length the number of bytes of the encoded class name
+     * @return the identifier of the class, or <code>-1</code> if the class was not interned
+     */
+    public int lookup( byte[] b, int offset, int length )
+    {
+        int hash = hash( b, offset, length );
+        Segment segment = getSegment( hash );
+
+        synchronized ( segment )
+        {
+            int slot = segment.indexOf( this, hash, b, offset, length );
+            return slot >= 0 ? segment.ids[slot] : -1;
+        }
+    }
+
+    /**
+     * Stops interning new names: from now on, only the names already interned are resolved.
+     */
+    public void seal()
+    {
+        sealed = true;
+    }
+
+    /**
+     * @return whether the table only resolves the names already interned
+     */
+    public boolean isSealed()
+    {
+        return sealed;
+    }
+
+    /**
+     * @param id the identifier of an interned class
+     * @return the dotted name of the class, the same string for every call
+     * @throws IndexOutOfBoundsException if no class has this identifier
+     */
+    public String getName( int id )
+    {
+        if ( id < 0 || id >= size )
+        {
+            throw new IndexOutOfBoundsException( "Unknown class identifier: " + id );
+        }
+
+        return pages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+    }
+
+    /**
+     * @return the number of interned classes, which is also the next identifier handed out
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    // private methods --------------------------------------------------------
+
+    /**
+     * Allocates the identifier of a new class name, called with the lock of its segment held.
+     */
+    private synchronized int add( String name )
+    {
+        int id = size;
+        int page = id >>> PAGE_SHIFT;
+
+        String[][] pages = this.pages;
+        if ( page == pages.length )
+        {
+            pages = Arrays.copyOf( pages, page * 2 );
+        }
+        if ( pages[page] == null )
+        {
+            pages[page] = new String[PAGE_MASK + 1];
+        }
+        pages[page][id & PAGE_MASK] = name;
+
+        this.pages = pages;
+        size = id + 1;
+        return id;
+    }
+
+    private String getNameUnchecked( int id )
+    {
+        return pages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+    }
+
+    private Segment getSegment( int hash )
+    {
+        return segments[( hash ^ ( hash >>> 16 ) ) >>> ( 32 - SEGMENT_SHIFT )];
+    }
+
+    /**
+     * Hashes a class name as the hash code of its dotted form, which strings cache.
+     */
+    private static int hash( String name )
+    {
+        if ( name.indexOf( '/' ) == -1 )
+        {
+            return name.hashCode();
+        }
+
+        int hash = 0;
+        for ( int i = 0, length = name.length(); i < length; i++ )
+        {
+            char c = name.charAt( i );
+            hash = 31 * hash + ( c == '/' ? '.' : c );
+        }
+        return hash;
+    }
+
+    private static int hash( char[] chars, int offset, int length )
+    {
+        int hash = 0;
+        for ( int i = offset, end = offset + length; i < end; i++ )
+        {
+            char c = chars[i];
+            hash = 31 * hash + ( c == '/' ? '.' : c );
+        }
+        return hash;
+    }
+
+    private static int hash( byte[] b, int offset, int length )
+    {
+        int hash = 0;
+        for ( int i = offset, end = offset + length; i < end; )
+        {
+            int c = b[i];
+            if ( c > 0 )
+            {
+                // ASCII fast path
+                i++;
+            }
+            else
+            {
+                c = decode( b, i );
+                i += getEncodedLength( b[i] );
+            }
+            hash = 31 * hash + ( c == '/' ? '.' : c );
+        }
+        return hash;
+    }
+
+    /**
+     * Decodes the modified UTF8 character at an offset, whose sequence is assumed to be complete.
+     */
+    private static char decode( byte[] b, int offset )
+    {
+        int c = b[offset];
+        if ( c >= 0 )
+        {
+            return (char) c;
+        }
+        if ( ( c & 0xE0 ) == 0xC0 )
+        {
+            return (char) ( ( c & 0x1F ) << 6 | b[offset + 1] & 0x3F );
+        }
+        return (char) ( ( c & 0x0F ) << 12 | ( b[offset + 1] & 0x3F ) << 6 | b[offset + 2] & 0x3F );
+    }
+
+    private static int getEncodedLength( byte c )
+    {
+        if ( c >= 0 )
+        {
+            return 1;
+        }
+        return ( c & 0xE0 ) == 0xC0 ? 2 : 3;
+    }
+
+    private static boolean matches( String dottedName, String name )
+    {
+        if ( dottedName == name )
+        {
+            return true;
+        }
+
+        int length = name.length();
+        if ( dottedName.length() != length )
+        {
+            return false;
+        }
+
+        for ( int i = 0; i < length; i++ )
+        {
+            char c = name.charAt( i );
+            if ( dottedName.charAt( i ) != ( c == '/' ? '.' : c ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches( String dottedName, char[] chars, int offset, int length )
+    {
+        if ( dottedName.length() != length )
+        {
+            return false;
+        }
+
+        for ( int i = 0; i < length; i++ )
+        {
+            char c = chars[offset + i];
+            if ( dottedName.charAt( i ) != ( c == '/' ? '.' : c ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches( String dottedName, byte[] b, int offset, int length )
+    {
+        // the character count is at most the byte count, and equal to it for ASCII names
+        int count = dottedName.length();
+        if ( count > length )
+        {
+            return false;
+        }
+
+        int index = 0;
+        for ( int i = offset, end = offset + length; i < end; index++ )
+        {
+            if ( index == count )
+            {
+                return false;
+            }
+
+            int c = b[i];
+            if ( c > 0 )
+            {
+                i++;
+            }
+            else
+            {
+                c = decode( b, i );
+                i += getEncodedLength( b[i] );
+            }
+            if ( dottedName.charAt( index ) != ( c == '/' ? '.' : c ) )
+            {
+                return false;
+            }
+        }
+        return index == count;
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * An open addressing hash table of identifiers, guarded by its own lock.
+     */
+    private static final class Segment
+    {
+        private int[] ids = new int[INITIAL_SEGMENT_CAPACITY];
+
+        private int[] hashes = new int[INITIAL_SEGMENT_CAPACITY];
+
+        private boolean[] used = new boolean[INITIAL_SEGMENT_CAPACITY];
+
+        private int count;
+
+        /**
+         * @return the slot of the name, or the complement of the free slot where it belongs
+         */
+        int indexOf( ClassSymbolTable table, int hash, String name )
+        {
+            int mask = ids.length - 1;
+            for ( int slot = hash & mask;; slot = ( slot + 1 ) & mask )
+            {
+                if ( !used[slot] )
+                {
+                    return ~slot;
+                }
+                if ( hashes[slot] == hash && matches( table.getNameUnchecked( ids[slot] ), name ) )
+                {
+                    return slot;
+                }
+            }
+        }
+
+        int indexOf( ClassSymbolTable table, int hash, char[] chars, int offset, int length )
+        {
+            int mask = ids.length - 1;
+            for ( int slot = hash & mask;; slot = ( slot + 1 ) & mask )
+            {
+                if ( !used[slot] )
+                {
+                    return ~slot;
+                }
+                if ( hashes[slot] == hash && matches( table.getNameUnchecked( ids[slot] ), chars, offset, length ) )
+                {
+                    return slot;
+                }
+            }
+        }
+
+        int indexOf( ClassSymbolTable table, int hash, byte[] b, int offset, int length )
+        {
+            int mask = ids.length - 1;
+            for ( int slot = hash & mask;; slot = ( slot + 1 ) & mask )
+            {
+                if ( !used[slot] )
+                {
+                    return ~slot;
+                }
+                if ( hashes[slot] == hash && matches( table.getNameUnchecked( ids[slot] ), b, offset, length ) )
+                {
+                    return slot;
+                }
+            }
+        }
+
+        int add( int slot, int hash, int id )
+        {
+            ids[slot] = id;
+            hashes[slot] = hash;
+            used[slot] = true;
+
+            if ( ++count * 4 > ids.length * 3 )
+            {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash()
+        {
+            int[] oldIds = ids;
+            int[] oldHashes = hashes;
+            boolean[] oldUsed = used;
+
+            int capacity = oldIds.length * 2;
+            ids = new int[capacity];
+            hashes = new int[capacity];
+            used = new boolean[capacity];
+
+            int mask = capacity - 1;
+            for ( int i = 0; i < oldIds.length; i++ )
+            {
+                if ( oldUsed[i] )
+                {
+                    int slot = oldHashes[i] & mask;
+                    while ( used[slot] )
+                    {
+                        slot = ( slot + 1 ) & mask;
+                    }
+                    ids[slot] = oldIds[i];
+                    hashes[slot] = oldHashes[i];
+                    used[slot] = true;
+                }
+            }
+        }
+    }
+}
@@ -31,7 +31,7 @@ import java.util.Set;
  * @see #getClasses()
  */
 public class CollectorClassFileVisitor
-    implements ClassFileVisitor
+    implements ClassFileVisitor, ClassNameVisitor
 {
     // fields -----------------------------------------------------------------
 
@@ -55,6 +55,16 @@ public class CollectorClassFileVisitor
         classes.add( className );
     }
 
+    // ClassNameVisitor methods -----------------------------------------------
+
+    /*
+     * @see org.apache.maven.shared.dependency.analyzer.ClassNameVisitor#visitClassName(java.lang.String)
+     */
+    public void visitClassName( String className )
+    {
+        classes.add( className );
+    }
+
     // public methods ---------------------------------------------------------
 
     public Set<String> getClasses()
@@ -21,6 +21,8 @@ package org.apache.maven.shared.dependency.analyzer;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Set;
 import java.util.zip.ZipException;
 
@@ -41,6 +43,13 @@ public class DefaultClassAnalyzer
     public Set<String> analyze( URL url )
         throws IOException
     {
+        Path path = ClassFileVisitorUtils.toPath( url );
+        if ( path != null )
+        {
+            return analyze( path, "URL: " + url );
+        }
+
+        // a remote jar can only be read sequentially
         CollectorClassFileVisitor visitor = new CollectorClassFileVisitor();
 
         try
@@ -49,14 +58,52 @@ public class DefaultClassAnalyzer
         }
         catch ( ZipException e )
         {
-            // since the current ZipException gives no indication what jar file is corrupted
-            // we prefer to wrap another ZipException for better error visibility
-            ZipException ze =
-                new ZipException( "Cannot process Jar entry on URL: " + url + " due to " + e.getMessage() );
-            ze.initCause( e );
-            throw ze;
+            throw newZipException( "URL: " + url, e );
         }
 
         return visitor.getClasses();
     }
+
+    public Set<String> analyze( Path path )
+        throws IOException
+    {
+        return analyze( path, "path: " + path );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private Set<String> analyze( Path path, String library )
+        throws IOException
+    {
+        CollectorClassFileVisitor visitor = new CollectorClassFileVisitor();
+
+        try
+        {
+            if ( path.toString().endsWith( ".jar" ) && !Files.isDirectory( path ) )
+            {
+                // reading every entry is what reports a corrupted jar (MDEP-143)
+                ClassFileVisitorUtils.accept( path, visitor );
+            }
+            else
+            {
+                // class names come from the directory listing alone, no class file is opened
+                ClassFileVisitorUtils.acceptClassNames( path, visitor );
+            }
+        }
+        catch ( ZipException e )
+        {
+            throw newZipException( library, e );
+        }
+
+        return visitor.getClasses();
+    }
+
+    private static ZipException newZipException( String library, ZipException e )
+    {
+        // since the current ZipException gives no indication what jar file is corrupted
+        // we prefer to wrap another ZipException for better error visibility
+        ZipException ze = new ZipException( "Cannot process Jar entry on " + library + " due to " + e.getMessage() );
+        ze.initCause( e );
+        return ze;
+    }
 }
@@ -21,20 +21,26 @@ package org.apache.maven.shared.dependency.analyzer;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
@@ -63,6 +69,103 @@ public class DefaultProjectDependencyAnalyzer
     @Requirement
     private DependencyAnalyzerWithUsages dependencyAnalyzer;
 
+    /**
+     * Number of threads indexing the dependency artifacts, <code>1</code> indexes them on the calling thread.
+     */
+    private int indexingThreads = 1;
+
+    /**
+     * Persistent cache of the classes contained in jar artifacts, <code>null</code> to always read the jars.
+     */
+    private PersistentClassIndexCache classIndexCache;
+
+    /**
+     * In-memory cache of artifact classes shared across analyses, <code>null</code> to index every artifact again.
+     */
+    private SharedClassIndexCache sharedClassIndexCache;
+
+    /**
+     * How many of the usages of each used artifact an analysis keeps.
+     */
+    private UsageRetention usageRetention = UsageRetention.FULL;
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @return the number of threads indexing the dependency artifacts
+     */
+    public int getIndexingThreads()
+    {
+        return indexingThreads;
+    }
+
+    /**
+     * Sets the number of threads indexing the dependency artifacts. Jars and directories are then indexed concurrently,
+     * the resulting artifact order is unchanged.
+     *
+     * @param indexingThreads the number of threads, <code>1</code> or less to index on the calling thread
+     */
+    public void setIndexingThreads( int indexingThreads )
+    {
+        this.indexingThreads = indexingThreads;
+    }
+
+    /**
+     * @return the persistent cache of jar artifact classes, or <code>null</code> if none is used
+     */
+    public PersistentClassIndexCache getClassIndexCache()
+    {
+        return classIndexCache;
+    }
+
+    /**
+     * Sets the persistent cache consulted before reading a jar artifact.
+     *
+     * @param classIndexCache the cache, or <code>null</code> to always read the jars
+     */
+    public void setClassIndexCache( PersistentClassIndexCache classIndexCache )
+    {
+        this.classIndexCache = classIndexCache;
+    }
+
+    /**
+     * @return the in-memory cache of artifact classes, or <code>null</code> if none is used
+     */
+    public SharedClassIndexCache getSharedClassIndexCache()
+    {
+        return sharedClassIndexCache;
+    }
+
+    /**
+     * Sets the in-memory cache consulted before indexing an artifact, none by default. The JVM-wide
+     * {@link SharedClassIndexCache#getInstance() instance} shares the artifact classes across analyses, at the cost of
+     * the staleness window and memory retention it documents.
+     *
+     * @param sharedClassIndexCache the cache, or <code>null</code> to index every artifact again
+     */
+    public void setSharedClassIndexCache( SharedClassIndexCache sharedClassIndexCache )
+    {
+        this.sharedClassIndexCache = sharedClassIndexCache;
+    }
+
+    /**
+     * @return how many of the usages of each used artifact an analysis keeps
+     */
+    public UsageRetention getUsageRetention()
+    {
+        return usageRetention;
+    }
+
+    /**
+     * Sets how many of the usages of each used artifact an analysis keeps, {@link UsageRetention#FULL} by default.
+     *
+     * @param usageRetention the retention
+     */
+    public void setUsageRetention( UsageRetention usageRetention )
+    {
+        this.usageRetention = usageRetention;
+    }
+
     // ProjectDependencyAnalyzer methods --------------------------------------
 
     /*
@@ -73,23 +176,66 @@ public class DefaultProjectDependencyAnalyzer
     {
         try
         {
-            Map<Artifact, Set<String>> artifactClassMap = buildArtifactClassMap( project );
+            // artifact classes are interned first, so that the project classes reference their names; the table is
+            // then sealed, as a class no artifact contains is not attributed and needs no name
+            ClassSymbolTable symbols = new ClassSymbolTable();
 
-            Set<DependencyUsage> dependencyUsages = buildDependencyUsages( project );
+            ArtifactClassIndex artifactClassIndex = buildArtifactClassIndex( project, symbols );
+            symbols.seal();
+
+            Map<Artifact, Set<DependencyUsage>> usedArtifacts;
+            if ( usageRetention.getMode() == UsageRetention.Mode.FULL )
+            {
+                DependencyUsageGraph dependencyUsages = buildDependencyUsageGraph( project, symbols );
+                usedArtifacts = buildArtifactToUsageMap( artifactClassIndex, dependencyUsages );
+            }
+            else if ( usageRetention.getMode() == UsageRetention.Mode.NONE )
+            {
+                // no usage is recorded, the scan only collects the referenced classes
+                Set<String> dependencyClasses = buildDependencyClasses( project, symbols );
+                usedArtifacts = new LinkedHashMap<Artifact, Set<DependencyUsage>>();
+                for ( Artifact artifact : buildUsedArtifacts( artifactClassIndex, dependencyClasses ) )
+                {
+                    usedArtifacts.put( artifact, Collections.<DependencyUsage>emptySet() );
+                }
+            }
+            else
+            {
+                usedArtifacts = buildRetainedArtifactToUsageMap( project, artifactClassIndex );
+            }
 
             Set<Artifact> declaredArtifacts = buildDeclaredArtifacts( project );
 
-            Map<Artifact, Set<DependencyUsage>> usedArtifacts = buildArtifactToUsageMap( artifactClassMap,
-                                                                                         dependencyUsages );
+            // artifacts are compared by conflict id, computed once per artifact
+            ArtifactConflictIds conflictIds = new ArtifactConflictIds();
+            BitSet usedIds = conflictIds.getIds( usedArtifacts.keySet() );
+            BitSet declaredIds = conflictIds.getIds( declaredArtifacts );
 
-            Map<Artifact, Set<DependencyUsage>> usedDeclaredArtifacts = buildMutableCopy( usedArtifacts );
-            retainAll( usedDeclaredArtifacts.keySet(), declaredArtifacts );
+            BitSet usedDeclaredIds = (BitSet) usedIds.clone();
+            usedDeclaredIds.and( declaredIds );
 
-            Map<Artifact, Set<DependencyUsage>> usedUndeclaredArtifacts = buildMutableCopy( usedArtifacts );
-            removeAll( usedUndeclaredArtifacts.keySet(), declaredArtifacts );
+            BitSet unusedDeclaredIds = (BitSet) declaredIds.clone();
+            unusedDeclaredIds.andNot( usedIds );
 
-            Set<Artifact> unusedDeclaredArtifacts = new LinkedHashSet<Artifact>( declaredArtifacts );
-            removeAll( unusedDeclaredArtifacts, usedArtifacts.keySet() );
+            // the usage sets are immutable, shared rather than copied
+            Map<Artifact, Set<DependencyUsage>> usedDeclaredArtifacts =
+                new LinkedHashMap<Artifact, Set<DependencyUsage>>();
+            Map<Artifact, Set<DependencyUsage>> usedUndeclaredArtifacts =
+                new LinkedHashMap<Artifact, Set<DependencyUsage>>();
+            for ( Entry<Artifact, Set<DependencyUsage>> entry : usedArtifacts.entrySet() )
+            {
+                boolean declared = usedDeclaredIds.get( conflictIds.getId( entry.getKey() ) );
+                ( declared ? usedDeclaredArtifacts : usedUndeclaredArtifacts ).put( entry.getKey(), entry.getValue() );
+            }
+
+            Set<Artifact> unusedDeclaredArtifacts = new LinkedHashSet<Artifact>();
+            for ( Artifact artifact : declaredArtifacts )
+            {
+                if ( unusedDeclaredIds.get( conflictIds.getId( artifact ) ) )
+                {
+                    unusedDeclaredArtifacts.add( artifact );
+                }
+            }
 
             return new ProjectDependencyAnalysis( usedDeclaredArtifacts, usedUndeclaredArtifacts,
                                                   unusedDeclaredArtifacts );
@@ -101,144 +247,361 @@ public class DefaultProjectDependencyAnalyzer
     }
 
     /**
-     * This method defines a new way to retain the artifacts by using the conflict id. We don't care about the version
-     * here because there can be only 1 for a given artifact anyway.
+     * Builds the class to artifact index used to attribute dependency classes, from
+     * {@link #buildArtifactClassMap(MavenProject)} so that overriding the map still takes effect.
      *
-     * @param start initial set
-     * @param keep set to keep
+     * @param project the project whose artifacts are indexed
+     * @return the class to artifact index
+     * @throws IOException if an artifact cannot be read
      */
-    private void retainAll( Set<Artifact> start, Set<Artifact> keep )
+    protected ArtifactClassIndex buildArtifactClassIndex( MavenProject project )
+        throws IOException
+    {
+        return buildArtifactClassIndex( project, new ClassSymbolTable() );
+    }
+
+    /**
+     * Builds the class to artifact index used to attribute dependency classes, interning the class names into the
+     * symbol table of the analysis.
+     *
+     * @param project the project whose artifacts are indexed
+     * @param symbols the symbol table of the analysis
+     * @return the class to artifact index
+     * @throws IOException if an artifact cannot be read
+     */
+    protected ArtifactClassIndex buildArtifactClassIndex( MavenProject project, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return new ArtifactClassIndex( buildArtifactClassMap( project ), symbols );
+    }
+
+    protected Map<Artifact, Set<String>> buildArtifactClassMap( MavenProject project )
+        throws IOException
     {
-        Set<String> keepIds = keep.stream()
-            .map( Artifact::getDependencyConflictId )
-            .collect( Collectors.toSet() );
-        for ( Iterator<Artifact> iterator = start.iterator(); iterator.hasNext(); )
+        Map<Artifact, Set<String>> artifactClassMap = new LinkedHashMap<Artifact, Set<String>>();
+
+        @SuppressWarnings( "unchecked" )
+        Set<Artifact> dependencyArtifacts = project.getArtifacts();
+
+        if ( indexingThreads > 1 && dependencyArtifacts.size() > 1 )
         {
-            Artifact artifact = iterator.next();
-            if ( !keepIds.contains( artifact.getDependencyConflictId() ) )
+            List<Set<String>> artifactClasses = buildArtifactClassesInParallel( dependencyArtifacts );
+
+            int i = 0;
+            for ( Artifact artifact : dependencyArtifacts )
             {
-                iterator.remove();
+                Set<String> classes = artifactClasses.get( i++ );
+
+                if ( classes != null )
+                {
+                    artifactClassMap.put( artifact, classes );
+                }
+            }
+        }
+        else
+        {
+            for ( Artifact artifact : dependencyArtifacts )
+            {
+                Set<String> classes = buildArtifactClasses( artifact );
+
+                if ( classes != null )
+                {
+                    artifactClassMap.put( artifact, classes );
+                }
             }
         }
+
+        return artifactClassMap;
     }
 
     /**
-     * This method defines a new way to remove the artifacts by using the conflict id. We don't care about the version
-     * here because there can be only 1 for a given artifact anyway.
+     * Indexes the artifacts on a pool of {@link #getIndexingThreads()} workers, submitting the largest files first so
+     * that a single big jar does not end up running alone at the end.
      *
-     * @param start initial set
-     * @param remove set to exclude
+     * @param dependencyArtifacts the artifacts to index
+     * @return the classes of each artifact, in the iteration order of <code>dependencyArtifacts</code>
      */
-    private void removeAll( Set<Artifact> start, Set<Artifact> remove )
+    private List<Set<String>> buildArtifactClassesInParallel( Set<Artifact> dependencyArtifacts )
+        throws IOException
     {
-        for ( Iterator<Artifact> iterator = start.iterator(); iterator.hasNext(); )
+        final List<Artifact> artifacts = new ArrayList<Artifact>( dependencyArtifacts );
+
+        List<Integer> schedule = new ArrayList<Integer>( artifacts.size() );
+        final long[] weights = new long[artifacts.size()];
+        for ( int i = 0; i < artifacts.size(); i++ )
+        {
+            schedule.add( i );
+            weights[i] = getIndexingWeight( artifacts.get( i ).getFile() );
+        }
+        Collections.sort( schedule, ( a, b ) -> Long.compare( weights[b], weights[a] ) );
+
+        int threads = Math.min( indexingThreads, artifacts.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( threads, new IndexingThreadFactory() );
+        try
         {
-            Artifact artifact = iterator.next();
+            List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>( artifacts.size() );
+            futures.addAll( Collections.<Future<Set<String>>>nCopies( artifacts.size(), null ) );
 
-            for ( Artifact artifact2 : remove )
+            for ( final int i : schedule )
             {
-                if ( artifact.getDependencyConflictId().equals( artifact2.getDependencyConflictId() ) )
-                {
-                    iterator.remove();
-                    break;
-                }
+                futures.set( i, executor.submit( () -> buildArtifactClasses( artifacts.get( i ) ) ) );
+            }
+
+            List<Set<String>> artifactClasses = new ArrayList<Set<String>>( artifacts.size() );
+            for ( Future<Set<String>> future : futures )
+            {
+                artifactClasses.add( getIndexedClasses( future ) );
             }
+
+            return artifactClasses;
+        }
+        finally
+        {
+            executor.shutdownNow();
         }
     }
 
-    protected Map<Artifact, Set<String>> buildArtifactClassMap( MavenProject project )
+    private static long getIndexingWeight( File file )
+    {
+        if ( file == null )
+        {
+            return 0;
+        }
+
+        // a directory size is unknown without walking it, schedule it with the largest jars
+        return file.isDirectory() ? Long.MAX_VALUE : file.length();
+    }
+
+    private static Set<String> getIndexedClasses( Future<Set<String>> future )
         throws IOException
     {
-        Map<Artifact, Set<String>> artifactClassMap = new LinkedHashMap<Artifact, Set<String>>();
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException exception )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while indexing dependency artifacts" );
+        }
+        catch ( ExecutionException exception )
+        {
+            Throwable cause = exception.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IOException( "Cannot index dependency artifact", cause );
+        }
+    }
 
-        @SuppressWarnings( "unchecked" )
-        Set<Artifact> dependencyArtifacts = project.getArtifacts();
+    /**
+     * @param artifact the artifact to index
+     * @return the classes contained in the artifact, or <code>null</code> if it is neither a jar nor a directory
+     */
+    private Set<String> buildArtifactClasses( Artifact artifact )
+        throws IOException
+    {
+        File file = artifact.getFile();
 
-        for ( Artifact artifact : dependencyArtifacts )
+        if ( file == null || !( file.getName().endsWith( ".jar" ) || file.isDirectory() ) )
         {
-            File file = artifact.getFile();
+            return null;
+        }
 
-            if ( file != null && file.getName().endsWith( ".jar" ) )
+        SharedClassIndexCache.Key key = sharedClassIndexCache != null ? sharedClassIndexCache.getKey( file ) : null;
+        Set<String> classes = key != null ? sharedClassIndexCache.get( key ) : null;
+
+        if ( classes == null )
+        {
+            classes = file.isDirectory() ? buildDirectoryClasses( file ) : buildJarClasses( file );
+
+            if ( key != null )
             {
-                // optimized solution for the jar case
-                JarFile jarFile = new JarFile( file );
+                classes = sharedClassIndexCache.put( key, classes );
+            }
+        }
 
-                try
-                {
-                    Enumeration<JarEntry> jarEntries = jarFile.entries();
+        return classes;
+    }
 
-                    Set<String> classes = new HashSet<String>();
+    private Set<String> buildJarClasses( File file )
+        throws IOException
+    {
+        Set<String> classes = classIndexCache != null ? classIndexCache.get( file ) : null;
 
-                    while ( jarEntries.hasMoreElements() )
-                    {
-                        String entry = jarEntries.nextElement().getName();
-                        if ( entry.endsWith( ".class" ) )
-                        {
-                            String className = entry.replace( '/', '.' );
-                            className = className.substring( 0, className.length() - ".class".length() );
-                            classes.add( className );
-                        }
-                    }
+        if ( classes == null )
+        {
+            // optimized solution for the jar case: only read the central directory
+            classes = new HashSet<String>();
 
-                    artifactClassMap.put( artifact, classes );
-                }
-                finally
-                {
-                    try
-                    {
-                        jarFile.close();
-                    }
-                    catch ( IOException ignore )
-                    {
-                        // ingore
-                    }
-                }
+            ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+            try
+            {
+                directory.acceptClassNames( classes::add );
             }
-            else if ( file != null && file.isDirectory() )
+            finally
             {
-                URL url = file.toURI().toURL();
-                Set<String> classes = classAnalyzer.analyze( url );
+                directory.close();
+            }
 
-                artifactClassMap.put( artifact, classes );
+            if ( classIndexCache != null )
+            {
+                classIndexCache.put( file, classes );
             }
         }
 
-        return artifactClassMap;
+        return classes;
+    }
+
+    private Set<String> buildDirectoryClasses( File directory )
+        throws IOException
+    {
+        return classAnalyzer.analyze( directory.toPath() );
     }
 
+    /**
+     * Scans the main and test classes of the project for the classes they reference, without recording their usages.
+     *
+     * @param project the project whose classes are scanned
+     * @return the classes referenced by the project classes
+     * @throws IOException if a class cannot be read
+     */
     protected Set<String> buildDependencyClasses( MavenProject project )
         throws IOException
     {
-        Set<String> dependencyClasses = new HashSet<String>();
+        return buildDependencyClasses( project, new ClassSymbolTable() );
+    }
 
-        for ( DependencyUsage usage : buildDependencyUsages( project ) )
-        {
-            dependencyClasses.add( usage.getDependencyClass() );
-        }
+    /**
+     * Scans the main and test classes of the project for the classes they reference, without recording their usages,
+     * interning them into the symbol table of the analysis.
+     *
+     * @param project the project whose classes are scanned
+     * @param symbols the symbol table of the analysis
+     * @return the classes referenced by the project classes, only those the table knows once it is sealed
+     * @throws IOException if a class cannot be read
+     */
+    protected Set<String> buildDependencyClasses( MavenProject project, ClassSymbolTable symbols )
+        throws IOException
+    {
+        Set<String> dependencyClasses =
+            new HashSet<String>( buildDependencyClasses( project.getBuild().getOutputDirectory(), symbols ) );
+        dependencyClasses.addAll( buildDependencyClasses( project.getBuild().getTestOutputDirectory(), symbols ) );
 
         return dependencyClasses;
     }
 
+    /**
+     * Scans the main and test classes of the project.
+     *
+     * @param project the project whose classes are scanned
+     * @return the dependency usages of the project classes
+     * @throws IOException if a class cannot be read
+     * @deprecated analyses no longer call this method, overriding it has no effect: they scan the project through
+     *             {@link #buildDependencyUsageGraph(MavenProject, ClassSymbolTable)}
+     */
+    @Deprecated
     protected Set<DependencyUsage> buildDependencyUsages( MavenProject project )
         throws IOException
     {
-        Set<DependencyUsage> dependencyUsages = new HashSet<DependencyUsage>();
+        return buildDependencyUsages( project, new ClassSymbolTable() );
+    }
+
+    /**
+     * Scans the main and test classes of the project, interning the dependency classes into the symbol table.
+     *
+     * @param project the project whose classes are scanned
+     * @param symbols the symbol table
+     * @return the dependency usages of the project classes
+     * @throws IOException if a class cannot be read
+     * @deprecated analyses no longer call this method, overriding it has no effect: they scan the project through
+     *             {@link #buildDependencyUsageGraph(MavenProject, ClassSymbolTable)}
+     */
+    @Deprecated
+    protected Set<DependencyUsage> buildDependencyUsages( MavenProject project, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return buildDependencyUsageGraph( project, symbols ).getUsages();
+    }
+
+    /**
+     * Scans the main and test classes of the project into a graph of the dependency classes of the symbol table of
+     * the analysis.
+     *
+     * @param project the project whose classes are scanned
+     * @param symbols the symbol table of the analysis
+     * @return the graph of the dependency usages of the project classes
+     * @throws IOException if a class cannot be read
+     */
+    protected DependencyUsageGraph buildDependencyUsageGraph( MavenProject project, ClassSymbolTable symbols )
+        throws IOException
+    {
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
 
         String outputDirectory = project.getBuild().getOutputDirectory();
-        dependencyUsages.addAll( buildDependencyUsages( outputDirectory ) );
+        builder.add( buildDependencyUsageGraph( outputDirectory, symbols ) );
 
         String testOutputDirectory = project.getBuild().getTestOutputDirectory();
-        dependencyUsages.addAll( buildDependencyUsages( testOutputDirectory ) );
+        builder.add( buildDependencyUsageGraph( testOutputDirectory, symbols ) );
 
-        return dependencyUsages;
+        return builder.build();
     }
 
-    private Set<DependencyUsage> buildDependencyUsages( String path )
+    /**
+     * Scans the main and test classes of the project, keeping of the usages of each used artifact what
+     * {@link #getUsageRetention()} keeps as the scan pushes them: the usages are never all held at once.
+     */
+    private Map<Artifact, Set<DependencyUsage>> buildRetainedArtifactToUsageMap( MavenProject project,
+                                                                                 ArtifactClassIndex artifactClassIndex )
         throws IOException
     {
-        URL url = new File( path ).toURI().toURL();
+        // the consumer is called from one thread at a time
+        Map<Artifact, UsageRetention.Retainer> retainers = new LinkedHashMap<Artifact, UsageRetention.Retainer>();
+        Consumer<DependencyUsage> consumer = usage ->
+        {
+            Artifact artifact = artifactClassIndex.findArtifact( usage.getDependencyClass() );
+
+            if ( artifact != null )
+            {
+                retainers.computeIfAbsent( artifact, key -> usageRetention.newRetainer() ).add( usage );
+            }
+        };
 
-        return dependencyAnalyzer.analyze( url );
+        for ( String path : new String[] { project.getBuild().getOutputDirectory(),
+            project.getBuild().getTestOutputDirectory() } )
+        {
+            dependencyAnalyzer.analyze( Paths.get( path ), consumer );
+        }
+
+        Map<Artifact, Set<DependencyUsage>> artifactToUsages =
+            new LinkedHashMap<Artifact, Set<DependencyUsage>>( retainers.size() * 2 );
+        for ( Entry<Artifact, UsageRetention.Retainer> entry : retainers.entrySet() )
+        {
+            artifactToUsages.put( entry.getKey(), entry.getValue().getUsages() );
+        }
+
+        return artifactToUsages;
+    }
+
+    private Set<String> buildDependencyClasses( String path, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return dependencyAnalyzer.analyzeDependencyClasses( Paths.get( path ), symbols );
+    }
+
+    private DependencyUsageGraph buildDependencyUsageGraph( String path, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return dependencyAnalyzer.analyzeUsageGraph( Paths.get( path ), symbols );
     }
 
     protected Set<Artifact> buildDeclaredArtifacts( MavenProject project )
@@ -254,14 +617,23 @@ public class DefaultProjectDependencyAnalyzer
         return declaredArtifacts;
     }
 
+    /**
+     * @deprecated analyses do not call this method, use {@link #buildUsedArtifacts(ArtifactClassIndex, Set)} instead
+     */
+    @Deprecated
     protected Set<Artifact> buildUsedArtifacts( Map<Artifact, Set<String>> artifactClassMap,
                                               Set<String> dependencyClasses )
+    {
+        return buildUsedArtifacts( new ArtifactClassIndex( artifactClassMap ), dependencyClasses );
+    }
+
+    protected Set<Artifact> buildUsedArtifacts( ArtifactClassIndex artifactClassIndex, Set<String> dependencyClasses )
     {
         Set<Artifact> usedArtifacts = new HashSet<Artifact>();
 
         for ( String className : dependencyClasses )
         {
-            Artifact artifact = findArtifactForClassName( artifactClassMap, className );
+            Artifact artifact = artifactClassIndex.findArtifact( className );
 
             if ( artifact != null )
             {
@@ -272,72 +644,142 @@ public class DefaultProjectDependencyAnalyzer
         return usedArtifacts;
     }
 
+    /**
+     * Groups dependency usages by artifact.
+     *
+     * @param artifactClassMap the classes of each artifact
+     * @param dependencyUsages the dependency usages
+     * @return the usages of each used artifact
+     * @deprecated analyses no longer call this method, overriding it has no effect: they group the usage graph through
+     *             {@link #buildArtifactToUsageMap(ArtifactClassIndex, DependencyUsageGraph)}
+     */
+    @Deprecated
     protected Map<Artifact, Set<DependencyUsage>> buildArtifactToUsageMap( Map<Artifact, Set<String>> artifactClassMap,
                                                                            Set<DependencyUsage> dependencyUsages )
     {
-        Map<String, Set<DependencyUsage>> dependencyClassToUsages = buildDependencyClassToUsageMap( dependencyUsages );
+        return buildArtifactToUsageMap( new ArtifactClassIndex( artifactClassMap ), dependencyUsages );
+    }
 
+    /**
+     * Groups dependency usages by artifact.
+     *
+     * @param artifactClassIndex the class to artifact index
+     * @param dependencyUsages the dependency usages
+     * @return the usages of each used artifact
+     * @deprecated analyses no longer call this method, overriding it has no effect: they group the usage graph through
+     *             {@link #buildArtifactToUsageMap(ArtifactClassIndex, DependencyUsageGraph)}
+     */
+    @Deprecated
+    protected Map<Artifact, Set<DependencyUsage>> buildArtifactToUsageMap( ArtifactClassIndex artifactClassIndex,
+                                                                           Set<DependencyUsage> dependencyUsages )
+    {
         Map<Artifact, Set<DependencyUsage>> artifactToUsages = new HashMap<Artifact, Set<DependencyUsage>>();
 
-        for ( Entry<String, Set<DependencyUsage>> entry : dependencyClassToUsages.entrySet() )
+        // the dependency classes are named by the strings of the symbol table, whose hash codes are computed once
+        for ( DependencyUsage dependencyUsage : dependencyUsages )
         {
-            Artifact artifact = findArtifactForClassName( artifactClassMap, entry.getKey() );
+            Artifact artifact = artifactClassIndex.findArtifact( dependencyUsage.getDependencyClass() );
 
             if ( artifact != null )
             {
-                if ( !artifactToUsages.containsKey( artifact ) )
+                Set<DependencyUsage> usages = artifactToUsages.get( artifact );
+                if ( usages == null )
                 {
-                    artifactToUsages.put( artifact, new HashSet<DependencyUsage>() );
+                    usages = new HashSet<DependencyUsage>();
+                    artifactToUsages.put( artifact, usages );
                 }
 
-                artifactToUsages.get( artifact ).addAll( entry.getValue() );
+                usages.add( dependencyUsage );
             }
         }
 
         return artifactToUsages;
     }
 
-    protected Artifact findArtifactForClassName( Map<Artifact, Set<String>> artifactClassMap, String className )
+    /**
+     * Groups the rows of the usage graph by artifact, keeping the usages of each artifact given by
+     * {@link #getUsageRetention()}. All usages are kept as a view of the graph, without creating any
+     * {@link DependencyUsage}.
+     *
+     * @param artifactClassIndex the class to artifact index, sharing the symbol table of the graph
+     * @param dependencyUsages the graph of the dependency usages
+     * @return the usages of each used artifact, in the order of the symbol table
+     */
+    protected Map<Artifact, Set<DependencyUsage>> buildArtifactToUsageMap( ArtifactClassIndex artifactClassIndex,
+                                                                           DependencyUsageGraph dependencyUsages )
     {
-        for ( Map.Entry<Artifact, Set<String>> entry : artifactClassMap.entrySet() )
+        int rowCount = dependencyUsages.getDependencyCount();
+        Artifact[] artifacts = new Artifact[rowCount];
+        Map<Artifact, int[]> rowCounts = new LinkedHashMap<Artifact, int[]>();
+
+        for ( int row = 0; row < rowCount; row++ )
         {
-            if ( entry.getValue().contains( className ) )
+            Artifact artifact = artifactClassIndex.findArtifact( dependencyUsages.getDependencyId( row ) );
+
+            if ( artifact != null )
             {
-                return entry.getKey();
+                artifacts[row] = artifact;
+                rowCounts.computeIfAbsent( artifact, key -> new int[1] )[0]++;
             }
         }
 
-        return null;
-    }
-
-    private Map<String, Set<DependencyUsage>> buildDependencyClassToUsageMap( Set<DependencyUsage> dependencyUsages )
-    {
-        Map<String, Set<DependencyUsage>> dependencyClassToUsages = new HashMap<String, Set<DependencyUsage>>();
+        Map<Artifact, int[]> artifactToRows = new LinkedHashMap<Artifact, int[]>( rowCounts.size() * 2 );
+        for ( Entry<Artifact, int[]> entry : rowCounts.entrySet() )
+        {
+            artifactToRows.put( entry.getKey(), new int[entry.getValue()[0]] );
+        }
 
-        for ( DependencyUsage dependencyUsage : dependencyUsages )
+        // filled backwards, counting down, so that the rows of each artifact are in ascending order
+        for ( int row = rowCount - 1; row >= 0; row-- )
         {
-            String dependencyClass = dependencyUsage.getDependencyClass();
+            Artifact artifact = artifacts[row];
 
-            if ( !dependencyClassToUsages.containsKey( dependencyClass ) )
+            if ( artifact != null )
             {
-                dependencyClassToUsages.put( dependencyClass, new HashSet<DependencyUsage>() );
+                artifactToRows.get( artifact )[--rowCounts.get( artifact )[0]] = row;
             }
+        }
+
+        Map<Artifact, Set<DependencyUsage>> artifactToUsages =
+            new LinkedHashMap<Artifact, Set<DependencyUsage>>( artifactToRows.size() * 2 );
+        for ( Entry<Artifact, int[]> entry : artifactToRows.entrySet() )
+        {
+            artifactToUsages.put( entry.getKey(), usageRetention.retain( dependencyUsages, entry.getValue() ) );
+        }
 
-            dependencyClassToUsages.get( dependencyClass ).add( dependencyUsage );
+        return artifactToUsages;
+    }
+
+    /**
+     * @deprecated scans every artifact for each lookup, use {@link ArtifactClassIndex#findArtifact(String)} instead;
+     *             analyses no longer call this method, overriding it has no effect
+     */
+    @Deprecated
+    protected Artifact findArtifactForClassName( Map<Artifact, Set<String>> artifactClassMap, String className )
+    {
+        for ( Map.Entry<Artifact, Set<String>> entry : artifactClassMap.entrySet() )
+        {
+            if ( entry.getValue().contains( className ) )
+            {
+                return entry.getKey();
+            }
         }
 
-        return dependencyClassToUsages;
+        return null;
     }
 
-    private Map<Artifact, Set<DependencyUsage>> buildMutableCopy( Map<Artifact, Set<DependencyUsage>> map )
+    // inner classes ----------------------------------------------------------
+
+    private static final class IndexingThreadFactory
+        implements ThreadFactory
     {
-        Map<Artifact, Set<DependencyUsage>> copy = new LinkedHashMap<Artifact, Set<DependencyUsage>>();
+        private final AtomicInteger count = new AtomicInteger();
 
-        for ( Entry<Artifact, Set<DependencyUsage>> entry : map.entrySet() )
+        public Thread newThread( Runnable runnable )
         {
-            copy.put( entry.getKey(), new LinkedHashSet<DependencyUsage>( entry.getValue() ) );
+            Thread thread = new Thread( runnable, "dependency-analyzer-indexer-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
         }
-
-        return copy;
     }
 }
@@ -21,6 +21,7 @@ package org.apache.maven.shared.dependency.analyzer;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.Set;
 
 /**
@@ -39,4 +40,50 @@ public interface DependencyAnalyzer
 
     Set<String> analyze( URL url )
         throws IOException;
+
+    /**
+     * Gets the classes referenced by a library given as a path, which is a jar file or an exploded directory. The
+     * analyzers of this library read the path directly, their {@link #analyze(URL)} delegating here for
+     * <code>file</code> URLs; the default implementation analyzes the URL of the path instead.
+     *
+     * @param path the jar file or directory
+     * @return the classes referenced by the library
+     * @throws IOException if the library cannot be read
+     */
+    default Set<String> analyze( Path path )
+        throws IOException
+    {
+        return analyze( path.toUri().toURL() );
+    }
+
+    /**
+     * Gets the classes referenced by a library, interning their names into a symbol table shared with the rest of the
+     * analysis. A {@link ClassSymbolTable#seal() sealed} table restricts the result to the classes it knows. The
+     * default implementation ignores the table.
+     *
+     * @param url the jar file or directory
+     * @param symbols the symbol table interning the referenced classes
+     * @return the classes referenced by the library, named by the strings of the table
+     * @throws IOException if the library cannot be read
+     */
+    default Set<String> analyze( URL url, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return analyze( url );
+    }
+
+    /**
+     * Gets the classes referenced by a library given as a path, as {@link #analyze(URL, ClassSymbolTable)} does. The
+     * default implementation analyzes the URL of the path.
+     *
+     * @param path the jar file or directory
+     * @param symbols the symbol table interning the referenced classes
+     * @return the classes referenced by the library, named by the strings of the table
+     * @throws IOException if the library cannot be read
+     */
+    default Set<String> analyze( Path path, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return analyze( path.toUri().toURL(), symbols );
+    }
 }
@@ -21,7 +21,10 @@ package org.apache.maven.shared.dependency.analyzer;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Gets the set of dependency usages for a library given either as a jar file or an exploded directory.
@@ -39,4 +42,155 @@ public interface DependencyAnalyzerWithUsages
 
   Set<DependencyUsage> analyze( URL url )
       throws IOException;
+
+  /**
+   * Gets the dependency usages of a library given as a path, which is a jar file or an exploded directory. The
+   * analyzers of this library read the path directly, each method taking a URL delegating to the one taking a path
+   * for <code>file</code> URLs; the default implementations analyze the URL of the path instead.
+   *
+   * @param path the jar file or directory
+   * @return the dependency usages of the library
+   * @throws IOException if the library cannot be read
+   */
+  default Set<DependencyUsage> analyze( Path path )
+      throws IOException
+  {
+    return analyze( path.toUri().toURL() );
+  }
+
+  /**
+   * Pushes the dependency usages of a library to a consumer as each class is read, rather than collecting them. The
+   * usages of a class are distinct and pushed together, the consumer being called from one thread at a time. The
+   * default implementation pushes the usages of {@link #analyze(URL)}.
+   *
+   * @param url the jar file or directory
+   * @param consumer the consumer of the dependency usages
+   * @throws IOException if the library cannot be read
+   */
+  default void analyze( URL url, Consumer<? super DependencyUsage> consumer )
+      throws IOException
+  {
+    for ( DependencyUsage usage : analyze( url ) )
+    {
+      consumer.accept( usage );
+    }
+  }
+
+  /**
+   * Pushes the dependency usages of a library given as a path to a consumer, as
+   * {@link #analyze(URL, Consumer)} does.
+   *
+   * @param path the jar file or directory
+   * @param consumer the consumer of the dependency usages
+   * @throws IOException if the library cannot be read
+   */
+  default void analyze( Path path, Consumer<? super DependencyUsage> consumer )
+      throws IOException
+  {
+    analyze( path.toUri().toURL(), consumer );
+  }
+
+  /**
+   * Gets the dependency usages of a library, interning the names of the dependency classes into a symbol table shared
+   * with the rest of the analysis. A {@link ClassSymbolTable#seal() sealed} table restricts the result to the classes
+   * it knows. The default implementation ignores the table.
+   *
+   * @param url the jar file or directory
+   * @param symbols the symbol table interning the dependency classes
+   * @return the dependency usages of the library, whose dependency classes are named by the strings of the table
+   * @throws IOException if the library cannot be read
+   */
+  default Set<DependencyUsage> analyze( URL url, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return analyze( url );
+  }
+
+  /**
+   * Gets the dependency usages of a library given as a path, as {@link #analyze(URL, ClassSymbolTable)} does.
+   *
+   * @param path the jar file or directory
+   * @param symbols the symbol table interning the dependency classes
+   * @return the dependency usages of the library, whose dependency classes are named by the strings of the table
+   * @throws IOException if the library cannot be read
+   */
+  default Set<DependencyUsage> analyze( Path path, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return analyze( path.toUri().toURL(), symbols );
+  }
+
+  /**
+   * Gets the dependency usages of a library as a graph of the classes of a symbol table shared with the rest of the
+   * analysis, creating no {@link DependencyUsage} until its usage sets are iterated. The default implementation
+   * builds the graph from {@link #analyze(URL, ClassSymbolTable)}, dropping the dependency classes a
+   * {@link ClassSymbolTable#seal() sealed} table does not know.
+   *
+   * @param url the jar file or directory
+   * @param symbols the symbol table identifying the dependency classes
+   * @return the graph of the dependency usages of the library
+   * @throws IOException if the library cannot be read
+   */
+  default DependencyUsageGraph analyzeUsageGraph( URL url, ClassSymbolTable symbols )
+      throws IOException
+  {
+    DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+    for ( DependencyUsage usage : analyze( url, symbols ) )
+    {
+      builder.add( usage );
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets the dependency usages of a library given as a path as a graph, as
+   * {@link #analyzeUsageGraph(URL, ClassSymbolTable)} does.
+   *
+   * @param path the jar file or directory
+   * @param symbols the symbol table identifying the dependency classes
+   * @return the graph of the dependency usages of the library
+   * @throws IOException if the library cannot be read
+   */
+  default DependencyUsageGraph analyzeUsageGraph( Path path, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return analyzeUsageGraph( path.toUri().toURL(), symbols );
+  }
+
+  /**
+   * Gets the classes referenced by a library, for callers that do not need their usages. The default implementation
+   * names the dependency classes of {@link #analyzeUsageGraph(URL, ClassSymbolTable)}, without creating any
+   * {@link DependencyUsage}.
+   *
+   * @param url the jar file or directory
+   * @param symbols the symbol table interning the referenced classes
+   * @return the classes referenced by the library, named by the strings of the table
+   * @throws IOException if the library cannot be read
+   */
+  default Set<String> analyzeDependencyClasses( URL url, ClassSymbolTable symbols )
+      throws IOException
+  {
+    DependencyUsageGraph graph = analyzeUsageGraph( url, symbols );
+    Set<String> dependencyClasses = new HashSet<String>();
+    for ( int row = 0; row < graph.getDependencyCount(); row++ )
+    {
+      dependencyClasses.add( symbols.getName( graph.getDependencyId( row ) ) );
+    }
+    return dependencyClasses;
+  }
+
+  /**
+   * Gets the classes referenced by a library given as a path, as
+   * {@link #analyzeDependencyClasses(URL, ClassSymbolTable)} does.
+   *
+   * @param path the jar file or directory
+   * @param symbols the symbol table interning the referenced classes
+   * @return the classes referenced by the library, named by the strings of the table
+   * @throws IOException if the library cannot be read
+   */
+  default Set<String> analyzeDependencyClasses( Path path, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return analyzeDependencyClasses( path.toUri().toURL(), symbols );
+  }
 }
@@ -0,0 +1,461 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The usages of dependency classes by project classes, stored as a compressed sparse row graph of <code>int</code>
+ * identifiers rather than as a {@link DependencyUsage} per pair.
+ * <p>
+ * Rows are the dependency classes, identified in a {@link ClassSymbolTable} and sorted by identifier. The adjacency
+ * of a row holds the indexes of the classes using it, sorted and distinct; those indexes follow the order of the
+ * class names, so that an adjacency is also sorted by name.
+ * <p>
+ * A graph is immutable. {@link DependencyUsage} objects are only created by the iterators of the usage sets it gives,
+ * which are unmodifiable views of the graph.
+ */
+public class DependencyUsageGraph
+{
+    // constants --------------------------------------------------------------
+
+    private static final int[] NO_IDS = new int[0];
+
+    private static final String[] NO_NAMES = new String[0];
+
+    // fields -----------------------------------------------------------------
+
+    private final ClassSymbolTable symbols;
+
+    private final int[] dependencyIds;
+
+    /**
+     * The start of the adjacency of each row in {@link #usedBy}, followed by the number of usages.
+     */
+    private final int[] offsets;
+
+    private final int[] usedBy;
+
+    private final String[] usedByNames;
+
+    // constructors -----------------------------------------------------------
+
+    private DependencyUsageGraph( ClassSymbolTable symbols, int[] dependencyIds, int[] offsets, int[] usedBy,
+                                  String[] usedByNames )
+    {
+        this.symbols = symbols;
+        this.dependencyIds = dependencyIds;
+        this.offsets = offsets;
+        this.usedBy = usedBy;
+        this.usedByNames = usedByNames;
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @return the symbol table identifying the dependency classes
+     */
+    public ClassSymbolTable getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * @return the number of rows, that is of used dependency classes
+     */
+    public int getDependencyCount()
+    {
+        return dependencyIds.length;
+    }
+
+    /**
+     * @param row the row of a dependency class
+     * @return the identifier of the dependency class in the symbol table
+     */
+    public int getDependencyId( int row )
+    {
+        return dependencyIds[row];
+    }
+
+    /**
+     * @param row the row of a dependency class
+     * @return the number of classes using the dependency class
+     */
+    public int getUsedByCount( int row )
+    {
+        return offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * @param dependencyId the identifier of a dependency class in the symbol table
+     * @return the row of the dependency class, or <code>-1</code> if it is not used
+     */
+    public int getRow( int dependencyId )
+    {
+        int row = Arrays.binarySearch( dependencyIds, dependencyId );
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * @return the number of usages
+     */
+    public int getUsageCount()
+    {
+        return usedBy.length;
+    }
+
+    /**
+     * @return every usage of the graph, as an unmodifiable view
+     */
+    public Set<DependencyUsage> getUsages()
+    {
+        return new UsageSet( null, usedBy.length );
+    }
+
+    /**
+     * @param rows the rows of the dependency classes, in ascending order
+     * @return the usages of these dependency classes, as an unmodifiable view
+     */
+    public Set<DependencyUsage> getUsages( int[] rows )
+    {
+        int size = 0;
+        for ( int row : rows )
+        {
+            size += getUsedByCount( row );
+        }
+        return new UsageSet( rows, size );
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @param usages a set of usages
+     * @return whether the set is an immutable view of a graph, which needs no defensive copy
+     */
+    static boolean isUsageView( Set<DependencyUsage> usages )
+    {
+        return usages instanceof UsageSet;
+    }
+
+    // private methods --------------------------------------------------------
+
+    private boolean contains( int row, String className )
+    {
+        int low = offsets[row];
+        int high = offsets[row + 1] - 1;
+        while ( low <= high )
+        {
+            int middle = ( low + high ) >>> 1;
+            int comparison = usedByNames[usedBy[middle]].compareTo( className );
+            if ( comparison < 0 )
+            {
+                low = middle + 1;
+            }
+            else if ( comparison > 0 )
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * Collects the usages of a scan, then sorts them into a graph. A builder is not thread-safe.
+     */
+    public static class Builder
+    {
+        private final ClassSymbolTable symbols;
+
+        private final List<String> usedByNames = new ArrayList<String>();
+
+        private int[] dependencyIds = new int[64];
+
+        private int[] usedBy = new int[64];
+
+        private int count;
+
+        /**
+         * @param symbols the symbol table identifying the dependency classes
+         */
+        public Builder( ClassSymbolTable symbols )
+        {
+            this.symbols = symbols;
+        }
+
+        /**
+         * @param className the name of a class using dependency classes
+         * @return the index of the class for {@link #addUsage(int, int)}
+         */
+        public int addUsedBy( String className )
+        {
+            usedByNames.add( className );
+            return usedByNames.size() - 1;
+        }
+
+        /**
+         * @param dependencyId the identifier of the dependency class in the symbol table
+         * @param usedByIndex the index of the class using it, given by {@link #addUsedBy(String)}
+         */
+        public void addUsage( int dependencyId, int usedByIndex )
+        {
+            if ( count == usedBy.length )
+            {
+                dependencyIds = Arrays.copyOf( dependencyIds, count * 2 );
+                usedBy = Arrays.copyOf( usedBy, count * 2 );
+            }
+            dependencyIds[count] = dependencyId;
+            usedBy[count] = usedByIndex;
+            count++;
+        }
+
+        /**
+         * Adds a usage given by names, unless the symbol table is sealed and does not know the dependency class.
+         *
+         * @param usage the usage
+         */
+        public void add( DependencyUsage usage )
+        {
+            int dependencyId = symbols.intern( usage.getDependencyClass() );
+            if ( dependencyId >= 0 )
+            {
+                addUsage( dependencyId, addUsedBy( usage.getUsedBy() ) );
+            }
+        }
+
+        /**
+         * Adds the usages of another graph, built with the same symbol table.
+         *
+         * @param graph the graph
+         */
+        public void add( DependencyUsageGraph graph )
+        {
+            if ( graph.symbols != symbols )
+            {
+                throw new IllegalArgumentException( "Cannot add a graph of another symbol table" );
+            }
+
+            int base = usedByNames.size();
+            usedByNames.addAll( Arrays.asList( graph.usedByNames ) );
+
+            for ( int row = 0; row < graph.dependencyIds.length; row++ )
+            {
+                for ( int i = graph.offsets[row]; i < graph.offsets[row + 1]; i++ )
+                {
+                    addUsage( graph.dependencyIds[row], base + graph.usedBy[i] );
+                }
+            }
+        }
+
+        /**
+         * @return the graph of the usages added so far
+         */
+        public DependencyUsageGraph build()
+        {
+            if ( count == 0 )
+            {
+                return new DependencyUsageGraph( symbols, NO_IDS, new int[1], NO_IDS, NO_NAMES );
+            }
+
+            // index the distinct class names in name order
+            Integer[] order = new Integer[usedByNames.size()];
+            for ( int i = 0; i < order.length; i++ )
+            {
+                order[i] = i;
+            }
+            Arrays.sort( order, ( a, b ) -> usedByNames.get( a ).compareTo( usedByNames.get( b ) ) );
+
+            int[] usedByIndexes = new int[order.length];
+            List<String> names = new ArrayList<String>( order.length );
+            for ( Integer i : order )
+            {
+                String name = usedByNames.get( i );
+                if ( names.isEmpty() || !names.get( names.size() - 1 ).equals( name ) )
+                {
+                    names.add( name );
+                }
+                usedByIndexes[i] = names.size() - 1;
+            }
+
+            // counting sort of the usages by dependency identifier, identifiers being dense
+            int maxId = 0;
+            for ( int i = 0; i < count; i++ )
+            {
+                maxId = Math.max( maxId, dependencyIds[i] );
+            }
+            int[] rowStarts = new int[maxId + 2];
+            for ( int i = 0; i < count; i++ )
+            {
+                rowStarts[dependencyIds[i] + 1]++;
+            }
+            int rowCount = 0;
+            for ( int id = 0; id <= maxId; id++ )
+            {
+                if ( rowStarts[id + 1] > 0 )
+                {
+                    rowCount++;
+                }
+                rowStarts[id + 1] += rowStarts[id];
+            }
+
+            int[] sorted = new int[count];
+            int[] positions = Arrays.copyOf( rowStarts, maxId + 1 );
+            for ( int i = 0; i < count; i++ )
+            {
+                sorted[positions[dependencyIds[i]]++] = usedByIndexes[usedBy[i]];
+            }
+
+            // sort and deduplicate each adjacency, compacting the usages
+            int[] rowIds = new int[rowCount];
+            int[] offsets = new int[rowCount + 1];
+            int row = 0;
+            int size = 0;
+            for ( int id = 0; id <= maxId; id++ )
+            {
+                int start = rowStarts[id];
+                int end = rowStarts[id + 1];
+                if ( start == end )
+                {
+                    continue;
+                }
+
+                Arrays.sort( sorted, start, end );
+                rowIds[row] = id;
+                offsets[row] = size;
+                for ( int i = start; i < end; i++ )
+                {
+                    if ( i == start || sorted[i] != sorted[i - 1] )
+                    {
+                        sorted[size++] = sorted[i];
+                    }
+                }
+                row++;
+            }
+            offsets[rowCount] = size;
+
+            return new DependencyUsageGraph( symbols, rowIds, offsets, Arrays.copyOf( sorted, size ),
+                                             names.toArray( new String[names.size()] ) );
+        }
+    }
+
+    /**
+     * The usages of some rows of the graph, or of all rows.
+     */
+    private final class UsageSet
+        extends AbstractSet<DependencyUsage>
+    {
+        private final int[] rows;
+
+        private final int size;
+
+        UsageSet( int[] rows, int size )
+        {
+            this.rows = rows;
+            this.size = size;
+        }
+
+        public Iterator<DependencyUsage> iterator()
+        {
+            return new Iterator<DependencyUsage>()
+            {
+                private int index;
+
+                private int row = rows == null ? dependencyIds.length > 0 ? 0 : -1 : rows.length > 0 ? rows[0] : -1;
+
+                private int position = row < 0 ? 0 : offsets[row];
+
+                public boolean hasNext()
+                {
+                    return row >= 0 && ( position < offsets[row + 1] || advance() );
+                }
+
+                public DependencyUsage next()
+                {
+                    if ( !hasNext() )
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return new DependencyUsage( symbols.getName( dependencyIds[row] ),
+                                                usedByNames[usedBy[position++]] );
+                }
+
+                private boolean advance()
+                {
+                    do
+                    {
+                        if ( rows == null )
+                        {
+                            row = row + 1 < dependencyIds.length ? row + 1 : -1;
+                        }
+                        else
+                        {
+                            row = ++index < rows.length ? rows[index] : -1;
+                        }
+                    }
+                    while ( row >= 0 && offsets[row] == offsets[row + 1] );
+
+                    if ( row < 0 )
+                    {
+                        return false;
+                    }
+                    position = offsets[row];
+                    return true;
+                }
+            };
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        public boolean contains( Object object )
+        {
+            if ( !( object instanceof DependencyUsage ) )
+            {
+                return false;
+            }
+
+            DependencyUsage usage = (DependencyUsage) object;
+            int row = getRow( symbols.lookup( usage.getDependencyClass() ) );
+            if ( row < 0 || rows != null && Arrays.binarySearch( rows, row ) < 0 )
+            {
+                return false;
+            }
+            return DependencyUsageGraph.this.contains( row, usage.getUsedBy() );
+        }
+
+        public boolean isEmpty()
+        {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * An immutable set of artifacts in an array, in the order they were given, with an open addressing table of their
+ * indexes for lookups. As in a hash set, lookups rely on the hash codes of the artifacts not changing, while its own
+ * hash code and equality are those of the artifacts as they are when compared.
+ * <p>
+ * {@link #of(Collection)} returns an immutable set as is, so that analyses derived from one another share the sets
+ * they do not change.
+ */
+final class ImmutableArtifactSet
+    extends AbstractSet<Artifact>
+{
+    // constants --------------------------------------------------------------
+
+    static final ImmutableArtifactSet EMPTY = new ImmutableArtifactSet( new Artifact[0] );
+
+    // fields -----------------------------------------------------------------
+
+    private final Artifact[] artifacts;
+
+    /**
+     * The index of each artifact plus one, at the slot of its hash code, <code>0</code> for free slots.
+     */
+    private final int[] table;
+
+    // constructors -----------------------------------------------------------
+
+    /**
+     * @param artifacts distinct artifacts, not modified afterwards
+     */
+    private ImmutableArtifactSet( Artifact[] artifacts )
+    {
+        this.artifacts = artifacts;
+        this.table = new int[Integer.highestOneBit( Math.max( 1, artifacts.length ) ) * 4];
+
+        for ( int i = 0; i < artifacts.length; i++ )
+        {
+            int slot = slot( artifacts[i].hashCode() );
+            while ( table[slot] != 0 )
+            {
+                slot = ( slot + 1 ) & ( table.length - 1 );
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @param artifacts some artifacts, or <code>null</code> for none
+     * @return an immutable set of the distinct artifacts by {@link Artifact#equals(Object)}, which is the given one if
+     *         it is an immutable set already
+     */
+    static ImmutableArtifactSet of( Collection<Artifact> artifacts )
+    {
+        if ( artifacts instanceof ImmutableArtifactSet )
+        {
+            return (ImmutableArtifactSet) artifacts;
+        }
+        if ( artifacts == null || artifacts.isEmpty() )
+        {
+            return EMPTY;
+        }
+
+        // any other set may have its own equality, such as a sorted or an identity set
+        Set<Artifact> distinct = new LinkedHashSet<Artifact>( artifacts );
+        return wrap( distinct.toArray( new Artifact[distinct.size()] ) );
+    }
+
+    /**
+     * @param artifacts distinct artifacts, not modified afterwards
+     * @return an immutable set of the artifacts of the array
+     */
+    static ImmutableArtifactSet wrap( Artifact[] artifacts )
+    {
+        return artifacts.length == 0 ? EMPTY : new ImmutableArtifactSet( artifacts );
+    }
+
+    /**
+     * @param artifact an artifact
+     * @return the index of the artifact in the iteration order, or <code>-1</code> if the set does not contain it
+     */
+    int indexOf( Object artifact )
+    {
+        if ( artifact == null || artifacts.length == 0 )
+        {
+            return -1;
+        }
+
+        for ( int slot = slot( artifact.hashCode() ); table[slot] != 0; slot = ( slot + 1 ) & ( table.length - 1 ) )
+        {
+            Artifact candidate = artifacts[table[slot] - 1];
+            if ( candidate == artifact || candidate.equals( artifact ) )
+            {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index an index in the iteration order
+     * @return the artifact at the index
+     */
+    Artifact get( int index )
+    {
+        return artifacts[index];
+    }
+
+    /**
+     * @param keep whether to keep an artifact
+     * @return the set of the artifacts kept, which is this set if all are
+     */
+    ImmutableArtifactSet filter( Predicate<Artifact> keep )
+    {
+        Artifact[] kept = new Artifact[artifacts.length];
+        int count = 0;
+        for ( Artifact artifact : artifacts )
+        {
+            if ( keep.test( artifact ) )
+            {
+                kept[count++] = artifact;
+            }
+        }
+        return count == artifacts.length ? this : wrap( Arrays.copyOf( kept, count ) );
+    }
+
+    // Set methods ------------------------------------------------------------
+
+    /*
+     * @see java.util.AbstractCollection#iterator()
+     */
+    public Iterator<Artifact> iterator()
+    {
+        return Collections.unmodifiableList( Arrays.asList( artifacts ) ).iterator();
+    }
+
+    /*
+     * @see java.util.AbstractCollection#size()
+     */
+    public int size()
+    {
+        return artifacts.length;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#contains(java.lang.Object)
+     */
+    public boolean contains( Object object )
+    {
+        return indexOf( object ) >= 0;
+    }
+
+    // private methods --------------------------------------------------------
+
+    private int slot( int hash )
+    {
+        return ( hash ^ ( hash >>> 16 ) ) & ( table.length - 1 );
+    }
+}
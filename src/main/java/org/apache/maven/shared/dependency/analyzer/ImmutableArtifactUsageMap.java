@@ -0,0 +1,242 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * An immutable map of artifacts to their usages, storing the usage sets in an array in the order of an
+ * {@link ImmutableArtifactSet} of the artifacts.
+ * <p>
+ * {@link #of(Map)} copies the usage sets that may still be modified into unmodifiable sets, and shares those an
+ * analysis builds, which are immutable: the usage views of a {@link DependencyUsageGraph}, the usages kept by a
+ * {@link UsageRetention}, and empty sets. It returns an immutable map as is.
+ */
+final class ImmutableArtifactUsageMap
+    extends AbstractMap<Artifact, Set<DependencyUsage>>
+{
+    // constants --------------------------------------------------------------
+
+    static final ImmutableArtifactUsageMap EMPTY = new ImmutableArtifactUsageMap( ImmutableArtifactSet.EMPTY,
+                                                                                    new Object[0] );
+
+    // fields -----------------------------------------------------------------
+
+    private final ImmutableArtifactSet artifacts;
+
+    private final Object[] usages;
+
+    // constructors -----------------------------------------------------------
+
+    /**
+     * @param artifacts the artifacts
+     * @param usages the immutable usage sets of the artifacts, not modified afterwards
+     */
+    private ImmutableArtifactUsageMap( ImmutableArtifactSet artifacts, Object[] usages )
+    {
+        this.artifacts = artifacts;
+        this.usages = usages;
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @param map artifacts mapped to their usages, or <code>null</code> for none
+     * @return an immutable map of the artifacts to immutable copies of their usage sets, sharing those that are
+     *         immutable already, which is the given map if it is immutable
+     */
+    static ImmutableArtifactUsageMap of( Map<Artifact, Set<DependencyUsage>> map )
+    {
+        if ( map instanceof ImmutableArtifactUsageMap )
+        {
+            return (ImmutableArtifactUsageMap) map;
+        }
+        if ( map == null || map.isEmpty() )
+        {
+            return EMPTY;
+        }
+
+        // any other map may have its own equality, such as a sorted or an identity map
+        Map<Artifact, Set<DependencyUsage>> distinct = new LinkedHashMap<Artifact, Set<DependencyUsage>>( map );
+
+        Artifact[] artifacts = new Artifact[distinct.size()];
+        Object[] usages = new Object[distinct.size()];
+        int i = 0;
+        for ( Entry<Artifact, Set<DependencyUsage>> entry : distinct.entrySet() )
+        {
+            artifacts[i] = entry.getKey();
+            usages[i++] = copy( entry.getValue() );
+        }
+        return new ImmutableArtifactUsageMap( ImmutableArtifactSet.wrap( artifacts ), usages );
+    }
+
+    /**
+     * @param artifacts some artifacts, or <code>null</code> for none
+     * @return an immutable map of the artifacts to no usages
+     */
+    static ImmutableArtifactUsageMap withoutUsages( Collection<Artifact> artifacts )
+    {
+        ImmutableArtifactSet set = ImmutableArtifactSet.of( artifacts );
+        Object[] usages = new Object[set.size()];
+        Arrays.fill( usages, Collections.<DependencyUsage>emptySet() );
+        return new ImmutableArtifactUsageMap( set, usages );
+    }
+
+    /**
+     * @param added some artifacts
+     * @return a map of the artifacts of this map to their usages, and of the added artifacts it does not contain to
+     *         no usages, which is this map if it contains them all
+     */
+    ImmutableArtifactUsageMap plus( Collection<Artifact> added )
+    {
+        Artifact[] plusArtifacts = new Artifact[artifacts.size() + added.size()];
+        Object[] plusUsages = Arrays.copyOf( usages, plusArtifacts.length );
+        int count = artifacts.size();
+        for ( int i = 0; i < count; i++ )
+        {
+            plusArtifacts[i] = artifacts.get( i );
+        }
+        for ( Artifact artifact : new LinkedHashSet<Artifact>( added ) )
+        {
+            if ( !artifacts.contains( artifact ) )
+            {
+                plusArtifacts[count] = artifact;
+                plusUsages[count++] = Collections.<DependencyUsage>emptySet();
+            }
+        }
+
+        if ( count == artifacts.size() )
+        {
+            return this;
+        }
+        return new ImmutableArtifactUsageMap( ImmutableArtifactSet.wrap( Arrays.copyOf( plusArtifacts, count ) ),
+                                              Arrays.copyOf( plusUsages, count ) );
+    }
+
+    // Map methods ------------------------------------------------------------
+
+    /*
+     * @see java.util.AbstractMap#keySet()
+     */
+    public ImmutableArtifactSet keySet()
+    {
+        return artifacts;
+    }
+
+    /*
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    public Set<DependencyUsage> get( Object key )
+    {
+        int index = artifacts.indexOf( key );
+        return index >= 0 ? getUsages( index ) : null;
+    }
+
+    /*
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    public boolean containsKey( Object key )
+    {
+        return artifacts.contains( key );
+    }
+
+    /*
+     * @see java.util.AbstractMap#size()
+     */
+    public int size()
+    {
+        return artifacts.size();
+    }
+
+    /*
+     * @see java.util.AbstractMap#entrySet()
+     */
+    public Set<Entry<Artifact, Set<DependencyUsage>>> entrySet()
+    {
+        return new AbstractSet<Entry<Artifact, Set<DependencyUsage>>>()
+        {
+            public Iterator<Entry<Artifact, Set<DependencyUsage>>> iterator()
+            {
+                return new Iterator<Entry<Artifact, Set<DependencyUsage>>>()
+                {
+                    private int index;
+
+                    public boolean hasNext()
+                    {
+                        return index < usages.length;
+                    }
+
+                    public Entry<Artifact, Set<DependencyUsage>> next()
+                    {
+                        if ( !hasNext() )
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        Artifact artifact = artifacts.get( index );
+                        return new SimpleImmutableEntry<Artifact, Set<DependencyUsage>>( artifact,
+                                                                                         getUsages( index++ ) );
+                    }
+                };
+            }
+
+            public int size()
+            {
+                return usages.length;
+            }
+        };
+    }
+
+    // private methods --------------------------------------------------------
+
+    @SuppressWarnings( "unchecked" )
+    private Set<DependencyUsage> getUsages( int index )
+    {
+        return (Set<DependencyUsage>) usages[index];
+    }
+
+    private static Set<DependencyUsage> copy( Set<DependencyUsage> usages )
+    {
+        if ( usages == null )
+        {
+            return Collections.emptySet();
+        }
+
+        // the usage views of a graph and the usages kept by a retention are immutable, shared rather than copied
+        if ( usages == Collections.EMPTY_SET || DependencyUsageGraph.isUsageView( usages )
+            || UsageRetention.isRetained( usages ) )
+        {
+            return usages;
+        }
+
+        return Collections.unmodifiableSet( new LinkedHashSet<DependencyUsage>( usages ) );
+    }
+}
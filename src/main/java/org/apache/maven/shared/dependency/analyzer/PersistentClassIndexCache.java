@@ -0,0 +1,436 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of the classes contained in jar files, shared by every build using the same cache directory.
+ * <p>
+ * Each jar gets one entry file named after a digest of its absolute path, size and modification time, so a jar that
+ * is rewritten gets a new entry. Entries are written to a temporary file then atomically renamed, which lets several
+ * processes share the directory: readers see either a complete entry or none, and a damaged entry is read as a miss.
+ * The directory is kept under a size cap by evicting the least recently used entries, recency being tracked through
+ * the entry file modification time. Its size is tracked in memory from the entries written, the directory being
+ * listed again only when that size passes the cap or every 64 writes, to account for the entries
+ * of other processes.
+ * <p>
+ * Entry format: magic, version, jar path, size and modification time, class count, then the sorted class names, each
+ * stored as the length of the prefix it shares with the previous name followed by the remaining suffix.
+ */
+public class PersistentClassIndexCache
+{
+    // constants --------------------------------------------------------------
+
+    /**
+     * Default size cap of the cache directory, in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4d444143;
+
+    private static final byte VERSION = 1;
+
+    private static final String ENTRY_SUFFIX = ".idx";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final long TEMP_EXPIRY = 60L * 60 * 1000;
+
+    /**
+     * Number of entries written between two listings of the cache directory.
+     */
+    static final int SCAN_INTERVAL = 64;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // fields -----------------------------------------------------------------
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Approximate size of the cache directory, in bytes, <code>-1</code> until it is first listed.
+     */
+    private long approximateSize = -1;
+
+    private int writesSinceScan;
+
+    private long scanCount;
+
+    // constructors -----------------------------------------------------------
+
+    public PersistentClassIndexCache( File directory )
+    {
+        this( directory, DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * @param directory the cache directory, created on first write
+     * @param maxSize the size cap of the cache directory, in bytes
+     */
+    public PersistentClassIndexCache( File directory, long maxSize )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @param jar the jar file
+     * @return the cached classes of the jar, or <code>null</code> if the jar is not cached in its current state
+     */
+    public Set<String> get( File jar )
+    {
+        String path = jar.getAbsolutePath();
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+
+        File entry = getEntryFile( path, length, lastModified );
+        Set<String> classes = entry.isFile() ? readEntry( entry, path, length, lastModified ) : null;
+
+        if ( classes == null )
+        {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+
+        // best effort: recency for the LRU eviction
+        entry.setLastModified( System.currentTimeMillis() );
+
+        return classes;
+    }
+
+    /**
+     * Stores the classes of a jar. Failing to write the cache is not an error, the jar is simply indexed again next
+     * time.
+     *
+     * @param jar the jar file
+     * @param classes the classes contained in the jar
+     */
+    public void put( File jar, Set<String> classes )
+    {
+        String path = jar.getAbsolutePath();
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+
+        File entry = getEntryFile( path, length, lastModified );
+
+        if ( !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory() )
+        {
+            return;
+        }
+
+        File temp = null;
+        long entrySize = 0;
+        try
+        {
+            temp = File.createTempFile( entry.getName(), TEMP_SUFFIX, directory );
+            entrySize = writeEntry( temp, path, length, lastModified, classes );
+
+            try
+            {
+                Files.move( temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException exception )
+            {
+                Files.move( temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+            temp = null;
+        }
+        catch ( IOException exception )
+        {
+            // another process may have written the same entry, the cache is only an optimization anyway
+        }
+        finally
+        {
+            if ( temp != null )
+            {
+                temp.delete();
+            }
+        }
+
+        written( entrySize );
+    }
+
+    /**
+     * @return the number of lookups that found the jar in the cache
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find the jar in the cache
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries evicted by this instance to keep the cache under its size cap
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the cache directory
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @return the number of times this instance listed the cache directory
+     */
+    synchronized long getScanCount()
+    {
+        return scanCount;
+    }
+
+    // private methods --------------------------------------------------------
+
+    private File getEntryFile( String path, long length, long lastModified )
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException exception )
+        {
+            throw new IllegalStateException( exception );
+        }
+
+        digest.update( path.getBytes( StandardCharsets.UTF_8 ) );
+        digest.update( ( ":" + length + ":" + lastModified ).getBytes( StandardCharsets.UTF_8 ) );
+
+        byte[] hash = digest.digest();
+        char[] name = new char[hash.length * 2];
+        for ( int i = 0; i < hash.length; i++ )
+        {
+            name[i * 2] = HEX[( hash[i] >> 4 ) & 0xF];
+            name[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+
+        return new File( directory, new String( name ) + ENTRY_SUFFIX );
+    }
+
+    private static Set<String> readEntry( File entry, String path, long length, long lastModified )
+    {
+        try
+        {
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( entry ) ) );
+            try
+            {
+                if ( in.readInt() != MAGIC || in.readByte() != VERSION || !in.readUTF().equals( path )
+                    || in.readLong() != length || in.readLong() != lastModified )
+                {
+                    return null;
+                }
+
+                int count = in.readInt();
+                Set<String> classes = new HashSet<String>( Math.max( 16, (int) ( count / 0.75f ) + 1 ) );
+
+                String previous = "";
+                for ( int i = 0; i < count; i++ )
+                {
+                    int prefix = in.readUnsignedShort();
+                    String className = previous.substring( 0, prefix ).concat( in.readUTF() );
+                    classes.add( className );
+                    previous = className;
+                }
+
+                return classes;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch ( IOException exception )
+        {
+            // concurrently evicted or damaged, index the jar again
+            return null;
+        }
+        catch ( RuntimeException exception )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private static long writeEntry( File file, String path, long length, long lastModified, Set<String> classes )
+        throws IOException
+    {
+        String[] sorted = classes.toArray( new String[classes.size()] );
+        Arrays.sort( sorted );
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeByte( VERSION );
+            out.writeUTF( path );
+            out.writeLong( length );
+            out.writeLong( lastModified );
+            out.writeInt( sorted.length );
+
+            String previous = "";
+            for ( String className : sorted )
+            {
+                int prefix = 0;
+                int max = Math.min( Math.min( previous.length(), className.length() ), 0xFFFF );
+                while ( prefix < max && previous.charAt( prefix ) == className.charAt( prefix ) )
+                {
+                    prefix++;
+                }
+
+                out.writeShort( prefix );
+                out.writeUTF( className.substring( prefix ) );
+                previous = className;
+            }
+            out.flush();
+            return out.size();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Accounts for a written entry, evicting entries if the cache directory may have passed its size cap.
+     */
+    private synchronized void written( long entrySize )
+    {
+        // a replaced entry is counted twice: the size is only overestimated, until the next listing
+        if ( approximateSize >= 0 && ++writesSinceScan < SCAN_INTERVAL && approximateSize + entrySize <= maxSize )
+        {
+            approximateSize += entrySize;
+            return;
+        }
+
+        evict();
+    }
+
+    private void evict()
+    {
+        scanCount++;
+        writesSinceScan = 0;
+
+        final long now = System.currentTimeMillis();
+
+        File[] entries = directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                if ( file.getName().endsWith( TEMP_SUFFIX ) && now - file.lastModified() > TEMP_EXPIRY )
+                {
+                    // left over by a process that died while writing
+                    file.delete();
+                }
+
+                return file.getName().endsWith( ENTRY_SUFFIX );
+            }
+        } );
+
+        if ( entries == null )
+        {
+            approximateSize = -1;
+            return;
+        }
+
+        final long[] lastModified = new long[entries.length];
+        long size = 0;
+        Integer[] order = new Integer[entries.length];
+        for ( int i = 0; i < entries.length; i++ )
+        {
+            lastModified[i] = entries[i].lastModified();
+            size += entries[i].length();
+            order[i] = i;
+        }
+
+        if ( size <= maxSize )
+        {
+            approximateSize = size;
+            return;
+        }
+
+        Arrays.sort( order, new Comparator<Integer>()
+        {
+            public int compare( Integer a, Integer b )
+            {
+                return Long.compare( lastModified[a], lastModified[b] );
+            }
+        } );
+
+        for ( int i = 0; i < order.length && size > maxSize; i++ )
+        {
+            File entry = entries[order[i]];
+            long entrySize = entry.length();
+
+            if ( entry.delete() )
+            {
+                size -= entrySize;
+                evictionCount.incrementAndGet();
+            }
+        }
+        approximateSize = size;
+    }
+}
@@ -20,14 +20,8 @@ package org.apache.maven.shared.dependency.analyzer;
  */
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
@@ -42,11 +36,12 @@ public class ProjectDependencyAnalysis
 {
     // fields -----------------------------------------------------------------
 
-    private final Map<Artifact, Set<DependencyUsage>> usedDeclaredArtifacts;
+    // immutable, shared with the analyses derived from this one when they do not change them
+    private final ImmutableArtifactUsageMap usedDeclaredArtifacts;
 
-    private final Map<Artifact, Set<DependencyUsage>> usedUndeclaredArtifacts;
+    private final ImmutableArtifactUsageMap usedUndeclaredArtifacts;
 
-    private final Set<Artifact> unusedDeclaredArtifacts;
+    private final ImmutableArtifactSet unusedDeclaredArtifacts;
 
     // constructors -----------------------------------------------------------
 
@@ -58,16 +53,25 @@ public class ProjectDependencyAnalysis
     public ProjectDependencyAnalysis( Set<Artifact> usedDeclaredArtifacts, Set<Artifact> usedUndeclaredArtifacts,
                                       Set<Artifact> unusedDeclaredArtifacts )
     {
-        this( toMap( usedDeclaredArtifacts ), toMap( usedUndeclaredArtifacts ), unusedDeclaredArtifacts );
+        this( ImmutableArtifactUsageMap.withoutUsages( usedDeclaredArtifacts ),
+              ImmutableArtifactUsageMap.withoutUsages( usedUndeclaredArtifacts ), unusedDeclaredArtifacts );
     }
 
+    /**
+     * The artifacts and their usage sets are copied, except the immutable usage sets built by an analysis, which are
+     * shared.
+     *
+     * @param usedDeclaredArtifacts the used and declared artifacts mapped to their usages
+     * @param usedUndeclaredArtifacts the used but not declared artifacts mapped to their usages
+     * @param unusedDeclaredArtifacts the unused but declared artifacts
+     */
     public ProjectDependencyAnalysis( Map<Artifact, Set<DependencyUsage>> usedDeclaredArtifacts,
                                       Map<Artifact, Set<DependencyUsage>> usedUndeclaredArtifacts,
                                       Set<Artifact> unusedDeclaredArtifacts )
     {
-        this.usedDeclaredArtifacts = safeCopy( usedDeclaredArtifacts );
-        this.usedUndeclaredArtifacts = safeCopy( usedUndeclaredArtifacts );
-        this.unusedDeclaredArtifacts = safeCopy( unusedDeclaredArtifacts );
+        this.usedDeclaredArtifacts = ImmutableArtifactUsageMap.of( usedDeclaredArtifacts );
+        this.usedUndeclaredArtifacts = ImmutableArtifactUsageMap.of( usedUndeclaredArtifacts );
+        this.unusedDeclaredArtifacts = ImmutableArtifactSet.of( unusedDeclaredArtifacts );
     }
 
     // public methods ---------------------------------------------------------
@@ -123,15 +127,9 @@ public class ProjectDependencyAnalysis
      */
     public ProjectDependencyAnalysis ignoreNonCompile()
     {
-        Set<Artifact> filteredUnusedDeclared = new HashSet<Artifact>( unusedDeclaredArtifacts );
-        for ( Iterator<Artifact> iter = filteredUnusedDeclared.iterator(); iter.hasNext(); )
-        {
-            Artifact artifact = iter.next();
-            if ( !artifact.getScope().equals( Artifact.SCOPE_COMPILE ) )
-            {
-                iter.remove();
-            }
-        }
+        // only the unused declared artifacts are copied, if some are filtered out
+        Set<Artifact> filteredUnusedDeclared =
+            unusedDeclaredArtifacts.filter( artifact -> artifact.getScope().equals( Artifact.SCOPE_COMPILE ) );
 
         return new ProjectDependencyAnalysis( usedDeclaredArtifacts, usedUndeclaredArtifacts, filteredUnusedDeclared );
     }
@@ -152,23 +150,14 @@ public class ProjectDependencyAnalysis
     {
         Set<String> forced = new HashSet<String>( Arrays.asList( forceUsedDependencies ) );
 
-        Set<Artifact> forcedUnusedDeclared = new HashSet<Artifact>( unusedDeclaredArtifacts );
-        Map<Artifact, Set<DependencyUsage>> forcedUsedDeclared = new HashMap<Artifact, Set<DependencyUsage>>(
-            usedDeclaredArtifacts
-        );
+        Set<Artifact> forcedArtifacts = new HashSet<Artifact>();
 
-        for ( Iterator<Artifact> iter = forcedUnusedDeclared.iterator(); iter.hasNext(); )
+        for ( Artifact artifact : unusedDeclaredArtifacts )
         {
-            Artifact artifact = iter.next();
-
             if ( forced.remove( artifact.getGroupId() + ':' + artifact.getArtifactId() ) )
             {
                 // ok, change artifact status from unused-declared to used-declared
-                iter.remove();
-                if ( !forcedUsedDeclared.containsKey( artifact ) )
-                {
-                    forcedUsedDeclared.put( artifact, Collections.<DependencyUsage>emptySet() );
-                }
+                forcedArtifacts.add( artifact );
             }
         }
 
@@ -201,6 +190,11 @@ public class ProjectDependencyAnalysis
             throw new ProjectDependencyAnalyzerException( "Trying to force use of dependencies which are " + builder );
         }
 
+        // the used undeclared artifacts are shared, the forced ones are moved
+        Map<Artifact, Set<DependencyUsage>> forcedUsedDeclared = usedDeclaredArtifacts.plus( forcedArtifacts );
+        Set<Artifact> forcedUnusedDeclared =
+            unusedDeclaredArtifacts.filter( artifact -> !forcedArtifacts.contains( artifact ) );
+
         return new ProjectDependencyAnalysis( forcedUsedDeclared, usedUndeclaredArtifacts, forcedUnusedDeclared );
     }
 
@@ -211,6 +205,7 @@ public class ProjectDependencyAnalysis
      */
     public int hashCode()
     {
+        // computed on each call, as artifacts can be changed
         int hashCode = getUsedDeclaredArtifacts().hashCode();
         hashCode = ( hashCode * 37 ) + getUsedUndeclaredArtifacts().hashCode();
         hashCode = ( hashCode * 37 ) + getUnusedDeclaredArtifacts().hashCode();
@@ -274,43 +269,4 @@ public class ProjectDependencyAnalysis
 
         return buffer.toString();
     }
-
-    // private methods --------------------------------------------------------
-
-    private <T> Set<T> safeCopy( Set<T> set )
-    {
-        return ( set == null ) ? Collections.<T>emptySet()
-                        : Collections.unmodifiableSet( new LinkedHashSet<T>( set ) );
-    }
-
-    private Map<Artifact, Set<DependencyUsage>> safeCopy( Map<Artifact, Set<DependencyUsage>> map )
-    {
-        Map<Artifact, Set<DependencyUsage>> copy = new LinkedHashMap<Artifact, Set<DependencyUsage>>();
-
-        for ( Entry<Artifact, Set<DependencyUsage>> entry : map.entrySet() )
-        {
-            copy.put( entry.getKey(), safeCopy( entry.getValue() ) );
-        }
-
-        return Collections.unmodifiableMap( copy );
-    }
-
-    private static Map<Artifact, Set<DependencyUsage>> toMap( Set<Artifact> set )
-    {
-        if ( set == null )
-        {
-            return Collections.<Artifact, Set<DependencyUsage>>emptyMap();
-        }
-        else
-        {
-            Map<Artifact, Set<DependencyUsage>> map = new HashMap<Artifact, Set<DependencyUsage>>();
-
-            for ( Artifact artifact : set )
-            {
-                map.put( artifact, Collections.<DependencyUsage>emptySet() );
-            }
-
-            return map;
-        }
-    }
 }
@@ -0,0 +1,325 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory cache of the classes contained in artifacts, shared by every analysis running in the JVM: the modules of a
+ * reactor and the successive builds of a Maven daemon.
+ * <p>
+ * A jar is identified by its path, file key, size and modification time. A directory is identified by its path, the
+ * modification times of its whole directory tree and its number of class files, since adding or removing a class file
+ * changes the modification time of its parent directory; class files themselves are not read, as only their names are
+ * cached.
+ * <p>
+ * Staleness window: a class file added and another removed in the same directory within the granularity of the file
+ * system modification times, one or two seconds on some file systems, leave the key unchanged, so the stale class
+ * names are returned until the directory changes again. A jar rewritten with the same size within that granularity
+ * is missed likewise, unless its file key changes.
+ * <p>
+ * The cache is bounded by the total number of cached class names: least recently used artifacts are evicted first.
+ * Cached class sets are also softly referenced, so the garbage collector can reclaim them under memory pressure, but
+ * they are otherwise kept for the life of the JVM: {@link DefaultProjectDependencyAnalyzer} only uses a cache it is
+ * given, and long-lived processes sharing one should {@link #clear()} it between builds.
+ */
+public class SharedClassIndexCache
+{
+    // constants --------------------------------------------------------------
+
+    /**
+     * Default bound on the number of class names cached.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 2000000;
+
+    private static final SharedClassIndexCache INSTANCE = new SharedClassIndexCache( DEFAULT_MAX_WEIGHT );
+
+    // fields -----------------------------------------------------------------
+
+    private final long maxWeight;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>( 64, 0.75f, true );
+
+    private final ReferenceQueue<Set<String>> collected = new ReferenceQueue<Set<String>>();
+
+    private long weight;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    // constructors -----------------------------------------------------------
+
+    /**
+     * @param maxWeight the maximum number of class names cached
+     */
+    public SharedClassIndexCache( long maxWeight )
+    {
+        this.maxWeight = maxWeight;
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @return the cache shared by the whole JVM, used by analyzers only when set explicitly
+     * @see DefaultProjectDependencyAnalyzer#setSharedClassIndexCache(SharedClassIndexCache)
+     */
+    public static SharedClassIndexCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Computes the identity of an artifact file in its current state.
+     *
+     * @param file the jar file or directory
+     * @return the cache key of the file, or <code>null</code> if the file does not exist
+     * @throws IOException if the file attributes cannot be read
+     */
+    public Key getKey( File file )
+        throws IOException
+    {
+        if ( !file.exists() )
+        {
+            return null;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes( file.toPath(), BasicFileAttributes.class );
+
+        if ( attributes.isDirectory() )
+        {
+            // the number of class files is counted from the names listed for the stamp
+            long[] classFileCount = new long[1];
+            long stamp = getDirectoryTreeStamp( file, classFileCount );
+            return new Key( file.getAbsolutePath(), null, classFileCount[0], stamp );
+        }
+
+        return new Key( file.getAbsolutePath(), attributes.fileKey(), attributes.size(),
+                        attributes.lastModifiedTime().toMillis() );
+    }
+
+    /**
+     * @param key the key computed by {@link #getKey(File)}
+     * @return the cached classes, unmodifiable, or <code>null</code>
+     */
+    public synchronized Set<String> get( Key key )
+    {
+        expungeCollected();
+
+        Entry entry = entries.get( key );
+        Set<String> classes = entry != null ? entry.get() : null;
+
+        if ( classes == null )
+        {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return classes;
+    }
+
+    /**
+     * @param key the key computed by {@link #getKey(File)} before reading the classes
+     * @param classes the classes contained in the artifact
+     * @return the cached classes, unmodifiable
+     */
+    public synchronized Set<String> put( Key key, Set<String> classes )
+    {
+        expungeCollected();
+
+        Set<String> value = Collections.unmodifiableSet( classes );
+        Entry previous = entries.put( key, new Entry( key, value, classes.size(), collected ) );
+        if ( previous != null )
+        {
+            weight -= previous.weight;
+        }
+        weight += classes.size();
+
+        for ( Iterator<Entry> iterator = entries.values().iterator(); weight > maxWeight && iterator.hasNext(); )
+        {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.weight;
+            evictionCount++;
+        }
+
+        return value;
+    }
+
+    /**
+     * Empties the cache, statistics are kept.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return the number of lookups that found the artifact in the cache
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that did not find the artifact in the cache
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * @return the number of artifacts evicted, because of the weight bound or by the garbage collector
+     */
+    public synchronized long getEvictionCount()
+    {
+        expungeCollected();
+
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of class names currently cached
+     */
+    public synchronized long getWeight()
+    {
+        expungeCollected();
+
+        return weight;
+    }
+
+    // private methods --------------------------------------------------------
+
+    private void expungeCollected()
+    {
+        Entry entry;
+        while ( ( entry = (Entry) collected.poll() ) != null )
+        {
+            if ( entries.get( entry.key ) == entry )
+            {
+                entries.remove( entry.key );
+                weight -= entry.weight;
+                evictionCount++;
+            }
+        }
+    }
+
+    private static long getDirectoryTreeStamp( File directory, long[] classFileCount )
+    {
+        long stamp = directory.lastModified();
+
+        String[] names = directory.list();
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                // class files are not stat'ed, only their parent directory matters
+                if ( name.endsWith( ".class" ) )
+                {
+                    classFileCount[0]++;
+                }
+                else
+                {
+                    File child = new File( directory, name );
+                    if ( child.isDirectory() )
+                    {
+                        stamp = stamp * 31 + name.hashCode();
+                        stamp = stamp * 31 + getDirectoryTreeStamp( child, classFileCount );
+                    }
+                }
+            }
+        }
+
+        return stamp;
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * Identity of an artifact file in a given state.
+     */
+    public static final class Key
+    {
+        private final String path;
+
+        private final Object fileKey;
+
+        private final long size;
+
+        private final long stamp;
+
+        private Key( String path, Object fileKey, long size, long stamp )
+        {
+            this.path = path;
+            this.fileKey = fileKey;
+            this.size = size;
+            this.stamp = stamp;
+        }
+
+        public int hashCode()
+        {
+            return path.hashCode() * 31 + (int) ( stamp ^ ( stamp >>> 32 ) );
+        }
+
+        public boolean equals( Object object )
+        {
+            if ( !( object instanceof Key ) )
+            {
+                return false;
+            }
+
+            Key key = (Key) object;
+
+            return path.equals( key.path ) && size == key.size && stamp == key.stamp
+                && ( fileKey == null ? key.fileKey == null : fileKey.equals( key.fileKey ) );
+        }
+    }
+
+    private static final class Entry
+        extends SoftReference<Set<String>>
+    {
+        private final Key key;
+
+        private final int weight;
+
+        Entry( Key key, Set<String> classes, int weight, ReferenceQueue<Set<String>> queue )
+        {
+            super( classes, queue );
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
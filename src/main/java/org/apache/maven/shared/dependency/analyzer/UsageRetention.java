@@ -0,0 +1,299 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * How many of the dependency usages of each used artifact an analysis keeps: none, their count, the count and a few
+ * usages as samples, or all of them.
+ * <p>
+ * Short of {@link #FULL}, no usage graph is built: {@link #NONE} only scans for the referenced classes, while
+ * {@link #COUNTS} and {@link #samples(int)} count and sample the usages of each artifact as the scan pushes them. The
+ * usages held at any time are then bounded by the number of artifacts rather than by the number of references.
+ *
+ * @see DefaultProjectDependencyAnalyzer#setUsageRetention(UsageRetention)
+ */
+public final class UsageRetention
+{
+    // constants --------------------------------------------------------------
+
+    /**
+     * Keeps no usages: the usage sets are empty.
+     */
+    public static final UsageRetention NONE = new UsageRetention( Mode.NONE, 0 );
+
+    /**
+     * Keeps the number of usages of each artifact, given by {@link #getUsageCount(Set)}: the usage sets are empty.
+     */
+    public static final UsageRetention COUNTS = new UsageRetention( Mode.COUNTS, 0 );
+
+    /**
+     * Keeps every usage.
+     */
+    public static final UsageRetention FULL = new UsageRetention( Mode.FULL, Integer.MAX_VALUE );
+
+    private static final DependencyUsage[] NO_USAGES = new DependencyUsage[0];
+
+    // fields -----------------------------------------------------------------
+
+    private final Mode mode;
+
+    private final int sampleCount;
+
+    // constructors -----------------------------------------------------------
+
+    private UsageRetention( Mode mode, int sampleCount )
+    {
+        this.mode = mode;
+        this.sampleCount = sampleCount;
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * Keeps the number of usages of each artifact, given by {@link #getUsageCount(Set)}, and one usage of each of its
+     * first using classes in name order, that of the first dependency class it uses. The samples do not depend on the
+     * order in which a scan finds the usages.
+     *
+     * @param sampleCount the maximum number of usages kept per artifact
+     * @return the retention
+     */
+    public static UsageRetention samples( int sampleCount )
+    {
+        if ( sampleCount < 1 )
+        {
+            throw new IllegalArgumentException( "Sample count must be positive: " + sampleCount );
+        }
+
+        return new UsageRetention( Mode.SAMPLES, sampleCount );
+    }
+
+    /**
+     * @param usages the usages of an artifact, as kept by an analysis
+     * @return the number of usages of the artifact, which is more than the size of the set if some were not kept,
+     *         or <code>0</code> if they were not counted
+     */
+    public static int getUsageCount( Set<DependencyUsage> usages )
+    {
+        return usages instanceof RetainedUsageSet ? ( (RetainedUsageSet) usages ).usageCount : usages.size();
+    }
+
+    /**
+     * @return what is kept
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * @return the maximum number of usages kept per artifact
+     */
+    public int getSampleCount()
+    {
+        return sampleCount;
+    }
+
+    // Object methods ---------------------------------------------------------
+
+    /*
+     * @see java.lang.Object#hashCode()
+     */
+    public int hashCode()
+    {
+        return mode.hashCode() * 37 + sampleCount;
+    }
+
+    /*
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    public boolean equals( Object object )
+    {
+        if ( object instanceof UsageRetention )
+        {
+            UsageRetention retention = (UsageRetention) object;
+
+            return mode == retention.mode && sampleCount == retention.sampleCount;
+        }
+
+        return false;
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return mode == Mode.SAMPLES ? mode + "(" + sampleCount + ")" : mode.toString();
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @param graph the usage graph of the scan
+     * @param rows the rows of the classes of an artifact, in ascending order
+     * @return the usages kept for the artifact
+     */
+    Set<DependencyUsage> retain( DependencyUsageGraph graph, int[] rows )
+    {
+        if ( mode == Mode.FULL )
+        {
+            return graph.getUsages( rows );
+        }
+        if ( mode == Mode.NONE )
+        {
+            return Collections.emptySet();
+        }
+
+        if ( mode == Mode.COUNTS )
+        {
+            int usageCount = 0;
+            for ( int row : rows )
+            {
+                usageCount += graph.getUsedByCount( row );
+            }
+            return new RetainedUsageSet( NO_USAGES, usageCount );
+        }
+
+        Retainer retainer = newRetainer();
+        for ( DependencyUsage usage : graph.getUsages( rows ) )
+        {
+            retainer.add( usage );
+        }
+        return retainer.getUsages();
+    }
+
+    /**
+     * @return a retainer of the usages of an artifact, keeping their count and the samples of this retention
+     */
+    Retainer newRetainer()
+    {
+        return new Retainer( mode == Mode.SAMPLES ? sampleCount : 0 );
+    }
+
+    /**
+     * @param usages a set of usages
+     * @return whether the set was created by a retention, which makes it immutable
+     */
+    static boolean isRetained( Set<DependencyUsage> usages )
+    {
+        return usages instanceof RetainedUsageSet;
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * What a retention keeps of the usages of each artifact.
+     */
+    public enum Mode
+    {
+        NONE, COUNTS, SAMPLES, FULL
+    }
+
+    /**
+     * Counts the usages of an artifact as they are added, keeping at most the sample count of them: the usage of each
+     * of the first using classes by name with the first dependency class by name.
+     */
+    static final class Retainer
+    {
+        private final int sampleCount;
+
+        private final TreeMap<String, DependencyUsage> samples = new TreeMap<String, DependencyUsage>();
+
+        private int usageCount;
+
+        Retainer( int sampleCount )
+        {
+            this.sampleCount = sampleCount;
+        }
+
+        /**
+         * @param usage a usage of the artifact, added once
+         */
+        void add( DependencyUsage usage )
+        {
+            usageCount++;
+            if ( sampleCount == 0 )
+            {
+                return;
+            }
+
+            String usedBy = usage.getUsedBy();
+            DependencyUsage sample = samples.get( usedBy );
+            if ( sample != null )
+            {
+                if ( usage.getDependencyClass().compareTo( sample.getDependencyClass() ) < 0 )
+                {
+                    samples.put( usedBy, usage );
+                }
+            }
+            else if ( samples.size() < sampleCount )
+            {
+                samples.put( usedBy, usage );
+            }
+            else if ( usedBy.compareTo( samples.lastKey() ) < 0 )
+            {
+                samples.pollLastEntry();
+                samples.put( usedBy, usage );
+            }
+        }
+
+        /**
+         * @return the usages kept of the artifact
+         */
+        Set<DependencyUsage> getUsages()
+        {
+            return new RetainedUsageSet( samples.values().toArray( NO_USAGES ), usageCount );
+        }
+    }
+
+    /**
+     * The distinct usages kept of an artifact, with the number of its usages.
+     */
+    private static final class RetainedUsageSet
+        extends AbstractSet<DependencyUsage>
+    {
+        private final DependencyUsage[] samples;
+
+        private final int usageCount;
+
+        RetainedUsageSet( DependencyUsage[] samples, int usageCount )
+        {
+            this.samples = samples;
+            this.usageCount = usageCount;
+        }
+
+        public Iterator<DependencyUsage> iterator()
+        {
+            return Collections.unmodifiableList( Arrays.asList( samples ) ).iterator();
+        }
+
+        public int size()
+        {
+            return samples.length;
+        }
+    }
+}
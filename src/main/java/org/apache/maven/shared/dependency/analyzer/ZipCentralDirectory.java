@@ -0,0 +1,745 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip or jar file through a memory mapping, without opening the file as a
+ * {@link java.util.jar.JarFile}.
+ * <p>
+ * Only the end of central directory records and the central directory itself are read: no local headers, manifest or
+ * signature handling. Entry names are matched as bytes and class names are decoded straight from the mapping, so
+ * listing the classes of a jar allocates nothing per entry but the resulting class name. Zip64 archives and archives
+ * with prepended data (such as executable jars) are supported.
+ * <p>
+ * Class entries can also be listed with their location, then read at random, concurrently, through a shared
+ * {@link FileChannel}, or sliced from a mapping of the file when stored without compression.
+ * <p>
+ * The mapping of the central directory is released when the directory is closed, rather than when it is garbage
+ * collected, so that a scan does not keep the file mapped once done.
+ *
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">ZIP File Format Specification</a>
+ */
+public final class ZipCentralDirectory
+    implements Closeable
+{
+    // constants --------------------------------------------------------------
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_END_SIZE = 56;
+
+    private static final int HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int HEADER_SIZE = 46;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final byte[] CLASS_SUFFIX = { '.', 'c', 'l', 'a', 's', 's' };
+
+    private static final Unmapper UNMAPPER = newUnmapper();
+
+    // fields -----------------------------------------------------------------
+
+    private final File file;
+
+    private ByteBuffer directory;
+
+    private final long entryCount;
+
+    private final long base;
+
+    // constructors -----------------------------------------------------------
+
+    private ZipCentralDirectory( File file, ByteBuffer directory, long entryCount, long base )
+    {
+        this.file = file;
+        this.directory = directory;
+        this.entryCount = entryCount;
+        this.base = base;
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * Maps the central directory of a zip file.
+     *
+     * @param file the zip or jar file
+     * @return the central directory of the file
+     * @throws ZipException if the file is not a valid zip file
+     * @throws IOException if the file cannot be read
+     */
+    public static ZipCentralDirectory open( File file )
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+
+            int tailSize = (int) Math.min( size, END_SIZE + MAX_COMMENT_SIZE );
+            ByteBuffer tail = map( channel, size - tailSize, tailSize );
+
+            long entryCount;
+            long directorySize;
+            long directoryOffset;
+            long directoryEnd;
+            try
+            {
+                int end = findEnd( tail );
+                if ( end < 0 )
+                {
+                    throw new ZipException( "Cannot find zip end of central directory in " + file );
+                }
+
+                entryCount = tail.getShort( end + 10 ) & 0xFFFF;
+                directorySize = tail.getInt( end + 12 ) & 0xFFFFFFFFL;
+                directoryOffset = tail.getInt( end + 16 ) & 0xFFFFFFFFL;
+                directoryEnd = size - tailSize + end;
+
+                int locator = end - ZIP64_LOCATOR_SIZE;
+                if ( locator >= 0 && tail.getInt( locator ) == ZIP64_LOCATOR_SIGNATURE )
+                {
+                    // the stored offset does not account for prepended data either: the record is then looked for
+                    // right before its locator, where it is unless it has an extensible data sector
+                    long locatorPosition = size - tailSize + locator;
+                    long zip64End = tail.getLong( locator + 8 );
+                    ByteBuffer zip64 = mapZip64End( channel, zip64End, locatorPosition );
+                    if ( zip64 == null )
+                    {
+                        zip64End = locatorPosition - ZIP64_END_SIZE;
+                        zip64 = mapZip64End( channel, zip64End, locatorPosition );
+                    }
+                    if ( zip64 == null )
+                    {
+                        throw new ZipException( "Invalid zip64 end of central directory in " + file );
+                    }
+
+                    entryCount = zip64.getLong( 32 );
+                    directorySize = zip64.getLong( 40 );
+                    directoryOffset = zip64.getLong( 48 );
+                    directoryEnd = zip64End;
+                    unmap( zip64 );
+                }
+            }
+            finally
+            {
+                unmap( tail );
+            }
+
+            // the directory immediately precedes its end record, whatever the stored offset says about prepended data
+            long directoryStart = directoryEnd - directorySize;
+            if ( directorySize > Integer.MAX_VALUE || directoryStart < 0 || entryCount < 0 )
+            {
+                throw new ZipException( "Invalid zip central directory in " + file );
+            }
+
+            ByteBuffer directory = map( channel, directoryStart, (int) directorySize );
+
+            // entry offsets are relative to the start of the archive, after any prepended data
+            return new ZipCentralDirectory( file, directory, entryCount, directoryStart - directoryOffset );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return the number of entries in the central directory
+     */
+    public long getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * Gives the name of every <code>.class</code> entry to a consumer, as a class name with dots for slashes and
+     * without the <code>.class</code> suffix.
+     *
+     * @param consumer the consumer of class names
+     * @throws ZipException if a central directory header is invalid
+     */
+    public void acceptClassNames( Consumer<String> consumer )
+        throws ZipException
+    {
+        ByteBuffer directory = directory();
+        int limit = directory.limit();
+        char[] chars = new char[256];
+
+        int offset = 0;
+        for ( long i = 0; i < entryCount; i++ )
+        {
+            if ( offset > limit - HEADER_SIZE || directory.getInt( offset ) != HEADER_SIGNATURE )
+            {
+                throw new ZipException( "Invalid zip central directory header in " + file );
+            }
+
+            int nameLength = directory.getShort( offset + 28 ) & 0xFFFF;
+            int extraLength = directory.getShort( offset + 30 ) & 0xFFFF;
+            int commentLength = directory.getShort( offset + 32 ) & 0xFFFF;
+            int name = offset + HEADER_SIZE;
+
+            offset = name + nameLength + extraLength + commentLength;
+            if ( offset > limit )
+            {
+                throw new ZipException( "Invalid zip central directory header in " + file );
+            }
+
+            if ( endsWithClassSuffix( directory, name, nameLength ) )
+            {
+                int length = nameLength - CLASS_SUFFIX.length;
+                if ( chars.length < length )
+                {
+                    chars = new char[Math.max( length, chars.length * 2 )];
+                }
+
+                consumer.accept( decodeClassName( directory, name, length, chars ) );
+            }
+        }
+    }
+
+    /**
+     * Lists the <code>.class</code> entries, in central directory order.
+     *
+     * @return the class entries
+     * @throws ZipException if a central directory header is invalid
+     */
+    public List<Entry> getClassEntries()
+        throws ZipException
+    {
+        ByteBuffer directory = directory();
+        int limit = directory.limit();
+        List<Entry> entries = new ArrayList<Entry>();
+
+        int offset = 0;
+        for ( long i = 0; i < entryCount; i++ )
+        {
+            if ( offset > limit - HEADER_SIZE || directory.getInt( offset ) != HEADER_SIGNATURE )
+            {
+                throw new ZipException( "Invalid zip central directory header in " + file );
+            }
+
+            int nameLength = directory.getShort( offset + 28 ) & 0xFFFF;
+            int extraLength = directory.getShort( offset + 30 ) & 0xFFFF;
+            int commentLength = directory.getShort( offset + 32 ) & 0xFFFF;
+            int name = offset + HEADER_SIZE;
+            int header = offset;
+
+            offset = name + nameLength + extraLength + commentLength;
+            if ( offset > limit )
+            {
+                throw new ZipException( "Invalid zip central directory header in " + file );
+            }
+
+            if ( endsWithClassSuffix( directory, name, nameLength ) )
+            {
+                entries.add( readEntry( directory, header, name, nameLength, extraLength ) );
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads and inflates an entry. Reads are positional, so several threads can read entries through the same
+     * channel, each with its own inflater and buffer.
+     *
+     * @param channel a channel opened on the zip file
+     * @param entry the entry to read
+     * @param inflater a raw inflater, reset after use
+     * @param buffer the buffer to read the entry into, reused from one entry to the next
+     * @return the array holding the entry data from index zero, valid until the buffer reads another entry
+     * @throws ZipException if the entry is invalid
+     * @throws IOException if the file cannot be read
+     */
+    public byte[] readEntry( FileChannel channel, Entry entry, Inflater inflater, EntryBuffer buffer )
+        throws IOException
+    {
+        ByteBuffer localHeader = buffer.localHeader;
+        ( (Buffer) localHeader ).clear();
+        readFully( channel, localHeader, entry.localHeaderOffset );
+        if ( localHeader.getInt( 0 ) != LOCAL_HEADER_SIGNATURE )
+        {
+            throw new ZipException( "Invalid zip local header for " + entry.name + " in " + file );
+        }
+
+        long data = entry.localHeaderOffset + LOCAL_HEADER_SIZE + ( localHeader.getShort( 26 ) & 0xFFFF )
+            + ( localHeader.getShort( 28 ) & 0xFFFF );
+        int size = entry.size;
+        byte[] out = buffer.out = grow( buffer.out, size );
+
+        if ( entry.method == STORED )
+        {
+            readFully( channel, ByteBuffer.wrap( out, 0, size ), data );
+            return out;
+        }
+
+        // like ZipFile, a dummy byte follows the raw deflated data
+        byte[] in = buffer.in = grow( buffer.in, entry.compressedSize + 1 );
+        readFully( channel, ByteBuffer.wrap( in, 0, entry.compressedSize ), data );
+        in[entry.compressedSize] = 0;
+
+        try
+        {
+            inflater.setInput( in, 0, entry.compressedSize + 1 );
+            int length = 0;
+            while ( length < size && !inflater.finished() )
+            {
+                int count = inflater.inflate( out, length, size - length );
+                if ( count == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) )
+                {
+                    break;
+                }
+                length += count;
+            }
+
+            if ( length != size )
+            {
+                throw new ZipException( "Invalid deflated data for " + entry.name + " in " + file );
+            }
+        }
+        catch ( DataFormatException exception )
+        {
+            ZipException e = new ZipException( "Invalid deflated data for " + entry.name + " in " + file );
+            e.initCause( exception );
+            throw e;
+        }
+        finally
+        {
+            inflater.reset();
+        }
+
+        return out;
+    }
+
+    /**
+     * Gives the data of a stored entry as a slice of a memory mapping of the whole zip file, without copying it.
+     * Slices can be taken concurrently from the same mapping.
+     *
+     * @param file a read-only mapping of the zip file from its first byte
+     * @param entry the stored entry
+     * @return the entry data, in big-endian order
+     * @throws ZipException if the entry is not stored or is invalid
+     */
+    public ByteBuffer sliceEntry( ByteBuffer file, Entry entry )
+        throws ZipException
+    {
+        if ( entry.method != STORED )
+        {
+            throw new ZipException( "Cannot slice compressed zip entry " + entry.name + " in " + this.file );
+        }
+
+        ByteBuffer data = file.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        long header = entry.localHeaderOffset;
+        if ( header > data.limit() - LOCAL_HEADER_SIZE || data.getInt( (int) header ) != LOCAL_HEADER_SIGNATURE )
+        {
+            throw new ZipException( "Invalid zip local header for " + entry.name + " in " + this.file );
+        }
+
+        long start = header + LOCAL_HEADER_SIZE + ( data.getShort( (int) header + 26 ) & 0xFFFF )
+            + ( data.getShort( (int) header + 28 ) & 0xFFFF );
+        if ( start + entry.size > data.limit() )
+        {
+            throw new ZipException( "Invalid zip entry " + entry.name + " in " + this.file );
+        }
+
+        ( (Buffer) data ).limit( (int) start + entry.size );
+        ( (Buffer) data ).position( (int) start );
+        return data.slice();
+    }
+
+    /**
+     * Releases the mapping of the central directory. Entries listed before remain readable, but the class names and
+     * entries can no longer be listed.
+     */
+    public void close()
+    {
+        ByteBuffer directory = this.directory;
+        this.directory = null;
+        if ( directory != null )
+        {
+            unmap( directory );
+        }
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * Releases a read-only mapping right away rather than when it is garbage collected. The mapping, and any slice of
+     * it, must not be used afterwards. Left to the garbage collector when the running Java does not allow it.
+     *
+     * @param mapping a buffer returned by {@link FileChannel#map}, not a slice or duplicate of it
+     */
+    static void unmap( ByteBuffer mapping )
+    {
+        if ( UNMAPPER != null )
+        {
+            try
+            {
+                UNMAPPER.unmap( mapping );
+            }
+            catch ( ReflectiveOperationException | RuntimeException exception )
+            {
+                // left to the garbage collector
+            }
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private ByteBuffer directory()
+    {
+        if ( directory == null )
+        {
+            throw new IllegalStateException( "Zip central directory is closed for " + file );
+        }
+        return directory;
+    }
+
+    private static byte[] grow( byte[] buffer, int size )
+    {
+        return buffer != null && buffer.length >= size ? buffer : new byte[size];
+    }
+
+    private Entry readEntry( ByteBuffer directory, int header, int name, int nameLength, int extraLength )
+        throws ZipException
+    {
+        int method = directory.getShort( header + 10 ) & 0xFFFF;
+        long compressedSize = directory.getInt( header + 20 ) & 0xFFFFFFFFL;
+        long size = directory.getInt( header + 24 ) & 0xFFFFFFFFL;
+        long localHeaderOffset = directory.getInt( header + 42 ) & 0xFFFFFFFFL;
+
+        // zip64 values are only present for the fields that overflowed, in this order
+        for ( int extra = name + nameLength, end = extra + extraLength; extra + 4 <= end; )
+        {
+            int id = directory.getShort( extra ) & 0xFFFF;
+            int length = directory.getShort( extra + 2 ) & 0xFFFF;
+            int field = extra + 4;
+            extra = field + length;
+
+            if ( id == ZIP64_EXTRA_ID && extra <= end )
+            {
+                if ( size == ZIP64_MAGIC && field + 8 <= extra )
+                {
+                    size = directory.getLong( field );
+                    field += 8;
+                }
+                if ( compressedSize == ZIP64_MAGIC && field + 8 <= extra )
+                {
+                    compressedSize = directory.getLong( field );
+                    field += 8;
+                }
+                if ( localHeaderOffset == ZIP64_MAGIC && field + 8 <= extra )
+                {
+                    localHeaderOffset = directory.getLong( field );
+                }
+            }
+        }
+
+        byte[] bytes = new byte[nameLength];
+        for ( int i = 0; i < nameLength; i++ )
+        {
+            bytes[i] = directory.get( name + i );
+        }
+        String entryName = new String( bytes, StandardCharsets.UTF_8 );
+
+        if ( method != STORED && method != DEFLATED )
+        {
+            throw new ZipException( "Unsupported compression method " + method + " for " + entryName + " in " + file );
+        }
+        if ( size > Integer.MAX_VALUE - 1 || compressedSize > Integer.MAX_VALUE - 1 || localHeaderOffset < 0 )
+        {
+            throw new ZipException( "Invalid zip entry " + entryName + " in " + file );
+        }
+
+        return new Entry( entryName, method, (int) compressedSize, (int) size, base + localHeaderOffset );
+    }
+
+    private static void readFully( FileChannel channel, ByteBuffer buffer, long position )
+        throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            int count = channel.read( buffer, position );
+            if ( count < 0 )
+            {
+                throw new ZipException( "Unexpected end of zip file" );
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * @return the zip64 end of central directory record at an offset, or <code>null</code> if there is none ending
+     *         right before its locator
+     */
+    private static ByteBuffer mapZip64End( FileChannel channel, long zip64End, long locatorPosition )
+        throws IOException
+    {
+        if ( zip64End < 0 || zip64End > locatorPosition - ZIP64_END_SIZE )
+        {
+            return null;
+        }
+
+        ByteBuffer zip64 = map( channel, zip64End, ZIP64_END_SIZE );
+        if ( zip64.getInt( 0 ) != ZIP64_END_SIGNATURE || zip64End + 12 + zip64.getLong( 4 ) != locatorPosition )
+        {
+            unmap( zip64 );
+            return null;
+        }
+        return zip64;
+    }
+
+    private static ByteBuffer map( FileChannel channel, long position, int size )
+        throws IOException
+    {
+        return channel.map( FileChannel.MapMode.READ_ONLY, position, size ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * @return the way the running Java releases mappings, or <code>null</code> if they are left to the garbage
+     *         collector
+     */
+    private static Unmapper newUnmapper()
+    {
+        try
+        {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+            Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+            Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+            theUnsafe.setAccessible( true );
+            Object unsafe = theUnsafe.get( null );
+
+            return mapping -> invoke( invokeCleaner, unsafe, mapping );
+        }
+        catch ( ReflectiveOperationException | RuntimeException exception )
+        {
+            // Java 8
+            try
+            {
+                Method cleaner = Class.forName( "sun.nio.ch.DirectBuffer" ).getMethod( "cleaner" );
+                Method clean = Class.forName( "sun.misc.Cleaner" ).getMethod( "clean" );
+
+                return mapping -> invoke( clean, invoke( cleaner, mapping ) );
+            }
+            catch ( ReflectiveOperationException | RuntimeException e )
+            {
+                return null;
+            }
+        }
+    }
+
+    private static Object invoke( Method method, Object target, Object... arguments )
+        throws ReflectiveOperationException
+    {
+        try
+        {
+            return method.invoke( target, arguments );
+        }
+        catch ( InvocationTargetException exception )
+        {
+            Throwable cause = exception.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw exception;
+        }
+    }
+
+    private static int findEnd( ByteBuffer tail )
+    {
+        for ( int i = tail.limit() - END_SIZE; i >= 0; i-- )
+        {
+            if ( tail.get( i ) == 0x50 && tail.getInt( i ) == END_SIGNATURE
+                && i + END_SIZE + ( tail.getShort( i + 20 ) & 0xFFFF ) <= tail.limit() )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean endsWithClassSuffix( ByteBuffer directory, int name, int nameLength )
+    {
+        if ( nameLength <= CLASS_SUFFIX.length )
+        {
+            return false;
+        }
+
+        int suffix = name + nameLength - CLASS_SUFFIX.length;
+        for ( int i = 0; i < CLASS_SUFFIX.length; i++ )
+        {
+            if ( directory.get( suffix + i ) != CLASS_SUFFIX[i] )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String decodeClassName( ByteBuffer directory, int name, int length, char[] chars )
+    {
+        for ( int i = 0; i < length; i++ )
+        {
+            byte b = directory.get( name + i );
+            if ( b < 0 )
+            {
+                return decodeClassNameUtf8( directory, name, length );
+            }
+
+            chars[i] = b == '/' ? '.' : (char) b;
+        }
+
+        return new String( chars, 0, length );
+    }
+
+    private static String decodeClassNameUtf8( ByteBuffer directory, int name, int length )
+    {
+        byte[] bytes = new byte[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            bytes[i] = directory.get( name + i );
+        }
+
+        return new String( bytes, StandardCharsets.UTF_8 ).replace( '/', '.' );
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * Releases a mapping.
+     */
+    private interface Unmapper
+    {
+        void unmap( ByteBuffer mapping )
+            throws ReflectiveOperationException;
+    }
+
+    /**
+     * The arrays an entry is read and inflated into, reused from one entry to the next by a single thread.
+     */
+    public static final class EntryBuffer
+    {
+        private final ByteBuffer localHeader =
+            ByteBuffer.allocate( LOCAL_HEADER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+
+        private byte[] in;
+
+        private byte[] out;
+    }
+
+    /**
+     * A file entry of the central directory, with the location of its data.
+     */
+    public static final class Entry
+    {
+        private final String name;
+
+        private final int method;
+
+        private final int compressedSize;
+
+        private final int size;
+
+        private final long localHeaderOffset;
+
+        private Entry( String name, int method, int compressedSize, int size, long localHeaderOffset )
+        {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        /**
+         * @return the entry path, with slashes
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return whether the entry is stored without compression
+         */
+        public boolean isStored()
+        {
+            return method == STORED;
+        }
+
+        /**
+         * @return the uncompressed size of the entry
+         */
+        public int getSize()
+        {
+            return size;
+        }
+
+        public String toString()
+        {
+            return name;
+        }
+    }
+}
@@ -21,9 +21,12 @@ package org.apache.maven.shared.dependency.analyzer.asm;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.maven.shared.dependency.analyzer.ClassFileVisitorUtils;
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
 import org.apache.maven.shared.dependency.analyzer.DependencyAnalyzer;
 import org.codehaus.plexus.component.annotations.Component;
 
@@ -37,6 +40,14 @@ import org.codehaus.plexus.component.annotations.Component;
 public class ASMDependencyAnalyzer
     implements DependencyAnalyzer
 {
+    // fields -----------------------------------------------------------------
+
+    private boolean fastScanning;
+
+    private int parallelism = 1;
+
+    private final ScanStatistics statistics = new ScanStatistics();
+
     // DependencyAnalyzer methods ---------------------------------------------
 
     /*
@@ -45,10 +56,94 @@ public class ASMDependencyAnalyzer
     public Set<String> analyze( URL url )
         throws IOException
     {
-        DependencyClassFileVisitor visitor = new DependencyClassFileVisitor();
+        return analyze( url, new ClassSymbolTable() );
+    }
+
+    /*
+     * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzer#analyze(java.nio.file.Path)
+     */
+    public Set<String> analyze( Path path )
+        throws IOException
+    {
+        return analyze( path, new ClassSymbolTable() );
+    }
+
+    /*
+     * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzer#analyze(java.net.URL,
+     *      org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+     */
+    public Set<String> analyze( URL url, ClassSymbolTable symbols )
+        throws IOException
+    {
+        Path path = ClassFileVisitorUtils.toPath( url );
+        if ( path != null )
+        {
+            return analyze( path, symbols );
+        }
+
+        // a remote jar can only be read sequentially
+        return DependencyClassFileVisitor.getDependencies(
+            ClassFileVisitorUtils.accept( url, newVisitorFactory( symbols ), 1 ) );
+    }
+
+    /*
+     * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzer#analyze(java.nio.file.Path,
+     *      org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+     */
+    public Set<String> analyze( Path path, ClassSymbolTable symbols )
+        throws IOException
+    {
+        return DependencyClassFileVisitor.getDependencies(
+            ClassFileVisitorUtils.accept( path, newVisitorFactory( symbols ), parallelism ) );
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @param fastScanning <code>true</code> to read class files from their constant pool and attributes rather than
+     *            through the ASM visitors
+     * @see DependencyClassFileVisitor#DependencyClassFileVisitor(boolean)
+     */
+    public void setFastScanning( boolean fastScanning )
+    {
+        this.fastScanning = fastScanning;
+    }
+
+    public boolean isFastScanning()
+    {
+        return fastScanning;
+    }
+
+    /**
+     * @param parallelism the number of threads scanning the class files of a directory, <code>1</code> to scan them
+     *            on the calling thread
+     * @see ClassFileVisitorUtils#accept(Path, Supplier, int)
+     */
+    public void setParallelism( int parallelism )
+    {
+        this.parallelism = parallelism;
+    }
 
-        ClassFileVisitorUtils.accept( url, visitor );
+    public int getParallelism()
+    {
+        return parallelism;
+    }
 
-        return visitor.getDependencies();
+    /**
+     * @return the statistics of how the class files analyzed so far were read
+     */
+    public ScanStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    // private methods --------------------------------------------------------
+
+    private Supplier<DependencyClassFileVisitor> newVisitorFactory( ClassSymbolTable symbols )
+    {
+        // descriptors and signatures are parsed once per library, whatever the number of visitors, which only keep
+        // the identifiers of the referenced classes
+        SignatureCache cache = new SignatureCache( symbols, statistics );
+        return () -> new DependencyClassFileVisitor( fastScanning, statistics, cache, false );
     }
 }
@@ -21,11 +21,18 @@ package org.apache.maven.shared.dependency.analyzer.asm;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.apache.maven.shared.dependency.analyzer.ClassFileVisitorUtils;
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
 import org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages;
 import org.apache.maven.shared.dependency.analyzer.DependencyUsage;
+import org.apache.maven.shared.dependency.analyzer.DependencyUsageGraph;
 import org.codehaus.plexus.component.annotations.Component;
 
 /**
@@ -38,6 +45,14 @@ import org.codehaus.plexus.component.annotations.Component;
 public class ASMDependencyAnalyzerWithUsages
     implements DependencyAnalyzerWithUsages
 {
+  // fields -----------------------------------------------------------------
+
+  private boolean fastScanning;
+
+  private int parallelism = 1;
+
+  private final ScanStatistics statistics = new ScanStatistics();
+
   // DependencyAnalyzerWithUsages methods ---------------------------------------------
 
   /*
@@ -46,10 +61,203 @@ public class ASMDependencyAnalyzerWithUsages
   public Set<DependencyUsage> analyze( URL url )
       throws IOException
   {
-    DependencyClassFileVisitor visitor = new DependencyClassFileVisitor();
+    Set<DependencyUsage> usages = new HashSet<DependencyUsage>();
+    analyze( url, usages::add );
+    return usages;
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyze(java.nio.file.Path)
+   */
+  public Set<DependencyUsage> analyze( Path path )
+      throws IOException
+  {
+    Set<DependencyUsage> usages = new HashSet<DependencyUsage>();
+    analyze( path, usages::add );
+    return usages;
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyze(java.net.URL,
+   *      java.util.function.Consumer)
+   */
+  public void analyze( URL url, Consumer<? super DependencyUsage> consumer )
+      throws IOException
+  {
+    Path path = ClassFileVisitorUtils.toPath( url );
+    if ( path != null )
+    {
+      analyze( path, consumer );
+      return;
+    }
+
+    // a remote jar can only be read sequentially
+    ClassFileVisitorUtils.accept( url, newVisitorFactory( consumer ), 1 );
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyze(java.nio.file.Path,
+   *      java.util.function.Consumer)
+   */
+  public void analyze( Path path, Consumer<? super DependencyUsage> consumer )
+      throws IOException
+  {
+    ClassFileVisitorUtils.accept( path, newVisitorFactory( consumer ), parallelism );
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyze(java.net.URL,
+   *      org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+   */
+  public Set<DependencyUsage> analyze( URL url, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return analyzeUsageGraph( url, symbols ).getUsages();
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyze(java.nio.file.Path,
+   *      org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+   */
+  public Set<DependencyUsage> analyze( Path path, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return analyzeUsageGraph( path, symbols ).getUsages();
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyzeUsageGraph(java.net.URL,
+   *      org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+   */
+  public DependencyUsageGraph analyzeUsageGraph( URL url, ClassSymbolTable symbols )
+      throws IOException
+  {
+    Path path = ClassFileVisitorUtils.toPath( url );
+    if ( path != null )
+    {
+      return analyzeUsageGraph( path, symbols );
+    }
+
+    // a remote jar can only be read sequentially
+    return getDependencyUsageGraph( ClassFileVisitorUtils.accept( url, newVisitorFactory( symbols, true ), 1 ),
+                                    symbols );
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyzeUsageGraph(
+   *      java.nio.file.Path, org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+   */
+  public DependencyUsageGraph analyzeUsageGraph( Path path, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return getDependencyUsageGraph(
+      ClassFileVisitorUtils.accept( path, newVisitorFactory( symbols, true ), parallelism ), symbols );
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyzeDependencyClasses(
+   *      java.net.URL, org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+   */
+  public Set<String> analyzeDependencyClasses( URL url, ClassSymbolTable symbols )
+      throws IOException
+  {
+    Path path = ClassFileVisitorUtils.toPath( url );
+    if ( path != null )
+    {
+      return analyzeDependencyClasses( path, symbols );
+    }
 
-    ClassFileVisitorUtils.accept( url, visitor );
+    // a remote jar can only be read sequentially
+    return DependencyClassFileVisitor.getDependencies(
+      ClassFileVisitorUtils.accept( url, newVisitorFactory( symbols, false ), 1 ) );
+  }
+
+  /*
+   * @see org.apache.maven.shared.dependency.analyzer.DependencyAnalyzerWithUsages#analyzeDependencyClasses(
+   *      java.nio.file.Path, org.apache.maven.shared.dependency.analyzer.ClassSymbolTable)
+   */
+  public Set<String> analyzeDependencyClasses( Path path, ClassSymbolTable symbols )
+      throws IOException
+  {
+    return DependencyClassFileVisitor.getDependencies(
+      ClassFileVisitorUtils.accept( path, newVisitorFactory( symbols, false ), parallelism ) );
+  }
+
+  // public methods ---------------------------------------------------------
+
+  /**
+   * @param fastScanning <code>true</code> to read class files from their constant pool and attributes rather than
+   *            through the ASM visitors
+   * @see DependencyClassFileVisitor#DependencyClassFileVisitor(boolean)
+   */
+  public void setFastScanning( boolean fastScanning )
+  {
+    this.fastScanning = fastScanning;
+  }
+
+  public boolean isFastScanning()
+  {
+    return fastScanning;
+  }
+
+  /**
+   * @param parallelism the number of threads scanning the class files of a directory, <code>1</code> to scan them
+   *            on the calling thread
+   * @see ClassFileVisitorUtils#accept(Path, Supplier, int)
+   */
+  public void setParallelism( int parallelism )
+  {
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * @return the statistics of how the class files analyzed so far were read
+   */
+  public ScanStatistics getStatistics()
+  {
+    return statistics;
+  }
+
+  // private methods --------------------------------------------------------
+
+  private Supplier<DependencyClassFileVisitor> newVisitorFactory( Consumer<? super DependencyUsage> consumer )
+  {
+    // the visitors lock the consumer they share, a wrapper the caller cannot lock as well, once per class
+    Consumer<? super DependencyUsage> usageConsumer = consumer::accept;
+    SignatureCache cache = new SignatureCache( statistics );
+    return () -> new DependencyClassFileVisitor( fastScanning, statistics, cache, usageConsumer );
+  }
+
+  /**
+   * @param usages <code>true</code> for visitors building a usage graph, <code>false</code> for visitors keeping the
+   *          identifiers of the referenced classes only, neither usages nor the names of the classes
+   */
+  private Supplier<DependencyClassFileVisitor> newVisitorFactory( ClassSymbolTable symbols, boolean usages )
+  {
+    // descriptors and signatures are parsed once per library, whatever the number of visitors
+    SignatureCache cache = new SignatureCache( symbols, statistics );
+    return usages ? () -> new DependencyClassFileVisitor( fastScanning, statistics, cache )
+                  : () -> new DependencyClassFileVisitor( fastScanning, statistics, cache, false );
+  }
+
+  private static DependencyUsageGraph getDependencyUsageGraph( List<DependencyClassFileVisitor> visitors,
+                                                               ClassSymbolTable symbols )
+  {
+    if ( visitors.size() == 1 )
+    {
+      return visitors.get( 0 ).getDependencyUsageGraph();
+    }
 
-    return visitor.getDependencyUsages();
+    DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+    for ( DependencyClassFileVisitor visitor : visitors )
+    {
+      builder.add( visitor.getDependencyUsageGraph() );
+    }
+    return builder.build();
   }
 }
@@ -0,0 +1,649 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+import org.objectweb.asm.signature.SignatureVisitor;
+
+/**
+ * Computes the classes referenced by a class file from its constant pool and a few attributes, without running the
+ * ASM visitor chain over the whole class.
+ * <p>
+ * Everything the method visitor collects from instructions (type instructions, field and method owners, class
+ * constants, catch types) is a <code>CONSTANT_Class</code> entry already, so instructions are not decoded at all.
+ * What remains is parsed directly: the descriptors and signatures of fields, methods and local variables, and the
+ * annotations visited by {@link DefaultClassVisitor}, {@link DefaultFieldVisitor} and {@link DefaultMethodVisitor}.
+ * The result is the same as running {@link DependencyClassFileVisitor} with the ASM visitors.
+ * <p>
+ * Class constants without a package, primitive arrays and multi-dimensional arrays are reported by the ASM visitors
+ * depending on the instruction or attribute referencing them, which the constant pool alone does not tell: such
+ * classes are declined, and the caller falls back to the ASM visitors.
+ *
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se11/html/jvms-4.html">JVM 11 Spec, class file format</a>
+ */
+final class ClassFileScanner
+{
+    // constants --------------------------------------------------------------
+
+    private static final int ATTRIBUTE_UNKNOWN = 0;
+
+    private static final int ATTRIBUTE_OTHER = 1;
+
+    private static final int ATTRIBUTE_SIGNATURE = 2;
+
+    private static final int ATTRIBUTE_ANNOTATIONS = 3;
+
+    private static final int ATTRIBUTE_PARAMETER_ANNOTATIONS = 4;
+
+    private static final int ATTRIBUTE_TYPE_ANNOTATIONS = 5;
+
+    private static final int ATTRIBUTE_CODE = 6;
+
+    private static final int ATTRIBUTE_LOCAL_VARIABLE_TABLE = 7;
+
+    private static final int ATTRIBUTE_LOCAL_VARIABLE_TYPE_TABLE = 8;
+
+    // fields -----------------------------------------------------------------
+
+    private byte[] b;
+
+    private int start;
+
+    private int end;
+
+    private final ResultCollector resultCollector;
+
+    private final SignatureVisitor signatureVisitor;
+
+    private int[] items = new int[0];
+
+    private String[] strings = new String[0];
+
+    private int[] attributes = new int[0];
+
+    private char[] chars = new char[128];
+
+    // constructors -----------------------------------------------------------
+
+    /**
+     * Creates a scanner that can be reused from class to class, its constant pool tables growing as needed.
+     *
+     * @param resultCollector the collector of referenced classes
+     */
+    ClassFileScanner( ResultCollector resultCollector )
+    {
+        this.resultCollector = resultCollector;
+        this.signatureVisitor = new DefaultSignatureVisitor( resultCollector );
+    }
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * Adds the classes referenced by a class file to a collector.
+     *
+     * @param b the class file bytes
+     * @param resultCollector the collector of referenced classes
+     * @return <code>false</code> if the class must be visited by the ASM visitors instead, in which case nothing was
+     *         added to the collector
+     * @throws IndexOutOfBoundsException if the class file is truncated or malformed
+     */
+    static boolean scan( byte[] b, ResultCollector resultCollector )
+    {
+        return new ClassFileScanner( resultCollector ).scan( b );
+    }
+
+    /**
+     * Adds the classes referenced by a class file to the collector of this scanner.
+     *
+     * @param b the class file bytes
+     * @return <code>false</code> if the class must be visited by the ASM visitors instead, in which case nothing was
+     *         added to the collector
+     * @throws IndexOutOfBoundsException if the class file is truncated or malformed
+     * @see #scan(byte[], ResultCollector)
+     */
+    boolean scan( byte[] b )
+    {
+        return scan( b, 0, b.length );
+    }
+
+    /**
+     * Adds the classes referenced by a class file in a larger buffer to the collector of this scanner, reading it in
+     * place.
+     *
+     * @param b the buffer
+     * @param start the offset of the class file
+     * @param end the offset following the class file
+     * @return <code>false</code> if the class must be visited by the ASM visitors instead, in which case nothing was
+     *         added to the collector
+     * @throws IndexOutOfBoundsException if the class file is truncated or malformed, in which case nothing was added
+     *         to the collector if it extends past the end
+     * @see #scan(byte[])
+     */
+    boolean scan( byte[] b, int start, int end )
+    {
+        this.b = b;
+        this.start = start;
+        this.end = end;
+        try
+        {
+            return scanClass();
+        }
+        finally
+        {
+            this.b = null;
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private boolean scanClass()
+    {
+        // not a class file: the caller falls back to ASM or counts the class as failed
+        if ( end - start < 10 || readInt( start ) != ConstantPoolParser.HEAD )
+        {
+            return false;
+        }
+
+        int offset = readConstantPool();
+        if ( offset < 0 )
+        {
+            return false;
+        }
+
+        // access flags, this class, super class, then interfaces: all CONSTANT_Class entries
+        offset += 6;
+        offset += 2 + 2 * readUnsignedShort( offset );
+
+        int fieldCount = readUnsignedShort( offset );
+        offset += 2;
+        while ( fieldCount-- > 0 )
+        {
+            offset = scanMember( offset, false );
+        }
+
+        int methodCount = readUnsignedShort( offset );
+        offset += 2;
+        while ( methodCount-- > 0 )
+        {
+            offset = scanMember( offset, true );
+        }
+
+        int signature = 0;
+        int attributeCount = readUnsignedShort( offset );
+        offset += 2;
+        while ( attributeCount-- > 0 )
+        {
+            int attribute = getAttribute( readUnsignedShort( offset ) );
+            int length = readInt( offset + 2 );
+            offset += 6;
+
+            if ( attribute == ATTRIBUTE_SIGNATURE )
+            {
+                signature = readUnsignedShort( offset );
+            }
+            else if ( attribute == ATTRIBUTE_ANNOTATIONS )
+            {
+                scanAnnotations( offset );
+            }
+            // class type annotations are not visited by DefaultClassVisitor
+
+            offset += length;
+        }
+
+        if ( signature != 0 )
+        {
+            resultCollector.addSignature( readUtf8( signature ), signatureVisitor );
+        }
+
+        return true;
+    }
+
+    /**
+     * Records the offset of every constant pool entry and adds the class names referenced by class, string and method
+     * type entries, as {@link ConstantPoolParser} does.
+     *
+     * @return the offset following the constant pool, or <code>-1</code> if the class must be visited by ASM or the
+     *         constant pool cannot be parsed
+     */
+    private int readConstantPool()
+    {
+        int count = readUnsignedShort( start + 8 );
+        if ( items.length < count )
+        {
+            items = new int[count];
+            strings = new String[count];
+            attributes = new int[count];
+        }
+        else
+        {
+            Arrays.fill( items, 0, count, 0 );
+            Arrays.fill( strings, 0, count, null );
+            Arrays.fill( attributes, 0, count, ATTRIBUTE_UNKNOWN );
+        }
+
+        int offset = ConstantPoolParser.readItemOffsets( b, start, end, items, count );
+        if ( offset < 0 )
+        {
+            return -1;
+        }
+
+        // the bytes following a class file in a buffer may be those of another: the class is checked to end within
+        // its own before anything is collected
+        if ( end < b.length && ConstantPoolParser.readClassEnd( b, offset ) > end )
+        {
+            throw new IndexOutOfBoundsException( "Truncated class file" );
+        }
+
+        for ( int i = 1; i < count; i++ )
+        {
+            int item = items[i];
+            if ( item != 0 && b[item - 1] == ConstantPoolParser.CONSTANT_CLASS )
+            {
+                int utf8 = items[readUnsignedShort( item )];
+                int length = readUnsignedShort( utf8 );
+                if ( !ConstantPoolParser.isImportableClass( b, utf8 + 2, length )
+                    || length > 1 && b[utf8 + 2] == '[' && b[utf8 + 3] == '[' )
+                {
+                    return -1;
+                }
+            }
+        }
+
+        for ( int i = 1; i < count; i++ )
+        {
+            int item = items[i];
+            int tag = item == 0 ? 0 : b[item - 1];
+
+            if ( tag == ConstantPoolParser.CONSTANT_CLASS || tag == ConstantPoolParser.CONSTANT_STRING
+                || tag == ConstantPoolParser.CONSTANT_METHOD_TYPE )
+            {
+                int utf8 = items[readUnsignedShort( item )];
+                int length = readUnsignedShort( utf8 );
+
+                // filter out things from the default package, probably a false-positive, and resolve the others
+                // from their bytes
+                if ( ConstantPoolParser.isImportableClass( b, utf8 + 2, length ) )
+                {
+                    resultCollector.addName( b, utf8 + 2, length );
+                }
+
+            }
+        }
+
+        return offset;
+    }
+
+    private int scanMember( int offset, boolean method )
+    {
+        int descriptor = readUnsignedShort( offset + 4 );
+        int signature = 0;
+
+        int attributeCount = readUnsignedShort( offset + 6 );
+        offset += 8;
+        while ( attributeCount-- > 0 )
+        {
+            int attribute = getAttribute( readUnsignedShort( offset ) );
+            int length = readInt( offset + 2 );
+            offset += 6;
+
+            switch ( attribute )
+            {
+                case ATTRIBUTE_SIGNATURE:
+                    signature = readUnsignedShort( offset );
+                    break;
+                case ATTRIBUTE_ANNOTATIONS:
+                    scanAnnotations( offset );
+                    break;
+                case ATTRIBUTE_PARAMETER_ANNOTATIONS:
+                    scanParameterAnnotations( offset );
+                    break;
+                case ATTRIBUTE_TYPE_ANNOTATIONS:
+                    // field type annotations are not visited by DefaultFieldVisitor
+                    if ( method )
+                    {
+                        scanTypeAnnotations( offset );
+                    }
+                    break;
+                case ATTRIBUTE_CODE:
+                    scanCode( offset );
+                    break;
+                default:
+            }
+
+            offset += length;
+        }
+
+        if ( signature == 0 )
+        {
+            if ( method )
+            {
+                resultCollector.addMethodDesc( readUtf8( descriptor ) );
+            }
+            else
+            {
+                resultCollector.addDesc( readUtf8( descriptor ) );
+            }
+        }
+        else
+        {
+            if ( method )
+            {
+                resultCollector.addSignature( readUtf8( signature ), signatureVisitor );
+            }
+            else
+            {
+                resultCollector.addTypeSignature( readUtf8( signature ), signatureVisitor );
+            }
+        }
+
+        return offset;
+    }
+
+    private void scanCode( int offset )
+    {
+        int codeLength = readInt( offset + 4 );
+        offset += 8 + codeLength;
+        offset += 2 + 8 * readUnsignedShort( offset );
+
+        // like ClassReader, only the last tables are considered
+        int localVariableTable = 0;
+        int localVariableTypeTable = 0;
+
+        int attributeCount = readUnsignedShort( offset );
+        offset += 2;
+        while ( attributeCount-- > 0 )
+        {
+            int attribute = getAttribute( readUnsignedShort( offset ) );
+            int length = readInt( offset + 2 );
+            offset += 6;
+
+            if ( attribute == ATTRIBUTE_LOCAL_VARIABLE_TABLE )
+            {
+                localVariableTable = offset;
+            }
+            else if ( attribute == ATTRIBUTE_LOCAL_VARIABLE_TYPE_TABLE )
+            {
+                localVariableTypeTable = offset;
+            }
+            // instruction, catch and local variable type annotations are not visited by DefaultMethodVisitor
+
+            offset += length;
+        }
+
+        if ( localVariableTable != 0 )
+        {
+            scanLocalVariables( localVariableTable, localVariableTypeTable );
+        }
+    }
+
+    private void scanLocalVariables( int localVariableTable, int localVariableTypeTable )
+    {
+        int typeCount = localVariableTypeTable == 0 ? 0 : readUnsignedShort( localVariableTypeTable );
+
+        int count = readUnsignedShort( localVariableTable );
+        int offset = localVariableTable + 2;
+        while ( count-- > 0 )
+        {
+            int startPc = readUnsignedShort( offset );
+            int index = readUnsignedShort( offset + 8 );
+
+            // a local variable has a signature when the type table has an entry with the same start and index, the
+            // last one like ClassReader
+            int signature = 0;
+            for ( int type = localVariableTypeTable + 2 + 10 * ( typeCount - 1 ); type > localVariableTypeTable;
+                type -= 10 )
+            {
+                if ( readUnsignedShort( type ) == startPc && readUnsignedShort( type + 8 ) == index )
+                {
+                    signature = readUnsignedShort( type + 6 );
+                    break;
+                }
+            }
+
+            if ( signature == 0 )
+            {
+                resultCollector.addDesc( readUtf8( readUnsignedShort( offset + 6 ) ) );
+            }
+            else
+            {
+                resultCollector.addTypeSignature( readUtf8( signature ), signatureVisitor );
+            }
+
+            offset += 10;
+        }
+    }
+
+    private void scanAnnotations( int offset )
+    {
+        int count = readUnsignedShort( offset );
+        offset += 2;
+        while ( count-- > 0 )
+        {
+            offset = scanAnnotation( offset );
+        }
+    }
+
+    private void scanParameterAnnotations( int offset )
+    {
+        int parameterCount = b[offset] & 0xFF;
+        offset++;
+        while ( parameterCount-- > 0 )
+        {
+            int count = readUnsignedShort( offset );
+            offset += 2;
+            while ( count-- > 0 )
+            {
+                offset = scanAnnotation( offset );
+            }
+        }
+    }
+
+    private void scanTypeAnnotations( int offset )
+    {
+        int count = readUnsignedShort( offset );
+        offset += 2;
+        while ( count-- > 0 )
+        {
+            int targetType = b[offset] & 0xFF;
+            offset++;
+
+            // target_info
+            switch ( targetType )
+            {
+                case 0x00:
+                case 0x01:
+                case 0x16:
+                    offset += 1;
+                    break;
+                case 0x13:
+                case 0x14:
+                case 0x15:
+                    break;
+                case 0x40:
+                case 0x41:
+                    offset += 2 + 6 * readUnsignedShort( offset );
+                    break;
+                case 0x47:
+                case 0x48:
+                case 0x49:
+                case 0x4A:
+                case 0x4B:
+                    offset += 3;
+                    break;
+                default:
+                    // 0x10 to 0x12, 0x17, 0x42 to 0x46
+                    offset += 2;
+            }
+
+            // type_path
+            offset += 1 + 2 * ( b[offset] & 0xFF );
+
+            offset = scanAnnotation( offset );
+        }
+    }
+
+    /**
+     * @return the offset following the annotation
+     */
+    private int scanAnnotation( int offset )
+    {
+        resultCollector.addDesc( readUtf8( readUnsignedShort( offset ) ) );
+
+        int pairCount = readUnsignedShort( offset + 2 );
+        offset += 4;
+        while ( pairCount-- > 0 )
+        {
+            offset = scanElementValue( offset + 2 );
+        }
+
+        return offset;
+    }
+
+    /**
+     * @return the offset following the element value
+     */
+    private int scanElementValue( int offset )
+    {
+        switch ( b[offset] )
+        {
+            case 'e':
+                resultCollector.addDesc( readUtf8( readUnsignedShort( offset + 1 ) ) );
+                return offset + 5;
+            case 'c':
+                resultCollector.addDesc( readUtf8( readUnsignedShort( offset + 1 ) ) );
+                return offset + 3;
+            case '@':
+                return scanAnnotation( offset + 1 );
+            case '[':
+                int count = readUnsignedShort( offset + 1 );
+                offset += 3;
+                while ( count-- > 0 )
+                {
+                    offset = scanElementValue( offset );
+                }
+                return offset;
+            default:
+                // constant value
+                return offset + 3;
+        }
+    }
+
+    private int getAttribute( int nameIndex )
+    {
+        int attribute = attributes[nameIndex];
+
+        if ( attribute == ATTRIBUTE_UNKNOWN )
+        {
+            attribute = toAttribute( readUtf8( nameIndex ) );
+            attributes[nameIndex] = attribute;
+        }
+
+        return attribute;
+    }
+
+    private static int toAttribute( String name )
+    {
+        if ( "Code".equals( name ) )
+        {
+            return ATTRIBUTE_CODE;
+        }
+        if ( "Signature".equals( name ) )
+        {
+            return ATTRIBUTE_SIGNATURE;
+        }
+        if ( "RuntimeVisibleAnnotations".equals( name ) || "RuntimeInvisibleAnnotations".equals( name ) )
+        {
+            return ATTRIBUTE_ANNOTATIONS;
+        }
+        if ( "RuntimeVisibleParameterAnnotations".equals( name )
+            || "RuntimeInvisibleParameterAnnotations".equals( name ) )
+        {
+            return ATTRIBUTE_PARAMETER_ANNOTATIONS;
+        }
+        if ( "RuntimeVisibleTypeAnnotations".equals( name ) || "RuntimeInvisibleTypeAnnotations".equals( name ) )
+        {
+            return ATTRIBUTE_TYPE_ANNOTATIONS;
+        }
+        if ( "LocalVariableTable".equals( name ) )
+        {
+            return ATTRIBUTE_LOCAL_VARIABLE_TABLE;
+        }
+        if ( "LocalVariableTypeTable".equals( name ) )
+        {
+            return ATTRIBUTE_LOCAL_VARIABLE_TYPE_TABLE;
+        }
+        return ATTRIBUTE_OTHER;
+    }
+
+    private String readUtf8( int index )
+    {
+        String string = strings[index];
+
+        if ( string == null )
+        {
+            int offset = items[index];
+            string = decodeUtf8( offset + 2, readUnsignedShort( offset ) );
+            strings[index] = string;
+        }
+
+        return string;
+    }
+
+    private String decodeUtf8( int offset, int length )
+    {
+        if ( chars.length < length )
+        {
+            chars = new char[length];
+        }
+
+        int end = offset + length;
+        int size = 0;
+        while ( offset < end )
+        {
+            int c = b[offset++];
+            if ( c >= 0 )
+            {
+                chars[size++] = (char) c;
+            }
+            else if ( ( c & 0xE0 ) == 0xC0 )
+            {
+                chars[size++] = (char) ( ( c & 0x1F ) << 6 | b[offset++] & 0x3F );
+            }
+            else
+            {
+                chars[size++] = (char) ( ( c & 0x0F ) << 12 | ( b[offset++] & 0x3F ) << 6 | b[offset++] & 0x3F );
+            }
+        }
+
+        return new String( chars, 0, size );
+    }
+
+    private int readUnsignedShort( int offset )
+    {
+        return ( ( b[offset] & 0xFF ) << 8 ) | ( b[offset + 1] & 0xFF );
+    }
+
+    private int readInt( int offset )
+    {
+        return ( ( b[offset] & 0xFF ) << 24 ) | ( ( b[offset + 1] & 0xFF ) << 16 ) | ( ( b[offset + 2] & 0xFF ) << 8 )
+            | ( b[offset + 3] & 0xFF );
+    }
+}
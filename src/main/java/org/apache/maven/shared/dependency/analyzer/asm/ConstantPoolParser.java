@@ -19,14 +19,12 @@ package org.apache.maven.shared.dependency.analyzer.asm;
  * under the License.
  */
 
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+
+import org.objectweb.asm.ClassReader;
 
 /**
  * A small parser to read the constant pool directly, in case it contains references
@@ -38,6 +36,7 @@ import java.util.Set;
  * 
  * @see <a href="https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.4">JVM 9 Sepc</a>
  * @see <a href="https://docs.oracle.com/javase/specs/jvms/se10/html/jvms-4.html#jvms-4.4">JVM 10 Sepc</a>
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se11/html/jvms-4.html#jvms-4.4">JVM 11 Sepc</a>
  * 
  */
 public class ConstantPoolParser
@@ -71,6 +70,8 @@ public class ConstantPoolParser
 
     public static final byte CONSTANT_METHOD_TYPE = 16;
 
+    public static final byte CONSTANT_DYNAMIC = 17;
+
     public static final byte CONSTANT_INVOKE_DYNAMIC = 18;
     
     public static final byte CONSTANT_MODULE = 19;
@@ -83,121 +84,435 @@ public class ConstantPoolParser
 
     private static final int OX3F = 0x3F;
 
+    /**
+     * Size of constant pool entries by tag, tag included. UTF8 entries are followed by their variable length bytes,
+     * unknown tags have no size.
+     */
+    private static final byte[] ENTRY_SIZES = new byte[256];
+
+    /**
+     * Number of constant pool indexes taken by entries, by tag.
+     */
+    private static final byte[] ENTRY_SLOTS = new byte[256];
+
+    static
+    {
+        setEntrySize( CONSTANT_UTF8, 3 );
+        setEntrySize( CONSTANT_INTEGER, 5 );
+        setEntrySize( CONSTANT_FLOAT, 5 );
+        setEntrySize( CONSTANT_LONG, 9 );
+        setEntrySize( CONSTANT_DOUBLE, 9 );
+        setEntrySize( CONSTANT_CLASS, 3 );
+        setEntrySize( CONSTANT_STRING, 3 );
+        setEntrySize( CONSTANT_FIELDREF, 5 );
+        setEntrySize( CONSTANT_METHODREF, 5 );
+        setEntrySize( CONSTANT_INTERFACEMETHODREF, 5 );
+        setEntrySize( CONSTANT_NAME_AND_TYPE, 5 );
+        setEntrySize( CONSTANT_METHODHANDLE, 4 );
+        setEntrySize( CONSTANT_METHOD_TYPE, 3 );
+        setEntrySize( CONSTANT_DYNAMIC, 5 );
+        setEntrySize( CONSTANT_INVOKE_DYNAMIC, 5 );
+        setEntrySize( CONSTANT_MODULE, 3 );
+        setEntrySize( CONSTANT_PACKAGE, 3 );
+
+        ENTRY_SLOTS[CONSTANT_LONG] = 2;
+        ENTRY_SLOTS[CONSTANT_DOUBLE] = 2;
+    }
+
+    /**
+     * Records the offset of every constant pool entry, following its tag, as <code>ClassReader.getItem</code> does.
+     * The second index of long and double entries has no offset.
+     *
+     * @param b the class file
+     * @param items the offsets to fill, sized by the constant pool count read at offset 8
+     * @return the offset following the constant pool, or <code>-1</code> if the constant pool has an unknown tag or
+     *         is truncated
+     */
+    static int readItemOffsets( byte[] b, int[] items )
+    {
+        return readItemOffsets( b, items, items.length );
+    }
+
+    /**
+     * Records the offset of every constant pool entry into a table possibly larger than the constant pool.
+     *
+     * @param b the class file
+     * @param items the offsets to fill, zeroed up to the constant pool count
+     * @param count the constant pool count read at offset 8
+     * @return the offset following the constant pool, or <code>-1</code> if the constant pool has an unknown tag or
+     *         is truncated
+     * @see #readItemOffsets(byte[], int[])
+     */
+    static int readItemOffsets( byte[] b, int[] items, int count )
+    {
+        return readItemOffsets( b, 0, b.length, items, count );
+    }
+
+    /**
+     * Records the offset of every constant pool entry of a class file in a larger buffer, the offsets being those of
+     * the buffer.
+     *
+     * @param b the buffer
+     * @param start the offset of the class file
+     * @param end the offset following the class file
+     * @param items the offsets to fill, zeroed up to the constant pool count
+     * @param count the constant pool count read at offset <code>start + 8</code>
+     * @return the offset following the constant pool, or <code>-1</code> if the constant pool has an unknown tag or
+     *         is truncated
+     * @see #readItemOffsets(byte[], int[], int)
+     */
+    static int readItemOffsets( byte[] b, int start, int end, int[] items, int count )
+    {
+        int limit = end - 3;
+        int offset = start + 10;
+        for ( int ix = 1; ix < count; )
+        {
+            if ( offset > limit )
+            {
+                return -1;
+            }
+
+            int tag = b[offset] & 0xFF;
+            int size = ENTRY_SIZES[tag];
+            if ( size == 0 )
+            {
+                return -1;
+            }
+
+            items[ix] = offset + 1;
+            ix += ENTRY_SLOTS[tag];
+            offset += tag == CONSTANT_UTF8 ? size + readUnsignedShort( b, offset + 1 ) : size;
+        }
+        return offset <= end ? offset : -1;
+    }
+
+    /**
+     * Skips the fields, methods and attributes of a class file, following their lengths without reading them.
+     *
+     * @param b the buffer of the class file
+     * @param header the offset following the constant pool
+     * @return the offset following the class file
+     * @throws IndexOutOfBoundsException if the class file extends past the buffer
+     */
+    static int readClassEnd( byte[] b, int header )
+    {
+        // access flags, this class, super class, then interfaces
+        int offset = header + 6;
+        offset += 2 + 2 * readUnsignedShort( b, offset );
+
+        // fields then methods, each with its attributes
+        for ( int members = 0; members < 2; members++ )
+        {
+            int memberCount = readUnsignedShort( b, offset );
+            offset += 2;
+            while ( memberCount-- > 0 )
+            {
+                offset = skipAttributes( b, offset + 6 );
+            }
+        }
+
+        return skipAttributes( b, offset );
+    }
+
+    /**
+     * @param b the class file
+     * @return the referenced classes, in internal form, or <code>null</code> if the constant pool cannot be parsed
+     */
     static Set<String> getConstantPoolClassReferences( byte[] b )
     {
-        return parseConstantPoolClassReferences( ByteBuffer.wrap( b ) );
+        Set<String> result = new HashSet<String>();
+        boolean parsed = acceptConstantPoolClassReferences( b, ( bytes, offset, size ) -> result.add(
+            decodeString( bytes, offset, size ) ) );
+        return parsed ? result : null;
+    }
+
+    /**
+     * Adds the class references of a constant pool to a collector, which resolves them from their modified UTF8 bytes
+     * rather than from a string per reference.
+     *
+     * @param b the class file
+     * @param resultCollector the collector of referenced classes
+     * @return <code>false</code> if the constant pool cannot be parsed
+     */
+    static boolean addConstantPoolClassReferences( byte[] b, ResultCollector resultCollector )
+    {
+        return addConstantPoolClassReferences( b, 0, b.length, resultCollector );
     }
 
-    static Set<String> parseConstantPoolClassReferences( ByteBuffer buf )
+    /**
+     * Adds the class references of the constant pool of a class file in a larger buffer to a collector.
+     *
+     * @param b the buffer
+     * @param start the offset of the class file
+     * @param end the offset following the class file
+     * @param resultCollector the collector of referenced classes
+     * @return <code>false</code> if the bytes are not a class file or its constant pool cannot be parsed within it
+     * @see #addConstantPoolClassReferences(byte[], ResultCollector)
+     */
+    static boolean addConstantPoolClassReferences( byte[] b, int start, int end, ResultCollector resultCollector )
     {
-        if ( buf.order( ByteOrder.BIG_ENDIAN )
-                .getInt() != HEAD )
+        if ( end - start < 10 || readInt( b, start ) != HEAD )
         {
-            return Collections.emptySet();
+            return false;
         }
-        buf.getChar() ; buf.getChar(); // minor + ver
-        Set<Integer> classes = new HashSet<Integer>();
-        Map<Integer, String> stringConstants = new HashMap<Integer, String>();
-        for ( int ix = 1, num = buf.getChar(); ix < num; ix++ )
+        return acceptConstantPoolClassReferences( b, start, end, resultCollector::addName );
+    }
+
+    /**
+     * Reads the class references of a constant pool through the entry offsets computed by the class reader, rather
+     * than walking the pool again. Only the UTF8 entries referenced by class, string and method type entries are
+     * decoded, and the reader caches them for its own visit of the class.
+     *
+     * @param reader the reader of the class, created from a class file starting at offset zero
+     * @return the referenced classes, in internal form
+     */
+    static Set<String> getConstantPoolClassReferences( ClassReader reader )
+    {
+        Set<String> result = new HashSet<String>();
+        acceptConstantPoolClassReferences( reader, null, result::add );
+        return result;
+    }
+
+    /**
+     * Gives the class references of a constant pool to a consumer, as
+     * {@link #getConstantPoolClassReferences(ClassReader)} does, without collecting them into a new set. A reference
+     * may be given more than once.
+     *
+     * @param reader the reader of the class, created from a class file starting at offset zero
+     * @param charBuffer a buffer to decode UTF8 entries into, possibly <code>null</code>
+     * @param consumer the consumer of the referenced classes, in internal form
+     * @return the buffer used, to be given back for the next class
+     */
+    static char[] acceptConstantPoolClassReferences( ClassReader reader, char[] charBuffer,
+                                                     Consumer<String> consumer )
+    {
+        return acceptConstantPoolClassReferences( reader, 0, charBuffer, consumer );
+    }
+
+    /**
+     * Gives the class references of a constant pool to a consumer, the reader being created from a class file in a
+     * larger buffer.
+     *
+     * @param reader the reader of the class
+     * @param start the offset of the class file in the buffer of the reader
+     * @param charBuffer a buffer to decode UTF8 entries into, possibly <code>null</code>
+     * @param consumer the consumer of the referenced classes, in internal form
+     * @return the buffer used, to be given back for the next class
+     * @see #acceptConstantPoolClassReferences(ClassReader, char[], Consumer)
+     */
+    static char[] acceptConstantPoolClassReferences( ClassReader reader, int start, char[] charBuffer,
+                                                     Consumer<String> consumer )
+    {
+        if ( charBuffer == null || charBuffer.length < reader.getMaxStringLength() )
+        {
+            charBuffer = new char[reader.getMaxStringLength()];
+        }
+
+        byte[] b = reader.b;
+        if ( b.length < start + 4 || readInt( b, start ) != HEAD )
         {
-            byte tag = buf.get();
-            switch ( tag )
+            return charBuffer;
+        }
+
+        for ( int ix = 1, num = reader.getItemCount(); ix < num; ix++ )
+        {
+            // the second slot of long and double entries has no offset
+            int item = reader.getItem( ix );
+            if ( item == 0 )
+            {
+                continue;
+            }
+
+            byte tag = b[item - 1];
+            if ( tag == CONSTANT_CLASS || tag == CONSTANT_STRING || tag == CONSTANT_METHOD_TYPE )
             {
-                default:
-                    throw new RuntimeException( "Unknown constant pool type '" + tag + "'" );
-                case CONSTANT_UTF8:
-                    stringConstants.put( ix, decodeString( buf ) );
-                    continue;
-                case CONSTANT_CLASS:
-                case CONSTANT_STRING:
-                case CONSTANT_METHOD_TYPE:
-                    classes.add( (int) buf.getChar() );
-                    break;
-                case CONSTANT_FIELDREF:
-                case CONSTANT_METHODREF:
-                case CONSTANT_INTERFACEMETHODREF:
-                case CONSTANT_NAME_AND_TYPE:
-                    buf.getChar();
-                    buf.getChar();
-                    break;
-                case CONSTANT_INTEGER:
-                    buf.getInt();
-                    break;
-                case CONSTANT_FLOAT:
-                    buf.getFloat();
-                    break;
-                case CONSTANT_DOUBLE:
-                    buf.getDouble();
-                    ix++;
-                    break;
-                case CONSTANT_LONG:
-                    buf.getLong();
-                    ix++;
-                    break;
-                case CONSTANT_METHODHANDLE:
-                    buf.get();
-                    buf.getChar();
-                    break;
-                case CONSTANT_INVOKE_DYNAMIC:
-                    buf.getChar();
-                    buf.getChar();
-                    break;
-                case CONSTANT_MODULE:
-                    buf.getChar();
-                    break;
-                case CONSTANT_PACKAGE:
-                    buf.getChar();
-                    break;  
+                String className = reader.readUTF8( item, charBuffer );
+
+                // filter out things from the default package, probably a false-positive
+                if ( className != null && isImportableClass( className ) )
+                {
+                    consumer.accept( className );
+                }
             }
         }
+        return charBuffer;
+    }
+
+    /**
+     * @param buf the class file, from its position to its limit
+     * @return the referenced classes, in internal form, or <code>null</code> if the constant pool cannot be parsed
+     */
+    static Set<String> parseConstantPoolClassReferences( ByteBuffer buf )
+    {
+        if ( !buf.hasArray() )
+        {
+            byte[] b = new byte[buf.remaining()];
+            buf.duplicate().get( b );
+            return getConstantPoolClassReferences( b );
+        }
+
+        // read in place, wherever the class file lies in the array
+        byte[] b = buf.array();
+        int start = buf.arrayOffset() + buf.position();
         Set<String> result = new HashSet<String>();
-        for ( Integer aClass : classes )
+        boolean parsed = acceptConstantPoolClassReferences( b, start, start + buf.remaining(),
+            ( bytes, offset, size ) -> result.add( decodeString( bytes, offset, size ) ) );
+        return parsed ? result : null;
+    }
+
+    private static boolean acceptConstantPoolClassReferences( byte[] b, ClassNameConsumer consumer )
+    {
+        return acceptConstantPoolClassReferences( b, 0, b.length, consumer );
+    }
+
+    private static boolean acceptConstantPoolClassReferences( byte[] b, int start, int end,
+                                                              ClassNameConsumer consumer )
+    {
+        if ( end - start < 10 || readInt( b, start ) != HEAD )
         {
-            String className = stringConstants.get( aClass );
+            return true;
+        }
+
+        int[] items = new int[readUnsignedShort( b, start + 8 )];
+        if ( readItemOffsets( b, start, end, items, items.length ) < 0 )
+        {
+            return false;
+        }
+
+        for ( int ix = 1, num = items.length; ix < num; ix++ )
+        {
+            int item = items[ix];
+            byte tag = item == 0 ? 0 : b[item - 1];
+            if ( tag != CONSTANT_CLASS && tag != CONSTANT_STRING && tag != CONSTANT_METHOD_TYPE )
+            {
+                continue;
+            }
+
+            // a decoded UTF8 entry loses its offset, so it is decoded once
+            int utf8 = readUnsignedShort( b, item );
+            int position = utf8 < num ? items[utf8] : 0;
+            if ( position == 0 || b[position - 1] != CONSTANT_UTF8 )
+            {
+                continue;
+            }
+            items[utf8] = 0;
+
+            int size = readUnsignedShort( b, position );
+            int offset = position + 2;
 
             // filter out things from the default package, probably a false-positive
-            if ( isImportableClass( className ) )
+            if ( isImportableClass( b, offset, size ) )
             {
-                result.add( className );
+                consumer.accept( b, offset, size );
             }
         }
-        return result;
+        return true;
     }
 
-    private static String decodeString( ByteBuffer buf )
+    private static String decodeString( byte[] b, int offset, int size )
     {
-        int size = buf.getChar();
-        // Explicit cast for compatibility with covariant return type on JDK 9's ByteBuffer
-        int oldLimit = ( (Buffer) buf ).limit();
-        ( (Buffer) buf ).limit( buf.position() + size );
-        StringBuilder sb = new StringBuilder( size + ( size >> 1 ) + 16 );
-        while ( buf.hasRemaining() )
+        // the decoded string is not longer than the encoded one
+        char[] chars = new char[size];
+        return new String( chars, 0, decode( b, offset, size, chars ) );
+    }
+
+    private static int decode( byte[] b, int offset, int size, char[] chars )
+    {
+        int end = offset + size;
+        int length = 0;
+
+        // ASCII fast path, a modified UTF8 string never contains a zero byte
+        while ( offset < end && b[offset] > 0 )
         {
-            byte b = buf.get();
-            if ( b > 0 )
+            chars[length++] = (char) b[offset++];
+        }
+
+        while ( offset < end )
+        {
+            int b1 = b[offset++];
+            if ( b1 > 0 )
             {
-                sb.append( (char) b );
+                chars[length++] = (char) b1;
             }
             else
             {
-                int b2 = buf.get();
-                if ( ( b & OXF0 ) != OXE0 )
+                int b2 = b[offset++];
+                if ( ( b1 & OXF0 ) != OXE0 )
                 {
-                    sb.append( (char) ( ( b & 0x1F ) << 6 | b2 & OX3F ) );
+                    chars[length++] = (char) ( ( b1 & 0x1F ) << 6 | b2 & OX3F );
                 }
                 else
                 {
-                    int b3 = buf.get();
-                    sb.append( (char) ( ( b & 0x0F ) << 12 | ( b2 & OX3F ) << 6 | b3 & OX3F ) );
+                    int b3 = b[offset++];
+                    chars[length++] = (char) ( ( b1 & 0x0F ) << 12 | ( b2 & OX3F ) << 6 | b3 & OX3F );
                 }
             }
         }
-        ( (Buffer) buf ).limit( oldLimit );
-        return sb.toString();
+
+        return length;
+    }
+
+    /**
+     * Looks for a slash in an encoded string: bytes of multi-byte sequences all have their high bit set, so a slash
+     * byte is always a slash character.
+     */
+    static boolean isImportableClass( byte[] b, int offset, int size )
+    {
+        for ( int end = offset + size; offset < end; offset++ )
+        {
+            if ( b[offset] == '/' )
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static boolean isImportableClass( String className )
     {
         return className.indexOf( '/' ) != -1;
     }
+
+    private static void setEntrySize( byte tag, int size )
+    {
+        ENTRY_SIZES[tag] = (byte) size;
+        ENTRY_SLOTS[tag] = 1;
+    }
+
+    private static int skipAttributes( byte[] b, int offset )
+    {
+        int attributeCount = readUnsignedShort( b, offset );
+        offset += 2;
+        while ( attributeCount-- > 0 )
+        {
+            int length = readInt( b, offset + 2 );
+            if ( length < 0 || offset + 6 + length < 0 )
+            {
+                throw new IndexOutOfBoundsException( "Attribute length: " + ( length & 0xFFFFFFFFL ) );
+            }
+            offset += 6 + length;
+        }
+        return offset;
+    }
+
+    private static int readUnsignedShort( byte[] b, int offset )
+    {
+        return ( ( b[offset] & 0xFF ) << 8 ) | ( b[offset + 1] & 0xFF );
+    }
+
+    static int readInt( byte[] b, int offset )
+    {
+        return ( ( b[offset] & 0xFF ) << 24 ) | ( ( b[offset + 1] & 0xFF ) << 16 ) | ( ( b[offset + 2] & 0xFF ) << 8 )
+            | ( b[offset + 3] & 0xFF );
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * Receives the modified UTF8 bytes of class references.
+     */
+    private interface ClassNameConsumer
+    {
+        void accept( byte[] b, int offset, int size );
+    }
 }
@@ -25,7 +25,6 @@ import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
 
@@ -139,7 +138,7 @@ public class DefaultClassVisitor
     {
         if ( signature != null )
         {
-            new SignatureReader( signature ).accept( signatureVisitor );
+            resultCollector.addSignature( signature, signatureVisitor );
         }
     }
 
@@ -147,7 +146,7 @@ public class DefaultClassVisitor
     {
         if ( signature != null )
         {
-            new SignatureReader( signature ).acceptType( signatureVisitor );
+            resultCollector.addTypeSignature( signature, signatureVisitor );
         }
     }
 
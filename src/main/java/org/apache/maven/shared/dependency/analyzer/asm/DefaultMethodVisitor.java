@@ -25,7 +25,6 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
-import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
 
@@ -142,7 +141,7 @@ public class DefaultMethodVisitor
     {
         if ( signature != null )
         {
-            new SignatureReader( signature ).acceptType( signatureVisitor );
+            resultCollector.addTypeSignature( signature, signatureVisitor );
         }
     }
 }
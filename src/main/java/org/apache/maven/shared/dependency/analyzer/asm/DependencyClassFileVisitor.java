@@ -19,19 +19,22 @@ package org.apache.maven.shared.dependency.analyzer.asm;
  * under the License.
  */
 
-import org.apache.maven.shared.dependency.analyzer.ClassFileVisitor;
+import org.apache.maven.shared.dependency.analyzer.ByteBufferClassFileVisitor;
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
 import org.apache.maven.shared.dependency.analyzer.DependencyUsage;
-import org.objectweb.asm.AnnotationVisitor;
+import org.apache.maven.shared.dependency.analyzer.DependencyUsageGraph;
+import org.codehaus.plexus.util.IOUtil;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.FieldVisitor;
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.signature.SignatureVisitor;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Computes the set of classes referenced by visited class files, using
@@ -42,18 +45,116 @@ import java.util.Set;
  * @see #getDependencies()
  */
 public class DependencyClassFileVisitor
-    implements ClassFileVisitor
+    implements ByteBufferClassFileVisitor
 {
     // fields -----------------------------------------------------------------
 
-    private final Set<String> dependencies = new HashSet<String>();
+    private final ClassSymbolTable symbols;
 
-    private final Set<DependencyUsage> dependencyUsages = new HashSet<DependencyUsage>();
+    private final BitSet dependencyIds = new BitSet();
+
+    private Set<String> dependencies;
+
+    private final DependencyUsageGraph.Builder dependencyUsages;
+
+    private DependencyUsageGraph dependencyUsageGraph;
+
+    private final boolean usagesKept;
+
+    private final Consumer<? super DependencyUsage> usageConsumer;
+
+    private final List<DependencyUsage> pendingUsages;
+
+    private final boolean fastScanning;
+
+    private final ScanStatistics statistics;
+
+    private final VisitorChain chain;
+
+    private byte[] buffer = new byte[0];
 
     // constructors -----------------------------------------------------------
 
     public DependencyClassFileVisitor()
     {
+        this( false );
+    }
+
+    /**
+     * @param fastScanning <code>true</code> to read class files with {@link ClassFileScanner} rather than the ASM
+     *            visitors, classes it declines are still visited by ASM
+     */
+    public DependencyClassFileVisitor( boolean fastScanning )
+    {
+        this( fastScanning, new ScanStatistics() );
+    }
+
+    /**
+     * @param fastScanning <code>true</code> to read class files with {@link ClassFileScanner} rather than the ASM
+     *            visitors, classes it declines are still visited by ASM
+     * @param statistics the statistics to update, possibly shared with other visitors
+     */
+    public DependencyClassFileVisitor( boolean fastScanning, ScanStatistics statistics )
+    {
+        this( fastScanning, statistics, new SignatureCache( statistics ) );
+    }
+
+    /**
+     * @param fastScanning <code>true</code> to read class files with {@link ClassFileScanner} rather than the ASM
+     *            visitors, classes it declines are still visited by ASM
+     * @param statistics the statistics to update, possibly shared with other visitors
+     * @param cache the cache of parsed descriptors and signatures, possibly shared with other visitors, whose symbol
+     *            table interns the referenced classes
+     */
+    DependencyClassFileVisitor( boolean fastScanning, ScanStatistics statistics, SignatureCache cache )
+    {
+        this( fastScanning, statistics, cache, true );
+    }
+
+    /**
+     * @param fastScanning <code>true</code> to read class files with {@link ClassFileScanner} rather than the ASM
+     *            visitors, classes it declines are still visited by ASM
+     * @param statistics the statistics to update, possibly shared with other visitors
+     * @param cache the cache of parsed descriptors and signatures, possibly shared with other visitors, whose symbol
+     *            table interns the referenced classes
+     * @param usagesKept <code>false</code> to only keep the set of referenced classes, recording neither the usages
+     *            nor the names of the visited classes
+     */
+    DependencyClassFileVisitor( boolean fastScanning, ScanStatistics statistics, SignatureCache cache,
+                                boolean usagesKept )
+    {
+        this( fastScanning, statistics, cache, usagesKept, null );
+    }
+
+    /**
+     * @param fastScanning <code>true</code> to read class files with {@link ClassFileScanner} rather than the ASM
+     *            visitors, classes it declines are still visited by ASM
+     * @param statistics the statistics to update, possibly shared with other visitors
+     * @param cache the cache of parsed descriptors and signatures, possibly shared with other visitors, whose symbol
+     *            table interns the referenced classes
+     * @param usageConsumer the consumer to push the usages of each visited class to, rather than keeping them, or
+     *            <code>null</code> to keep them; the usages of a class are created on the thread visiting it, then
+     *            pushed together as soon as the class is read, with the consumer locked so that visitors sharing it
+     *            push them from one thread at a time. Only the referenced classes are kept: the usage graph stays
+     *            empty
+     */
+    DependencyClassFileVisitor( boolean fastScanning, ScanStatistics statistics, SignatureCache cache,
+                                Consumer<? super DependencyUsage> usageConsumer )
+    {
+        this( fastScanning, statistics, cache, false, usageConsumer );
+    }
+
+    private DependencyClassFileVisitor( boolean fastScanning, ScanStatistics statistics, SignatureCache cache,
+                                        boolean usagesKept, Consumer<? super DependencyUsage> usageConsumer )
+    {
+        this.fastScanning = fastScanning;
+        this.statistics = statistics;
+        this.chain = new VisitorChain( cache );
+        this.symbols = cache.getSymbols();
+        this.dependencyUsages = new DependencyUsageGraph.Builder( symbols );
+        this.usagesKept = usagesKept;
+        this.usageConsumer = usageConsumer;
+        this.pendingUsages = usageConsumer != null ? new ArrayList<DependencyUsage>() : null;
     }
 
     // ClassFileVisitor methods -----------------------------------------------
@@ -64,59 +165,253 @@ public class DependencyClassFileVisitor
      */
     public void visitClass( String className, InputStream in )
     {
-        ResultCollector resultCollector = new ResultCollector();
         try
         {
-            ClassReader reader = new ClassReader( in );
-
-            final Set<String> constantPoolClassRefs = ConstantPoolParser.getConstantPoolClassReferences( reader.b );
-            for ( String string : constantPoolClassRefs )
-            {
-                resultCollector.addName( string );
-            }
-
-            AnnotationVisitor annotationVisitor = new DefaultAnnotationVisitor( resultCollector );
-            SignatureVisitor signatureVisitor = new DefaultSignatureVisitor( resultCollector );
-            FieldVisitor fieldVisitor = new DefaultFieldVisitor( annotationVisitor, resultCollector );
-            MethodVisitor mv = new DefaultMethodVisitor( annotationVisitor, signatureVisitor, resultCollector );
-            ClassVisitor classVisitor =
-                new DefaultClassVisitor( signatureVisitor, annotationVisitor, fieldVisitor, mv, resultCollector );
-
-            reader.accept( classVisitor, 0 );
+            visitClass( className, IOUtil.toByteArray( in ) );
         }
         catch ( IOException exception )
         {
             exception.printStackTrace();
         }
-        catch ( IndexOutOfBoundsException e )
+    }
+
+    // ByteBufferClassFileVisitor methods -------------------------------------
+
+    /**
+     * Visits a class file given as a buffer. The class file of a buffer backed by an accessible array is read in
+     * place, wherever it lies in the array. ASM and {@link ClassFileScanner} only read arrays: the class file of a
+     * direct or read-only buffer, such as the slice of a memory mapped jar, is copied into an array reused from class
+     * to class.
+     *
+     * @param className the class name, with dots
+     * @param buffer the class file, from its position to its limit
+     * @see org.apache.maven.shared.dependency.analyzer.ByteBufferClassFileVisitor#visitClass(java.lang.String,
+     *      java.nio.ByteBuffer)
+     */
+    public void visitClass( String className, ByteBuffer buffer )
+    {
+        int length = buffer.remaining();
+        if ( buffer.hasArray() )
         {
-            // some bug inside ASM causes an IOB exception. Log it and move on?
-            // this happens when the class isn't valid.
-            System.out.println( "Unable to process: " + className );
+            int start = buffer.arrayOffset() + buffer.position();
+            visitClass( className, buffer.array(), start, start + length );
+            return;
         }
 
-        for ( String dependencyClass : resultCollector.getDependencies() )
+        if ( this.buffer.length < length )
         {
-            dependencies.add( dependencyClass );
-            dependencyUsages.add( new DependencyUsage( dependencyClass, className ) );
+            this.buffer = new byte[Math.max( length, this.buffer.length * 2 )];
         }
+        buffer.duplicate().get( this.buffer, 0, length );
+
+        visitClass( className, this.buffer, 0, length );
     }
 
     // public methods ---------------------------------------------------------
 
     /**
-     * @return the set of classes referenced by visited class files
+     * @return whether class files are read with {@link ClassFileScanner}
+     */
+    public boolean isFastScanning()
+    {
+        return fastScanning;
+    }
+
+    /**
+     * @return the statistics of how visited class files were read
+     */
+    public ScanStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * @return the set of classes referenced by visited class files, named once the classes are visited
      */
     public Set<String> getDependencies()
     {
+        if ( dependencies == null )
+        {
+            dependencies = getNames( dependencyIds, symbols );
+        }
         return dependencies;
     }
 
     /**
-     * @return the set of dependency usages for visited class files
+     * @return the set of dependency usages for visited class files, as an unmodifiable view of
+     *         {@link #getDependencyUsageGraph()}, empty if only the referenced classes are kept
      */
     public Set<DependencyUsage> getDependencyUsages()
     {
-        return dependencyUsages;
+        return getDependencyUsageGraph().getUsages();
+    }
+
+    /**
+     * @return the graph of dependency usages for visited class files, built again only after more classes are visited
+     */
+    public DependencyUsageGraph getDependencyUsageGraph()
+    {
+        if ( dependencyUsageGraph == null )
+        {
+            dependencyUsageGraph = dependencyUsages.build();
+        }
+        return dependencyUsageGraph;
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @param visitors visitors sharing a symbol table
+     * @return the set of classes referenced by the class files they visited, named from the union of their
+     *         identifiers
+     */
+    static Set<String> getDependencies( List<DependencyClassFileVisitor> visitors )
+    {
+        if ( visitors.size() == 1 )
+        {
+            return visitors.get( 0 ).getDependencies();
+        }
+
+        BitSet dependencyIds = new BitSet();
+        for ( DependencyClassFileVisitor visitor : visitors )
+        {
+            dependencyIds.or( visitor.dependencyIds );
+        }
+        return getNames( dependencyIds, visitors.isEmpty() ? null : visitors.get( 0 ).symbols );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private void visitClass( String className, byte[] b )
+    {
+        visitClass( className, b, 0, b.length );
+    }
+
+    /**
+     * Reads the class file between two offsets of a buffer, whose following bytes may be those of another class.
+     */
+    private void visitClass( String className, byte[] b, int start, int end )
+    {
+        VisitorChain chain = this.chain;
+        chain.reset();
+        try
+        {
+            ClassReader reader;
+
+            if ( fastScanning && chain.scan( b, start, end ) )
+            {
+                statistics.scanned();
+            }
+            else if ( ( reader = readClass( b, start, end ) ) != null )
+            {
+                chain.visit( reader, start );
+                statistics.visited();
+            }
+            else if ( chain.visitConstantPool( b, start, end ) )
+            {
+                // a class file version or constant ASM does not know: only the constant pool can be read
+                statistics.constantPoolOnly();
+            }
+            else
+            {
+                // neither read: only counted, as the statistics report the failures of a scan
+                statistics.failed();
+            }
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            // some bug inside ASM causes an IOB exception. Log it and move on?
+            // this happens when the class isn't valid.
+            statistics.failed();
+            System.out.println( "Unable to process: " + className );
+        }
+
+        // the names are those of the symbol table, created once per class of the scan, and usages are only ids
+        ResultCollector resultCollector = chain.getResultCollector();
+        int count = resultCollector.getDependencyCount();
+        if ( count == 0 )
+        {
+            return;
+        }
+
+        if ( usageConsumer != null )
+        {
+            // the collector gives each dependency class of the class once, named outside of the lock
+            for ( int i = 0; i < count; i++ )
+            {
+                pendingUsages.add( new DependencyUsage( symbols.getName( resultCollector.getDependencyId( i ) ),
+                                                        className ) );
+            }
+            pushUsages();
+        }
+
+        for ( int i = 0; i < count; i++ )
+        {
+            dependencyIds.set( resultCollector.getDependencyId( i ) );
+        }
+        dependencies = null;
+
+        if ( !usagesKept )
+        {
+            return;
+        }
+
+        int usedBy = dependencyUsages.addUsedBy( className );
+        for ( int i = 0; i < count; i++ )
+        {
+            dependencyUsages.addUsage( resultCollector.getDependencyId( i ), usedBy );
+        }
+        dependencyUsageGraph = null;
+    }
+
+    /**
+     * Pushes the usages of the class just read to the consumer, taking its lock once for the whole class.
+     */
+    private void pushUsages()
+    {
+        synchronized ( usageConsumer )
+        {
+            for ( DependencyUsage usage : pendingUsages )
+            {
+                usageConsumer.accept( usage );
+            }
+        }
+        pendingUsages.clear();
+    }
+
+    private static Set<String> getNames( BitSet ids, ClassSymbolTable symbols )
+    {
+        Set<String> names = new HashSet<String>( Math.max( 16, ids.cardinality() * 4 / 3 + 1 ) );
+        for ( int id = ids.nextSetBit( 0 ); id >= 0; id = ids.nextSetBit( id + 1 ) )
+        {
+            names.add( symbols.getName( id ) );
+        }
+        return names;
+    }
+
+    private static ClassReader readClass( byte[] b, int start, int end )
+    {
+        // ASM does not check the magic number, it would read anything else as a class
+        if ( end - start < 10 || ConstantPoolParser.readInt( b, start ) != ConstantPoolParser.HEAD )
+        {
+            return null;
+        }
+
+        ClassReader reader;
+        try
+        {
+            reader = new ClassReader( b, start, end - start );
+        }
+        catch ( IllegalArgumentException exception )
+        {
+            return null;
+        }
+
+        // ASM reads past the end of a truncated class file: it is not visited if those bytes are another's
+        if ( end < b.length && ConstantPoolParser.readClassEnd( b, reader.header ) > end )
+        {
+            throw new IndexOutOfBoundsException( "Truncated class file" );
+        }
+        return reader;
     }
 }
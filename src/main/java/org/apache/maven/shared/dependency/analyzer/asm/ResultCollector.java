@@ -19,9 +19,18 @@ package org.apache.maven.shared.dependency.analyzer.asm;
  * under the License.
  */
 
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
 
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -30,11 +39,64 @@ import java.util.Set;
 public class ResultCollector
 {
 
-    private final Set<String> classes = new HashSet<String>();
+    private final ClassSymbolTable symbols;
 
+    /**
+     * The identifiers of the collected classes, in the symbol table, as a set and in collection order.
+     */
+    private final BitSet classSet = new BitSet();
+
+    private int[] classIds = new int[16];
+
+    private int classCount;
+
+    private final SignatureCache cache;
+
+    /**
+     * The classes added while parsing a descriptor or signature that is not cached yet.
+     */
+    private int[] parsedClassIds = new int[8];
+
+    private int parsedClassCount;
+
+    private boolean parsing;
+
+    private char[] chars = new char[64];
+
+    /**
+     * The names given to {@link #add(String)} that a sealed symbol table does not know, <code>null</code> if none.
+     */
+    private Set<String> unknownNames;
+
+    public ResultCollector()
+    {
+        this( new ClassSymbolTable(), null );
+    }
+
+    /**
+     * @param cache the cache of parsed descriptors and signatures, whose symbol table interns the collected classes
+     */
+    ResultCollector( SignatureCache cache )
+    {
+        this( cache.getSymbols(), cache );
+    }
+
+    /**
+     * @param symbols the symbol table interning the collected classes
+     * @param cache the cache of parsed descriptors and signatures, <code>null</code> to parse them every time
+     */
+    ResultCollector( ClassSymbolTable symbols, SignatureCache cache )
+    {
+        this.symbols = symbols;
+        this.cache = cache;
+    }
+
+    /**
+     * @return the collected classes, with dots, as a view backed by this collector
+     */
     public Set<String> getDependencies()
     {
-        return classes;
+        return new DependencySet();
     }
 
     public void addName( String name )
@@ -47,18 +109,44 @@ public class ResultCollector
         // decode arrays
         if ( name.startsWith( "[L" ) && name.endsWith( ";" ) )
         {
-            name = name.substring( 2, name.length() - 1 );
+            addName( name, 2, name.length() - 1 );
+            return;
         }
 
-        // decode internal representation
-        name = name.replace( '/', '.' );
+        // the symbol table reads the internal representation
+        addClass( symbols.intern( name ) );
+    }
+
+    /**
+     * Adds a class given by the modified UTF8 bytes of its name in a class file, as {@link #addName(String)} would,
+     * hashing the bytes in place: no string is created unless the symbol table does not know the class yet.
+     *
+     * @param b the class file bytes
+     * @param offset the offset of the encoded class name
+     * @param length the number of bytes of the encoded class name
+     */
+    void addName( byte[] b, int offset, int length )
+    {
+        // decode arrays
+        if ( length > 2 && b[offset] == '[' && b[offset + 1] == 'L' && b[offset + length - 1] == ';' )
+        {
+            offset += 2;
+            length -= 3;
+        }
 
-        classes.add( name );
+        addClass( symbols.intern( b, offset, length ) );
     }
 
+    /**
+     * Adds the class of a field descriptor, or of the elements of an array descriptor, as
+     * <code>addType( Type.getType( desc ) )</code> would.
+     *
+     * @param desc the field descriptor
+     * @throws IllegalArgumentException if the descriptor is invalid
+     */
     void addDesc( final String desc )
     {
-        addType( Type.getType( desc ) );
+        add( SignatureCache.FIELD_DESCRIPTOR, desc, null );
     }
 
     void addType( final Type t )
@@ -70,16 +158,71 @@ public class ResultCollector
                 break;
 
             case Type.OBJECT:
-                addName( t.getClassName().replace( '.', '/' ) );
+                addName( t.getInternalName() );
                 break;
 
             default:
         }
     }
 
+    /**
+     * Adds a class name as given, even one a {@link ClassSymbolTable#seal() sealed} symbol table does not know: that
+     * name is then collected apart from the identifiers of the table.
+     *
+     * @param name the class name
+     */
     public void add( String name )
     {
-        classes.add( name );
+        int id = symbols.intern( name );
+        if ( id >= 0 )
+        {
+            addClass( id );
+            return;
+        }
+
+        if ( unknownNames == null )
+        {
+            unknownNames = new LinkedHashSet<String>();
+        }
+        unknownNames.add( name );
+    }
+
+    /**
+     * Forgets the collected classes, keeping the storage of the set for the next class.
+     */
+    void clear()
+    {
+        for ( int i = 0; i < classCount; i++ )
+        {
+            classSet.clear( classIds[i] );
+        }
+        classCount = 0;
+        unknownNames = null;
+    }
+
+    /**
+     * @return the symbol table interning the collected classes
+     */
+    ClassSymbolTable getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * @return the number of collected classes known to the symbol table
+     */
+    int getDependencyCount()
+    {
+        return classCount;
+    }
+
+    /**
+     * @param index the index of a collected class, in collection order
+     * @return the identifier of the class in the symbol table
+     */
+    int getDependencyId( int index )
+    {
+        return classIds[index];
     }
 
     void addNames( final String[] names )
@@ -95,15 +238,287 @@ public class ResultCollector
         }
     }
 
+    /**
+     * Adds the classes of the parameter and return types of a method descriptor, as
+     * <code>Type.getReturnType</code> and <code>Type.getArgumentTypes</code> would give them.
+     *
+     * @param desc the method descriptor
+     * @throws IllegalArgumentException if the descriptor is invalid
+     */
     void addMethodDesc( final String desc )
     {
-        addType( Type.getReturnType( desc ) );
+        add( SignatureCache.METHOD_DESCRIPTOR, desc, null );
+    }
 
-        Type[] types = Type.getArgumentTypes( desc );
+    /**
+     * Adds the classes of a class or method signature.
+     *
+     * @param signature the signature
+     * @param signatureVisitor the visitor of the signature, adding classes to this collector
+     */
+    void addSignature( final String signature, final SignatureVisitor signatureVisitor )
+    {
+        add( SignatureCache.SIGNATURE, signature, signatureVisitor );
+    }
+
+    /**
+     * Adds the classes of a field or local variable type signature.
+     *
+     * @param signature the type signature
+     * @param signatureVisitor the visitor of the signature, adding classes to this collector
+     */
+    void addTypeSignature( final String signature, final SignatureVisitor signatureVisitor )
+    {
+        add( SignatureCache.TYPE_SIGNATURE, signature, signatureVisitor );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private void add( int kind, String key, SignatureVisitor signatureVisitor )
+    {
+        if ( cache == null )
+        {
+            parse( kind, key, signatureVisitor );
+            return;
+        }
 
-        for ( Type type : types )
+        int[] ids = cache.get( kind, key );
+        if ( ids != null )
         {
-            addType( type );
+            for ( int id : ids )
+            {
+                addClass( id );
+            }
+            return;
+        }
+
+        parsedClassCount = 0;
+        parsing = true;
+        try
+        {
+            parse( kind, key, signatureVisitor );
+        }
+        finally
+        {
+            parsing = false;
+        }
+        cache.put( kind, key, Arrays.copyOf( parsedClassIds, parsedClassCount ) );
+    }
+
+    private void parse( int kind, String key, SignatureVisitor signatureVisitor )
+    {
+        switch ( kind )
+        {
+            case SignatureCache.FIELD_DESCRIPTOR:
+                addFieldDesc( key, 0, key.length() );
+                break;
+
+            case SignatureCache.METHOD_DESCRIPTOR:
+                parseMethodDesc( key );
+                break;
+
+            case SignatureCache.SIGNATURE:
+                new SignatureReader( key ).accept( signatureVisitor );
+                break;
+
+            default:
+                new SignatureReader( key ).acceptType( signatureVisitor );
+        }
+    }
+
+    private void addClass( int id )
+    {
+        // a sealed symbol table does not intern the classes it does not know
+        if ( id < 0 )
+        {
+            return;
+        }
+
+        if ( !classSet.get( id ) )
+        {
+            classSet.set( id );
+            if ( classCount == classIds.length )
+            {
+                classIds = Arrays.copyOf( classIds, classCount * 2 );
+            }
+            classIds[classCount++] = id;
+        }
+
+        if ( parsing )
+        {
+            addParsedClass( id );
+        }
+    }
+
+    private void addParsedClass( int id )
+    {
+        // descriptors and signatures reference a few classes only
+        for ( int i = 0; i < parsedClassCount; i++ )
+        {
+            if ( parsedClassIds[i] == id )
+            {
+                return;
+            }
+        }
+
+        if ( parsedClassCount == parsedClassIds.length )
+        {
+            parsedClassIds = Arrays.copyOf( parsedClassIds, parsedClassCount * 2 );
+        }
+        parsedClassIds[parsedClassCount++] = id;
+    }
+
+    private void parseMethodDesc( String desc )
+    {
+        if ( desc.isEmpty() || desc.charAt( 0 ) != '(' )
+        {
+            throw new IllegalArgumentException( "Invalid method descriptor: " + desc );
+        }
+
+        int offset = 1;
+        char c;
+        while ( ( c = charAt( desc, offset ) ) != ')' )
+        {
+            int start = offset;
+            while ( c == '[' )
+            {
+                c = charAt( desc, ++offset );
+            }
+
+            if ( c == 'L' )
+            {
+                offset = desc.indexOf( ';', offset );
+                if ( offset == -1 )
+                {
+                    throw new IllegalArgumentException( "Invalid method descriptor: " + desc );
+                }
+            }
+            offset++;
+
+            addFieldDesc( desc, start, offset );
+        }
+
+        addFieldDesc( desc, offset + 1, desc.length() );
+    }
+
+    /**
+     * Adds the class of the field descriptor found between two offsets.
+     */
+    private void addFieldDesc( String desc, int start, int end )
+    {
+        while ( start < end && desc.charAt( start ) == '[' )
+        {
+            start++;
+        }
+
+        switch ( start < end ? desc.charAt( start ) : 0 )
+        {
+            case 'L':
+                // like Type, the class name ends before the last character
+                addName( desc, start + 1, end - 1 );
+                break;
+
+            case 'V':
+            case 'Z':
+            case 'C':
+            case 'B':
+            case 'S':
+            case 'I':
+            case 'F':
+            case 'J':
+            case 'D':
+                break;
+
+            default:
+                throw new IllegalArgumentException( "Invalid descriptor: " + desc );
+        }
+    }
+
+    /**
+     * Adds the class whose internal name is found between two offsets, creating no string unless the symbol table
+     * does not know the class yet.
+     */
+    private void addName( String desc, int start, int end )
+    {
+        int length = end - start;
+        if ( length < 0 )
+        {
+            throw new IllegalArgumentException( "Invalid descriptor: " + desc );
+        }
+        if ( chars.length < length )
+        {
+            chars = new char[Math.max( length, chars.length * 2 )];
+        }
+
+        desc.getChars( start, end, chars, 0 );
+        addClass( symbols.intern( chars, 0, length ) );
+    }
+
+    private static char charAt( String desc, int offset )
+    {
+        if ( offset >= desc.length() )
+        {
+            throw new IllegalArgumentException( "Invalid method descriptor: " + desc );
+        }
+
+        return desc.charAt( offset );
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    /**
+     * The collected classes, named from the symbol table, then those it does not know.
+     */
+    private final class DependencySet
+        extends AbstractSet<String>
+    {
+        public Iterator<String> iterator()
+        {
+            return new Iterator<String>()
+            {
+                private int index;
+
+                private Iterator<String> unknown;
+
+                public boolean hasNext()
+                {
+                    if ( index < classCount )
+                    {
+                        return true;
+                    }
+                    if ( unknown == null )
+                    {
+                        unknown = unknownNames != null ? unknownNames.iterator()
+                                        : Collections.<String>emptyIterator();
+                    }
+                    return unknown.hasNext();
+                }
+
+                public String next()
+                {
+                    if ( !hasNext() )
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return index < classCount ? symbols.getName( classIds[index++] ) : unknown.next();
+                }
+            };
+        }
+
+        public int size()
+        {
+            return classCount + ( unknownNames != null ? unknownNames.size() : 0 );
+        }
+
+        public boolean contains( Object object )
+        {
+            if ( !( object instanceof String ) )
+            {
+                return false;
+            }
+
+            int id = symbols.lookup( (String) object );
+            return id >= 0 ? classSet.get( id ) : unknownNames != null && unknownNames.contains( object );
         }
     }
 }
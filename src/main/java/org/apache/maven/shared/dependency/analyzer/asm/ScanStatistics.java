@@ -0,0 +1,151 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how the class files visited by {@link DependencyClassFileVisitor} were read, so that classes leaving the
+ * fast path are noticed rather than silently slowing down or failing an analysis.
+ * <p>
+ * A class is read by the first of these that succeeds: {@link ClassFileScanner} when fast scanning is enabled, the
+ * ASM visitors, then its constant pool alone for class files ASM rejects, such as newer class file versions.
+ * <p>
+ * Lookups of descriptors and signatures in the cache of parsed ones are counted as well.
+ */
+public class ScanStatistics
+{
+    // fields -----------------------------------------------------------------
+
+    // counted once per class or descriptor, from every scanning thread
+    private final LongAdder scannedCount = new LongAdder();
+
+    private final LongAdder visitedCount = new LongAdder();
+
+    private final LongAdder constantPoolOnlyCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private final LongAdder signatureCacheHitCount = new LongAdder();
+
+    private final LongAdder signatureCacheMissCount = new LongAdder();
+
+    // public methods ---------------------------------------------------------
+
+    /**
+     * @return the number of classes read by the fast class file scanner
+     */
+    public long getScannedCount()
+    {
+        return scannedCount.sum();
+    }
+
+    /**
+     * @return the number of classes read by the ASM visitors
+     */
+    public long getVisitedCount()
+    {
+        return visitedCount.sum();
+    }
+
+    /**
+     * @return the number of classes rejected by ASM, of which only the constant pool class references were read
+     */
+    public long getConstantPoolOnlyCount()
+    {
+        return constantPoolOnlyCount.sum();
+    }
+
+    /**
+     * @return the number of classes that could not be read at all
+     */
+    public long getFailedCount()
+    {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return the number of descriptors and signatures found in the cache of parsed ones
+     */
+    public long getSignatureCacheHitCount()
+    {
+        return signatureCacheHitCount.sum();
+    }
+
+    /**
+     * @return the number of descriptors and signatures parsed because they were not cached
+     */
+    public long getSignatureCacheMissCount()
+    {
+        return signatureCacheMissCount.sum();
+    }
+
+    /**
+     * @return the ratio of descriptor and signature lookups found in the cache, <code>0</code> if none was looked up
+     */
+    public double getSignatureCacheHitRate()
+    {
+        long hitCount = getSignatureCacheHitCount();
+        long lookupCount = hitCount + getSignatureCacheMissCount();
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return "scanned=" + getScannedCount() + ", visited=" + getVisitedCount() + ", constantPoolOnly="
+            + getConstantPoolOnlyCount() + ", failed=" + getFailedCount() + ", signatureCacheHitRate="
+            + getSignatureCacheHitRate();
+    }
+
+    // package methods --------------------------------------------------------
+
+    void scanned()
+    {
+        scannedCount.increment();
+    }
+
+    void visited()
+    {
+        visitedCount.increment();
+    }
+
+    void constantPoolOnly()
+    {
+        constantPoolOnlyCount.increment();
+    }
+
+    void failed()
+    {
+        failedCount.increment();
+    }
+
+    void signatureCacheHit()
+    {
+        signatureCacheHitCount.increment();
+    }
+
+    void signatureCacheMiss()
+    {
+        signatureCacheMissCount.increment();
+    }
+}
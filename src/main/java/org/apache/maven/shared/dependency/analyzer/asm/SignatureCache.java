@@ -0,0 +1,154 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
+
+/**
+ * Remembers the classes referenced by descriptors and signatures, which repeat across the classes of a library, so
+ * that each is parsed once per scan. The cache is shared by the visitors of a scan, possibly on several threads.
+ * <p>
+ * Classes are cached as their identifiers in the symbol table of the scan, which the visitors sharing the cache use.
+ * <p>
+ * The cache is bounded: once full, descriptors and signatures not seen yet are parsed every time. Lookups are
+ * counted in the {@link ScanStatistics} of the scan.
+ */
+final class SignatureCache
+{
+    // constants --------------------------------------------------------------
+
+    static final int FIELD_DESCRIPTOR = 0;
+
+    static final int METHOD_DESCRIPTOR = 1;
+
+    static final int SIGNATURE = 2;
+
+    static final int TYPE_SIGNATURE = 3;
+
+    /**
+     * The default number of cached descriptors and signatures.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 15;
+
+    private static final int[] NO_CLASSES = new int[0];
+
+    // fields -----------------------------------------------------------------
+
+    /**
+     * A map per kind, the same string being read differently as a class or a type signature.
+     */
+    private final Map<String, int[]>[] classes;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int capacity;
+
+    private final ClassSymbolTable symbols;
+
+    private final ScanStatistics statistics;
+
+    // constructors -----------------------------------------------------------
+
+    SignatureCache( ScanStatistics statistics )
+    {
+        this( new ClassSymbolTable(), statistics );
+    }
+
+    SignatureCache( ClassSymbolTable symbols, ScanStatistics statistics )
+    {
+        this( DEFAULT_CAPACITY, symbols, statistics );
+    }
+
+    SignatureCache( int capacity, ScanStatistics statistics )
+    {
+        this( capacity, new ClassSymbolTable(), statistics );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    SignatureCache( int capacity, ClassSymbolTable symbols, ScanStatistics statistics )
+    {
+        this.classes = new Map[TYPE_SIGNATURE + 1];
+        for ( int i = 0; i < classes.length; i++ )
+        {
+            classes[i] = new ConcurrentHashMap<String, int[]>();
+        }
+        this.capacity = capacity;
+        this.symbols = symbols;
+        this.statistics = statistics;
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @return the symbol table of the cached class identifiers
+     */
+    ClassSymbolTable getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * @param kind the kind of the descriptor or signature
+     * @param key the descriptor or signature
+     * @return the identifiers of the referenced classes, or <code>null</code> if not cached
+     */
+    int[] get( int kind, String key )
+    {
+        int[] ids = classes[kind].get( key );
+        if ( ids != null )
+        {
+            statistics.signatureCacheHit();
+        }
+        else
+        {
+            statistics.signatureCacheMiss();
+        }
+        return ids;
+    }
+
+    /**
+     * Caches the classes referenced by a descriptor or signature, unless the cache is full.
+     *
+     * @param kind the kind of the descriptor or signature
+     * @param key the descriptor or signature
+     * @param ids the identifiers of the referenced classes
+     */
+    void put( int kind, String key, int[] ids )
+    {
+        // racing threads may overshoot the capacity by a few entries
+        if ( size.get() < capacity
+            && classes[kind].putIfAbsent( key, ids.length == 0 ? NO_CLASSES : ids ) == null )
+        {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of cached descriptors and signatures
+     */
+    int size()
+    {
+        return size.get();
+    }
+}
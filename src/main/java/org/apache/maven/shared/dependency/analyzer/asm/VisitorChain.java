@@ -0,0 +1,130 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.function.Consumer;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+/**
+ * The visitors reading the classes referenced by class files, created once and reset between classes rather than
+ * created for every class file.
+ * <p>
+ * A chain is not thread-safe: each {@link DependencyClassFileVisitor}, which is confined to a thread, has its own.
+ */
+final class VisitorChain
+{
+    // fields -----------------------------------------------------------------
+
+    private final ResultCollector resultCollector;
+
+    private final Consumer<String> nameConsumer;
+
+    private final ClassVisitor classVisitor;
+
+    private ClassFileScanner scanner;
+
+    private char[] charBuffer;
+
+    // constructors -----------------------------------------------------------
+
+    /**
+     * @param cache the cache of parsed descriptors and signatures, possibly shared with other chains
+     */
+    VisitorChain( SignatureCache cache )
+    {
+        resultCollector = new ResultCollector( cache );
+        nameConsumer = resultCollector::addName;
+
+        AnnotationVisitor annotationVisitor = new DefaultAnnotationVisitor( resultCollector );
+        SignatureVisitor signatureVisitor = new DefaultSignatureVisitor( resultCollector );
+        FieldVisitor fieldVisitor = new DefaultFieldVisitor( annotationVisitor, resultCollector );
+        MethodVisitor mv = new DefaultMethodVisitor( annotationVisitor, signatureVisitor, resultCollector );
+        classVisitor =
+            new DefaultClassVisitor( signatureVisitor, annotationVisitor, fieldVisitor, mv, resultCollector );
+    }
+
+    // package methods --------------------------------------------------------
+
+    /**
+     * @return the collector of the classes referenced by the current class
+     */
+    ResultCollector getResultCollector()
+    {
+        return resultCollector;
+    }
+
+    /**
+     * Forgets the classes referenced by the previous class.
+     */
+    void reset()
+    {
+        resultCollector.clear();
+    }
+
+    /**
+     * Reads a class file with {@link ClassFileScanner}.
+     *
+     * @param b the buffer of the class file
+     * @param start the offset of the class file
+     * @param end the offset following the class file
+     * @return <code>false</code> if the class must be visited by the ASM visitors instead
+     */
+    boolean scan( byte[] b, int start, int end )
+    {
+        if ( scanner == null )
+        {
+            scanner = new ClassFileScanner( resultCollector );
+        }
+
+        return scanner.scan( b, start, end );
+    }
+
+    /**
+     * Reads a class file with the ASM visitors.
+     *
+     * @param reader the reader of the class file
+     * @param start the offset of the class file in the buffer of the reader
+     */
+    void visit( ClassReader reader, int start )
+    {
+        charBuffer = ConstantPoolParser.acceptConstantPoolClassReferences( reader, start, charBuffer, nameConsumer );
+
+        reader.accept( classVisitor, 0 );
+    }
+
+    /**
+     * Reads the class references of the constant pool of a class file alone.
+     *
+     * @param b the buffer of the class file
+     * @param start the offset of the class file
+     * @param end the offset following the class file
+     * @return <code>false</code> if the constant pool cannot be parsed
+     */
+    boolean visitConstantPool( byte[] b, int start, int end )
+    {
+        return ConstantPoolParser.addConstantPoolClassReferences( b, start, end, resultCollector );
+    }
+}
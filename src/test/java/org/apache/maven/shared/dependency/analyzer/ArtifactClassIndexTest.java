@@ -0,0 +1,140 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>ArtifactClassIndex</code>.
+ *
+ * @see ArtifactClassIndex
+ */
+public class ArtifactClassIndexTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testFindArtifact()
+    {
+        Artifact a = createArtifact( "a" );
+        Artifact b = createArtifact( "b" );
+
+        Map<Artifact, Set<String>> artifactClassMap = new LinkedHashMap<Artifact, Set<String>>();
+        artifactClassMap.put( a, classes( "a.A", "a.B" ) );
+        artifactClassMap.put( b, classes( "b.A" ) );
+
+        ArtifactClassIndex index = new ArtifactClassIndex( artifactClassMap );
+
+        assertSame( a, index.findArtifact( "a.A" ) );
+        assertSame( a, index.findArtifact( "a.B" ) );
+        assertSame( b, index.findArtifact( "b.A" ) );
+        assertNull( index.findArtifact( "c.A" ) );
+        assertEquals( Collections.singletonList( b ), index.findArtifacts( "b.A" ) );
+        assertTrue( index.findArtifacts( "c.A" ).isEmpty() );
+        assertTrue( index.getAmbiguousClasses().isEmpty() );
+        assertEquals( 3, index.size() );
+    }
+
+    public void testFindArtifactWithSplitPackage()
+    {
+        Artifact a = createArtifact( "a" );
+        Artifact b = createArtifact( "b" );
+        Artifact c = createArtifact( "c" );
+
+        Map<Artifact, Set<String>> artifactClassMap = new LinkedHashMap<Artifact, Set<String>>();
+        artifactClassMap.put( b, classes( "x.Split", "b.A" ) );
+        artifactClassMap.put( a, classes( "x.Split" ) );
+        artifactClassMap.put( c, classes( "x.Split", "c.A" ) );
+
+        ArtifactClassIndex index = new ArtifactClassIndex( artifactClassMap );
+
+        // first match in artifact order, like the former linear scan
+        assertSame( b, index.findArtifact( "x.Split" ) );
+        assertEquals( Arrays.asList( b, a, c ), index.findArtifacts( "x.Split" ) );
+        assertEquals( Collections.singleton( "x.Split" ), index.getAmbiguousClasses().keySet() );
+    }
+
+    public void testSharedSymbolTable()
+    {
+        Artifact a = createArtifact( "a" );
+
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        int other = symbols.intern( "java/lang/Object" );
+
+        Map<Artifact, Set<String>> artifactClassMap = new LinkedHashMap<Artifact, Set<String>>();
+        artifactClassMap.put( a, classes( "a.A" ) );
+
+        ArtifactClassIndex index = new ArtifactClassIndex( artifactClassMap, symbols );
+
+        assertSame( symbols, index.getSymbols() );
+        assertSame( a, index.findArtifact( symbols.lookup( "a/A" ) ) );
+        assertSame( a, index.findArtifact( "a/A" ) );
+        assertNull( index.findArtifact( other ) );
+        assertNull( index.findArtifact( -1 ) );
+        assertNull( index.findArtifact( symbols.intern( "b.B" ) ) );
+        assertSame( a, index.findArtifact( "xa/Ax".getBytes( StandardCharsets.UTF_8 ), 1, 3 ) );
+        assertNull( index.findArtifact( "a/B".getBytes( StandardCharsets.UTF_8 ), 0, 3 ) );
+        assertEquals( 1, index.size() );
+    }
+
+    public void testSealedSymbolTable()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        symbols.intern( "a.A" );
+        symbols.seal();
+
+        try
+        {
+            new ArtifactClassIndex( Collections.singletonMap( createArtifact( "a" ), classes( "a.A", "a.B" ) ),
+                                    symbols );
+            fail();
+        }
+        catch ( IllegalStateException exception )
+        {
+            // expected
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private Set<String> classes( String... classNames )
+    {
+        return new HashSet<String>( Arrays.asList( classNames ) );
+    }
+
+    private Artifact createArtifact( String artifactId )
+    {
+        return new DefaultArtifact( "g", artifactId, VersionRange.createFromVersion( "1.0" ), "compile", "jar", null,
+                                    new DefaultArtifactHandler() );
+    }
+}
@@ -0,0 +1,87 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Tests <code>ArtifactConflictIds</code>.
+ *
+ * @see ArtifactConflictIds
+ */
+public class ArtifactConflictIdsTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testGetId()
+    {
+        ArtifactConflictIds conflictIds = new ArtifactConflictIds();
+
+        Artifact a = createArtifact( "a", "1.0", "compile" );
+        Artifact b = createArtifact( "b", "1.0", "compile" );
+
+        assertEquals( 0, conflictIds.getId( a ) );
+        assertEquals( 1, conflictIds.getId( b ) );
+        assertEquals( 0, conflictIds.getId( a ) );
+
+        // neither the version nor the scope is part of the conflict id
+        assertEquals( 0, conflictIds.getId( createArtifact( "a", "2.0", "test" ) ) );
+        assertEquals( 2, conflictIds.size() );
+
+        assertEquals( 2, conflictIds.getId( createArtifact( "c", "1.0", "compile" ) ) );
+        assertEquals( 3, conflictIds.size() );
+    }
+
+    public void testGetIds()
+    {
+        ArtifactConflictIds conflictIds = new ArtifactConflictIds();
+
+        Artifact a = createArtifact( "a", "1.0", "compile" );
+        Artifact b = createArtifact( "b", "1.0", "compile" );
+        Artifact c = createArtifact( "c", "1.0", "compile" );
+
+        BitSet used = conflictIds.getIds( Arrays.asList( a, b ) );
+        BitSet declared = conflictIds.getIds( Arrays.asList( createArtifact( "b", "2.0", "compile" ), c ) );
+
+        BitSet usedDeclared = (BitSet) used.clone();
+        usedDeclared.and( declared );
+
+        assertEquals( 1, usedDeclared.cardinality() );
+        assertTrue( usedDeclared.get( conflictIds.getId( b ) ) );
+        assertFalse( used.get( conflictIds.getId( c ) ) );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static Artifact createArtifact( String artifactId, String version, String scope )
+    {
+        return new DefaultArtifact( "g", artifactId, VersionRange.createFromVersion( version ), scope, "jar", null,
+                                    new DefaultArtifactHandler() );
+    }
+}
@@ -22,10 +22,22 @@ package org.apache.maven.shared.dependency.analyzer;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.jmock.Mock;
 
 /**
@@ -149,6 +161,260 @@ public class ClassFileVisitorUtilsTest
         }
     }
 
+    public void testAcceptDirInParallel()
+        throws IOException
+    {
+        File dir = createDir();
+
+        for ( int i = 0; i < 500; i++ )
+        {
+            File packageDir = mkdirs( dir, "p" + ( i % 7 ) );
+            createFile( packageDir, "C" + i + ".class", "class p" + ( i % 7 ) + ".C" + i );
+        }
+
+        RecordingVisitor sequential = new RecordingVisitor();
+        ClassFileVisitorUtils.accept( dir.toURI().toURL(), sequential );
+
+        List<RecordingVisitor> visitors = ClassFileVisitorUtils.accept( dir.toURI().toURL(), RecordingVisitor::new, 4 );
+
+        FileUtils.deleteDirectory( dir );
+
+        assertTrue( visitors.size() > 1 );
+
+        // ranges are contiguous and returned in class file order
+        List<String> classNames = new ArrayList<String>();
+        for ( RecordingVisitor visitor : visitors )
+        {
+            classNames.addAll( visitor.classNames );
+        }
+        assertEquals( sequential.classNames, classNames );
+        assertEquals( 500, classNames.size() );
+    }
+
+    public void testAcceptDirSequentially()
+        throws IOException
+    {
+        File dir = createDir();
+
+        File abDir = mkdirs( dir, "a/b" );
+        createFile( abDir, "c.class", "class a.b.c" );
+
+        List<RecordingVisitor> visitors = ClassFileVisitorUtils.accept( dir.toURI().toURL(), RecordingVisitor::new, 1 );
+
+        FileUtils.deleteDirectory( dir );
+
+        assertEquals( 1, visitors.size() );
+        assertEquals( Collections.singletonList( "a.b.c" ), visitors.get( 0 ).classNames );
+    }
+
+    public void testAcceptJarInParallel()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        for ( int i = 0; i < 500; i++ )
+        {
+            // mix stored and deflated entries, and resources that are not visited
+            out.setMethod( i % 3 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED );
+            writeSizedEntry( out, "p" + ( i % 7 ) + "/C" + i + ".class", "class p" + ( i % 7 ) + ".C" + i );
+            out.setMethod( ZipEntry.DEFLATED );
+            writeEntry( out, "p" + ( i % 7 ) + "/R" + i + ".txt", "resource " + i );
+        }
+        writeEntry( out, "p0/package-info.class", "package p0" );
+        out.close();
+
+        RecordingVisitor sequential = new RecordingVisitor();
+        ClassFileVisitorUtils.accept( file.toURI().toURL(), sequential );
+
+        List<RecordingVisitor> visitors =
+            ClassFileVisitorUtils.accept( file.toURI().toURL(), RecordingVisitor::new, 4 );
+
+        assertTrue( visitors.size() > 1 );
+
+        List<String> classNames = new ArrayList<String>();
+        List<String> contents = new ArrayList<String>();
+        for ( RecordingVisitor visitor : visitors )
+        {
+            classNames.addAll( visitor.classNames );
+            contents.addAll( visitor.contents );
+        }
+        assertEquals( sequential.classNames, classNames );
+        assertEquals( sequential.contents, contents );
+        assertEquals( 500, classNames.size() );
+        assertEquals( "class p3.C10", contents.get( 10 ) );
+    }
+
+    public void testAcceptDirWithByteBufferVisitor()
+        throws IOException
+    {
+        File dir = createDir();
+
+        File abDir = mkdirs( dir, "a/b" );
+        createFile( abDir, "c.class", "class a.b.c" );
+        createFile( abDir, "d.class", "" );
+        StringBuilder large = new StringBuilder();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            large.append( "class a.b.e " );
+        }
+        createFile( abDir, "e.class", large.toString() );
+
+        BufferRecordingVisitor visitor = new BufferRecordingVisitor();
+        ClassFileVisitorUtils.accept( dir.toURI().toURL(), visitor );
+
+        FileUtils.deleteDirectory( dir );
+
+        // the buffer grows for the large class file and is reused for the others, whatever the listing order
+        assertEquals( 3, visitor.classNames.size() );
+        assertEquals( "class a.b.c", visitor.contents.get( visitor.classNames.indexOf( "a.b.c" ) ) );
+        assertEquals( "", visitor.contents.get( visitor.classNames.indexOf( "a.b.d" ) ) );
+        assertEquals( large.toString(), visitor.contents.get( visitor.classNames.indexOf( "a.b.e" ) ) );
+        assertEquals( 0, visitor.streamCount );
+    }
+
+    public void testAcceptJarInParallelWithByteBufferVisitor()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        for ( int i = 0; i < 500; i++ )
+        {
+            out.setMethod( i % 2 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED );
+            writeSizedEntry( out, "p/C" + i + ".class", "class p.C" + i );
+        }
+        out.close();
+
+        List<BufferRecordingVisitor> visitors =
+            ClassFileVisitorUtils.accept( file.toURI().toURL(), BufferRecordingVisitor::new, 4 );
+
+        List<String> contents = new ArrayList<String>();
+        int directCount = 0;
+        for ( BufferRecordingVisitor visitor : visitors )
+        {
+            contents.addAll( visitor.contents );
+            directCount += visitor.directCount;
+            assertEquals( 0, visitor.streamCount );
+        }
+        assertEquals( 500, contents.size() );
+        assertEquals( "class p.C499", contents.get( 499 ) );
+
+        // stored entries are slices of the mapped jar
+        assertEquals( 250, directCount );
+    }
+
+    public void testAcceptClassNamesJar()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        writeEntry( out, "a/b/c.class", "class a.b.c" );
+        writeEntry( out, "a/b/c.jpg", "jpeg a.b.c" );
+        writeEntry( out, "a/b/package-info.class", "package a.b" );
+        writeEntry( out, "x/y/z.class", "class x.y.z" );
+        out.close();
+
+        CollectorClassFileVisitor visitor = new CollectorClassFileVisitor();
+
+        ClassFileVisitorUtils.acceptClassNames( file.toURI().toURL(), visitor );
+
+        assertEquals( new HashSet<String>( Arrays.asList( "a.b.c", "x.y.z" ) ), visitor.getClasses() );
+    }
+
+    public void testAcceptClassNamesDir()
+        throws IOException
+    {
+        File dir = createDir();
+
+        File abDir = mkdirs( dir, "a/b" );
+        createFile( abDir, "c.class", "class a.b.c" );
+        createFile( abDir, "c.jpg", "jpeg a.b.c" );
+
+        File xyDir = mkdirs( dir, "x/y" );
+        createFile( xyDir, "z.class", "class x.y.z" );
+
+        CollectorClassFileVisitor visitor = new CollectorClassFileVisitor();
+
+        ClassFileVisitorUtils.acceptClassNames( dir.toURI().toURL(), visitor );
+
+        FileUtils.deleteDirectory( dir );
+
+        assertEquals( new HashSet<String>( Arrays.asList( "a.b.c", "x.y.z" ) ), visitor.getClasses() );
+    }
+
+    public void testAcceptPath()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        for ( int i = 0; i < 500; i++ )
+        {
+            out.setMethod( i % 3 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED );
+            writeSizedEntry( out, "p" + ( i % 7 ) + "/C" + i + ".class", "class p" + ( i % 7 ) + ".C" + i );
+        }
+        out.close();
+
+        RecordingVisitor sequential = new RecordingVisitor();
+        ClassFileVisitorUtils.accept( file.toPath(), sequential );
+
+        List<RecordingVisitor> visitors = ClassFileVisitorUtils.accept( file.toPath(), RecordingVisitor::new, 4 );
+
+        assertTrue( visitors.size() > 1 );
+
+        List<String> contents = new ArrayList<String>();
+        for ( RecordingVisitor visitor : visitors )
+        {
+            contents.addAll( visitor.contents );
+        }
+        assertEquals( sequential.contents, contents );
+        assertEquals( "class p3.C10", contents.get( 10 ) );
+
+        CollectorClassFileVisitor visitor = new CollectorClassFileVisitor();
+        ClassFileVisitorUtils.acceptClassNames( file.toPath(), visitor );
+        assertEquals( 500, visitor.getClasses().size() );
+    }
+
+    public void testAcceptPathWithFile()
+        throws IOException
+    {
+        File file = File.createTempFile( "test", ".class" );
+        file.deleteOnExit();
+
+        try
+        {
+            ClassFileVisitorUtils.accept( file.toPath(), new CollectorClassFileVisitor() );
+            fail( "Exception expected" );
+        }
+        catch ( IllegalArgumentException exception )
+        {
+            assertEquals( "Cannot accept visitor on path: " + file.toPath(), exception.getMessage() );
+        }
+    }
+
+    public void testToPath()
+        throws IOException
+    {
+        File file = createJar();
+
+        assertEquals( file.toPath(), ClassFileVisitorUtils.toPath( file.toURI().toURL() ) );
+        assertNull( ClassFileVisitorUtils.toPath( new URL( "http://localhost/a.jar" ) ) );
+    }
+
+    public void testAcceptClassNamesWithUnsupportedScheme()
+        throws IOException
+    {
+        URL url = new URL( "http://localhost/" );
+
+        try
+        {
+            ClassFileVisitorUtils.acceptClassNames( url, new CollectorClassFileVisitor() );
+            fail( "Exception expected" );
+        }
+        catch ( IllegalArgumentException exception )
+        {
+            assertEquals( "Cannot accept visitor on URL: " + url, exception.getMessage() );
+        }
+    }
+
     // private methods --------------------------------------------------------
 
     private void expectVisitClass( Mock mock, String className, String data )
@@ -156,8 +422,77 @@ public class ClassFileVisitorUtilsTest
         mock.expects( atLeastOnce() ).method( "visitClass" ).with( eq( className ), in( data ) );
     }
 
+    private void writeSizedEntry( JarOutputStream out, String path, String data )
+        throws IOException
+    {
+        byte[] bytes = data.getBytes( "UTF-8" );
+
+        ZipEntry entry = new ZipEntry( path );
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+        entry.setSize( bytes.length );
+        entry.setCrc( crc.getValue() );
+
+        out.putNextEntry( entry );
+        out.write( bytes, 0, bytes.length );
+    }
+
     private InputStreamConstraint in( String expected )
     {
         return new InputStreamConstraint( expected );
     }
+
+    // inner classes ----------------------------------------------------------
+
+    private static final class BufferRecordingVisitor
+        implements ByteBufferClassFileVisitor
+    {
+        private final List<String> classNames = new ArrayList<String>();
+
+        private final List<String> contents = new ArrayList<String>();
+
+        private int directCount;
+
+        private int streamCount;
+
+        public void visitClass( String className, InputStream in )
+        {
+            streamCount++;
+        }
+
+        public void visitClass( String className, ByteBuffer buffer )
+        {
+            classNames.add( className );
+
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get( bytes );
+            contents.add( new String( bytes, StandardCharsets.UTF_8 ) );
+
+            if ( buffer.isDirect() )
+            {
+                directCount++;
+            }
+        }
+    }
+
+    private static final class RecordingVisitor
+        implements ClassFileVisitor
+    {
+        private final List<String> classNames = new ArrayList<String>();
+
+        private final List<String> contents = new ArrayList<String>();
+
+        public void visitClass( String className, InputStream in )
+        {
+            classNames.add( className );
+            try
+            {
+                contents.add( IOUtil.toString( in, "UTF-8" ) );
+            }
+            catch ( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+        }
+    }
 }
@@ -0,0 +1,216 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>ClassSymbolTable</code>.
+ *
+ * @see ClassSymbolTable
+ */
+public class ClassSymbolTableTest
+    extends TestCase
+{
+    // constants --------------------------------------------------------------
+
+    private static final int CLASS_COUNT = 20000;
+
+    // tests ------------------------------------------------------------------
+
+    public void testInternBothForms()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+
+        String name = "a.b.C";
+        int id = symbols.intern( name );
+
+        assertEquals( 0, id );
+        assertEquals( id, symbols.intern( "a/b/C" ) );
+        assertEquals( id, symbols.intern( "xa/b/Cx".toCharArray(), 1, 5 ) );
+        assertEquals( id, symbols.lookup( "a/b/C" ) );
+        // a dotted name is kept rather than copied
+        assertSame( name, symbols.getName( id ) );
+        assertEquals( 1, symbols.size() );
+    }
+
+    public void testInternCreatesNameOnce()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+
+        int id = symbols.intern( "a/b/C".toCharArray(), 0, 5 );
+        String name = symbols.getName( id );
+
+        assertEquals( "a.b.C", name );
+        assertSame( name, symbols.getName( symbols.intern( "a/b/C" ) ) );
+        assertSame( name, symbols.getName( symbols.intern( "a.b.C".toCharArray(), 0, 5 ) ) );
+    }
+
+    public void testModifiedUtf8Bytes()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+
+        // two and three byte sequences, and the two byte encoding of the null character
+        for ( String name : new String[] { "a/b/C", "caf\u00e9/Cr\u00e8me", "\u65e5\u672c/\u8a9e", "a/\u0000" } )
+        {
+            byte[] b = encode( "x" + name + "x" );
+            int length = b.length - 2;
+
+            assertEquals( name, -1, symbols.lookup( b, 1, length ) );
+            int id = symbols.intern( b, 1, length );
+            assertEquals( name.replace( '/', '.' ), symbols.getName( id ) );
+            assertEquals( id, symbols.lookup( b, 1, length ) );
+            assertEquals( id, symbols.intern( name ) );
+            assertEquals( id, symbols.intern( b, 1, length ) );
+        }
+
+        // a prefix is another class
+        byte[] b = encode( "caf\u00e9/Cr\u00e8me" );
+        assertEquals( -1, symbols.lookup( b, 0, b.length - 2 ) );
+        assertEquals( 4, symbols.size() );
+    }
+
+    public void testSeal()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        int id = symbols.intern( "a.A" );
+
+        symbols.seal();
+
+        assertTrue( symbols.isSealed() );
+        assertEquals( id, symbols.intern( "a/A" ) );
+        assertEquals( id, symbols.intern( encode( "a/A" ), 0, 3 ) );
+        assertEquals( -1, symbols.intern( "b/B" ) );
+        assertEquals( -1, symbols.intern( "b/B".toCharArray(), 0, 3 ) );
+        assertEquals( -1, symbols.intern( encode( "b/B" ), 0, 3 ) );
+        assertEquals( 1, symbols.size() );
+    }
+
+    public void testLookupUnknownClass()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        symbols.intern( "a.A" );
+
+        assertEquals( -1, symbols.lookup( "a.B" ) );
+        assertEquals( -1, symbols.lookup( "a.A.B" ) );
+        assertEquals( 1, symbols.size() );
+
+        try
+        {
+            symbols.getName( 1 );
+            fail();
+        }
+        catch ( IndexOutOfBoundsException exception )
+        {
+            // expected
+        }
+    }
+
+    public void testDenseIdentifiers()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+
+        // enough classes to fill several pages and rehash every segment
+        for ( int i = 0; i < CLASS_COUNT; i++ )
+        {
+            assertEquals( i, symbols.intern( "p" + i % 7 + "/C" + i ) );
+        }
+
+        for ( int i = 0; i < CLASS_COUNT; i++ )
+        {
+            assertEquals( i, symbols.lookup( "p" + i % 7 + ".C" + i ) );
+            assertEquals( "p" + i % 7 + ".C" + i, symbols.getName( i ) );
+        }
+        assertEquals( CLASS_COUNT, symbols.size() );
+    }
+
+    public void testConcurrentIntern()
+        throws Exception
+    {
+        final ClassSymbolTable symbols = new ClassSymbolTable();
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+            for ( int thread = 0; thread < 4; thread++ )
+            {
+                futures.add( executor.submit( new Callable<int[]>()
+                {
+                    public int[] call()
+                    {
+                        int[] ids = new int[CLASS_COUNT];
+                        for ( int i = 0; i < CLASS_COUNT; i++ )
+                        {
+                            ids[i] = symbols.intern( "p/C" + i );
+                        }
+                        return ids;
+                    }
+                } ) );
+            }
+
+            int[] ids = futures.get( 0 ).get();
+            for ( Future<int[]> future : futures )
+            {
+                int[] other = future.get();
+                for ( int i = 0; i < CLASS_COUNT; i++ )
+                {
+                    assertEquals( ids[i], other[i] );
+                    assertEquals( "p.C" + i, symbols.getName( other[i] ) );
+                }
+            }
+            assertEquals( CLASS_COUNT, symbols.size() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static byte[] encode( String name )
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new DataOutputStream( bytes ).writeUTF( name );
+
+            // drop the length written first
+            byte[] b = bytes.toByteArray();
+            return Arrays.copyOfRange( b, 2, b.length );
+        }
+        catch ( IOException exception )
+        {
+            throw new IllegalStateException( exception );
+        }
+    }
+}
@@ -64,4 +64,16 @@ public class CollectorClassFileVisitorTest
 
         assertEquals( expected, visitor.getClasses() );
     }
+
+    public void testVisitClassName()
+    {
+        visitor.visitClassName( "a.b.c" );
+        visitor.visitClassName( "x.y.z" );
+
+        Set<String> expected = new HashSet<String>();
+        expected.add( "a.b.c" );
+        expected.add( "x.y.z" );
+
+        assertEquals( expected, visitor.getClasses() );
+    }
 }
@@ -1,12 +1,19 @@
 package org.apache.maven.shared.dependency.analyzer;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
 import org.apache.commons.lang3.JavaVersion;
 import org.apache.commons.lang3.SystemUtils;
@@ -35,7 +42,9 @@ import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Model;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.analyzer.asm.ASMDependencyAnalyzerWithUsages;
 import org.apache.maven.shared.invoker.InvocationRequest;
 import org.apache.maven.shared.invoker.InvocationResult;
 import org.apache.maven.shared.test.plugin.BuildTool;
@@ -97,7 +106,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project = getProject( "pom/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project );
 
         ProjectDependencyAnalysis expectedAnalysis = new ProjectDependencyAnalysis();
 
@@ -111,7 +120,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project = getProject( "jarWithNoDependencies/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project );
 
         ProjectDependencyAnalysis expectedAnalysis = new ProjectDependencyAnalysis();
 
@@ -131,7 +140,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project = getProject( "java8methodRefs/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project );
 
         Artifact project1 = createArtifact( "commons-io", "commons-io", "jar", "2.4", "compile" );
         Artifact project2 = createArtifact( "commons-lang", "commons-lang", "jar", "2.6", "compile" );
@@ -156,7 +165,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project = getProject( "inlinedStaticReference/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project );
 
         Artifact project1 = createArtifact( "dom4j", "dom4j", "jar", "1.6.1", "compile" );
         Set<Artifact> usedDeclaredArtifacts = Collections.singleton( project1 );
@@ -181,7 +190,7 @@ public class DefaultProjectDependencyAnalyzerTest
                 + project2.getBuild().getOutputDirectory() );
         }
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project2 );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project2 );
 
         Artifact project1 = createArtifact( "org.apache.maven.shared.dependency-analyzer.tests",
                                             "jarWithCompileDependency1", "jar", "1.0", "compile" );
@@ -198,7 +207,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project2 = getProject( "jarWithTestDependency/project2/pom.xml" );
 
-        ProjectDependencyAnalysis analysis = analyzer.analyze( project2 );
+        ProjectDependencyAnalysis analysis = analyze( project2 );
 
         try
         {
@@ -232,7 +241,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project2 = getProject( "jarWithTestDependency/project2/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project2 );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project2 );
 
         Artifact project1 = createArtifact( "org.apache.maven.shared.dependency-analyzer.tests",
                                             "jarWithTestDependency1", "jar", "1.0", "test" );
@@ -262,7 +271,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject project = getProject( "jarWithXmlTransitiveDependency/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project );
 
         Artifact jdom = createArtifact( "dom4j", "dom4j", "jar", "1.6.1", "compile" );
         Set<Artifact> usedDeclaredArtifacts = Collections.singleton( jdom );
@@ -292,7 +301,7 @@ public class DefaultProjectDependencyAnalyzerTest
             }
         }
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( project );
+        ProjectDependencyAnalysis actualAnalysis = analyze( project );
 
         Artifact junit = createArtifact( "org.apache.maven.its.dependency", "test-module1", "jar", "1.0", "compile" );
         Set<Artifact> usedDeclaredArtifacts = Collections.singleton( junit );
@@ -318,7 +327,7 @@ public class DefaultProjectDependencyAnalyzerTest
 
         MavenProject usage = getProject( "typeUseAnnotationDependency/usage/pom.xml" );
 
-        ProjectDependencyAnalysis actualAnalysis = analyzer.analyze( usage );
+        ProjectDependencyAnalysis actualAnalysis = analyze( usage );
 
         Artifact annotation = createArtifact( "org.apache.maven.shared.dependency-analyzer.tests",
                                             "typeUseAnnotationDependencyAnnotation", "jar", "1.0", "compile" );
@@ -328,8 +337,112 @@ public class DefaultProjectDependencyAnalyzerTest
         assertEquals( expectedAnalysis, actualAnalysis );
     }
 
+    public void testParallelArtifactIndexing()
+        throws IOException
+    {
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        artifacts.add( createArtifact( "small", createJar( "small.A" ) ) );
+        artifacts.add( createArtifact( "large", createJar( "large.A", "large.B", "large.C", "large.D", "x.Split" ) ) );
+        artifacts.add( createArtifact( "medium", createJar( "medium.A", "x.Split" ) ) );
+        artifacts.add( createArtifact( "pom", null ) );
+
+        MavenProject project = new MavenProject( new Model() );
+        project.setArtifacts( artifacts );
+
+        DefaultProjectDependencyAnalyzer defaultAnalyzer = (DefaultProjectDependencyAnalyzer) analyzer;
+        Map<Artifact, Set<String>> expected = defaultAnalyzer.buildArtifactClassMap( project );
+
+        defaultAnalyzer.setIndexingThreads( 3 );
+        Map<Artifact, Set<String>> actual = defaultAnalyzer.buildArtifactClassMap( project );
+
+        assertEquals( expected, actual );
+        assertEquals( new ArrayList<Artifact>( expected.keySet() ), new ArrayList<Artifact>( actual.keySet() ) );
+        assertEquals( "small", defaultAnalyzer.buildArtifactClassIndex( project ).findArtifact( "small.A" )
+            .getArtifactId() );
+        assertEquals( "large", defaultAnalyzer.buildArtifactClassIndex( project ).findArtifact( "x.Split" )
+            .getArtifactId() );
+    }
+
+    public void testUsageRetention()
+        throws TestToolsException, ProjectDependencyAnalyzerException
+    {
+        compileProject( "jarWithTestDependency/pom.xml" );
+
+        MavenProject project2 = getProject( "jarWithTestDependency/project2/pom.xml" );
+
+        DefaultProjectDependencyAnalyzer defaultAnalyzer = (DefaultProjectDependencyAnalyzer) analyzer;
+        ProjectDependencyAnalysis full = defaultAnalyzer.analyze( project2 );
+        Map<Artifact, Set<DependencyUsage>> fullUsages = full.getUsedDeclaredArtifactToUsageMap();
+
+        try
+        {
+            for ( UsageRetention retention : new UsageRetention[] { UsageRetention.NONE, UsageRetention.COUNTS,
+                UsageRetention.samples( 1 ) } )
+            {
+                defaultAnalyzer.setUsageRetention( retention );
+                ProjectDependencyAnalysis analysis = defaultAnalyzer.analyze( project2 );
+
+                // the artifacts do not depend on the retention
+                assertEquals( full, analysis );
+
+                for ( Map.Entry<Artifact, Set<DependencyUsage>> entry
+                    : analysis.getUsedDeclaredArtifactToUsageMap().entrySet() )
+                {
+                    Set<DependencyUsage> usages = entry.getValue();
+                    Set<DependencyUsage> allUsages = fullUsages.get( entry.getKey() );
+
+                    assertEquals( retention.getSampleCount(), usages.size() );
+                    assertTrue( allUsages.containsAll( usages ) );
+                    assertEquals( retention == UsageRetention.NONE ? 0 : allUsages.size(),
+                                  UsageRetention.getUsageCount( usages ) );
+                }
+            }
+        }
+        finally
+        {
+            defaultAnalyzer.setUsageRetention( UsageRetention.FULL );
+        }
+    }
+
     // private methods --------------------------------------------------------
 
+    /**
+     * Analyzes a project with the ASM visitors, checking that the fast class file scanner gives the same analysis.
+     */
+    private ProjectDependencyAnalysis analyze( MavenProject project )
+        throws ProjectDependencyAnalyzerException
+    {
+        ProjectDependencyAnalysis analysis = analyzer.analyze( project );
+
+        ASMDependencyAnalyzerWithUsages dependencyAnalyzer;
+        try
+        {
+            dependencyAnalyzer = (ASMDependencyAnalyzerWithUsages) lookup( DependencyAnalyzerWithUsages.ROLE );
+        }
+        catch ( Exception exception )
+        {
+            throw new IllegalStateException( exception );
+        }
+
+        dependencyAnalyzer.setFastScanning( true );
+        try
+        {
+            ProjectDependencyAnalysis fastAnalysis = analyzer.analyze( project );
+
+            assertEquals( analysis, fastAnalysis );
+            assertEquals( analysis.getUsedDeclaredArtifactToUsageMap(),
+                          fastAnalysis.getUsedDeclaredArtifactToUsageMap() );
+            assertEquals( analysis.getUsedUndeclaredArtifactToUsageMap(),
+                          fastAnalysis.getUsedUndeclaredArtifactToUsageMap() );
+        }
+        finally
+        {
+            dependencyAnalyzer.setFastScanning( false );
+        }
+
+        return analysis;
+    }
+
     private void compileProject( String pomPath )
         throws TestToolsException
     {
@@ -378,4 +491,35 @@ public class DefaultProjectDependencyAnalyzerTest
 
         return new DefaultArtifact( groupId, artifactId, versionRange, scope, type, null, handler );
     }
+
+    private Artifact createArtifact( String artifactId, File file )
+    {
+        Artifact artifact = createArtifact( "test", artifactId, "jar", "1.0", "compile" );
+        artifact.setFile( file );
+
+        return artifact;
+    }
+
+    private File createJar( String... classNames )
+        throws IOException
+    {
+        File file = File.createTempFile( "test", ".jar" );
+        file.deleteOnExit();
+
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        try
+        {
+            for ( String className : classNames )
+            {
+                out.putNextEntry( new ZipEntry( className.replace( '.', '/' ) + ".class" ) );
+                out.write( new byte[] { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe } );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        return file;
+    }
 }
@@ -0,0 +1,173 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>DependencyUsageGraph</code>.
+ *
+ * @see DependencyUsageGraph
+ */
+public class DependencyUsageGraphTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testBuild()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        int b = symbols.intern( "b.B" );
+        int c = symbols.intern( "c.C" );
+        symbols.intern( "d.D" );
+
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+        int z = builder.addUsedBy( "z.Z" );
+        builder.addUsage( c, z );
+        builder.addUsage( b, z );
+        int a = builder.addUsedBy( "a.A" );
+        builder.addUsage( c, a );
+        // a duplicate usage, and a class visited twice
+        builder.addUsage( c, a );
+        builder.addUsage( c, builder.addUsedBy( "a.A" ) );
+
+        DependencyUsageGraph graph = builder.build();
+
+        assertEquals( 2, graph.getDependencyCount() );
+        assertEquals( b, graph.getDependencyId( 0 ) );
+        assertEquals( c, graph.getDependencyId( 1 ) );
+        assertEquals( 1, graph.getUsedByCount( 0 ) );
+        assertEquals( 2, graph.getUsedByCount( 1 ) );
+        assertEquals( 1, graph.getRow( c ) );
+        assertEquals( -1, graph.getRow( symbols.lookup( "d.D" ) ) );
+        assertEquals( 3, graph.getUsageCount() );
+
+        // rows in the order of the symbol table, then usages in the order of the class names
+        List<DependencyUsage> usages = new ArrayList<DependencyUsage>( graph.getUsages() );
+        assertEquals( Arrays.asList( new DependencyUsage( "b.B", "z.Z" ), new DependencyUsage( "c.C", "a.A" ),
+                                     new DependencyUsage( "c.C", "z.Z" ) ), usages );
+    }
+
+    public void testUsageViews()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+        Set<DependencyUsage> expected = new HashSet<DependencyUsage>();
+        for ( String usage : new String[] { "a.A b.B", "a.A c.C", "x.X c.C", "x.X d.D", "y.Y d.D" } )
+        {
+            String[] names = usage.split( " " );
+            builder.add( new DependencyUsage( names[1], names[0] ) );
+            expected.add( new DependencyUsage( names[1], names[0] ) );
+        }
+
+        DependencyUsageGraph graph = builder.build();
+        Set<DependencyUsage> usages = graph.getUsages();
+
+        assertEquals( expected, usages );
+        assertEquals( expected.hashCode(), usages.hashCode() );
+        assertTrue( usages.contains( new DependencyUsage( "d.D", "y.Y" ) ) );
+        assertFalse( usages.contains( new DependencyUsage( "d.D", "a.A" ) ) );
+        assertFalse( usages.contains( new DependencyUsage( "e.E", "a.A" ) ) );
+        assertFalse( usages.contains( "d.D" ) );
+
+        // the usages of the rows of c.C and d.D only
+        Set<DependencyUsage> rows = graph.getUsages( new int[] { 1, 2 } );
+        assertEquals( 4, rows.size() );
+        assertTrue( rows.contains( new DependencyUsage( "c.C", "x.X" ) ) );
+        assertFalse( rows.contains( new DependencyUsage( "b.B", "a.A" ) ) );
+        assertTrue( graph.getUsages( new int[0] ).isEmpty() );
+        assertFalse( graph.getUsages( new int[0] ).iterator().hasNext() );
+
+        try
+        {
+            usages.add( new DependencyUsage( "e.E", "a.A" ) );
+            fail();
+        }
+        catch ( UnsupportedOperationException exception )
+        {
+            // expected
+        }
+    }
+
+    public void testAddGraphs()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+
+        DependencyUsageGraph.Builder main = new DependencyUsageGraph.Builder( symbols );
+        main.add( new DependencyUsage( "b.B", "a.A" ) );
+        DependencyUsageGraph.Builder test = new DependencyUsageGraph.Builder( symbols );
+        test.add( new DependencyUsage( "b.B", "a.ATest" ) );
+        test.add( new DependencyUsage( "b.B", "a.A" ) );
+
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+        builder.add( main.build() );
+        builder.add( test.build() );
+        builder.add( new DependencyUsageGraph.Builder( symbols ).build() );
+        DependencyUsageGraph graph = builder.build();
+
+        assertEquals( 1, graph.getDependencyCount() );
+        assertEquals( new HashSet<DependencyUsage>( Arrays.asList( new DependencyUsage( "b.B", "a.A" ),
+                                                                   new DependencyUsage( "b.B", "a.ATest" ) ) ),
+                      graph.getUsages() );
+
+        try
+        {
+            new DependencyUsageGraph.Builder( new ClassSymbolTable() ).add( graph );
+            fail();
+        }
+        catch ( IllegalArgumentException exception )
+        {
+            // expected
+        }
+    }
+
+    public void testSealedSymbolTable()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        symbols.intern( "b.B" );
+        symbols.seal();
+
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+        builder.add( new DependencyUsage( "b.B", "a.A" ) );
+        builder.add( new DependencyUsage( "java.lang.Object", "a.A" ) );
+
+        // the dependency classes the table does not know are dropped
+        DependencyUsageGraph graph = builder.build();
+        assertEquals( 1, graph.getUsageCount() );
+        assertTrue( graph.getUsages().contains( new DependencyUsage( "b.B", "a.A" ) ) );
+        assertFalse( graph.getUsages().contains( new DependencyUsage( "java.lang.Object", "a.A" ) ) );
+    }
+
+    public void testEmptyGraph()
+    {
+        DependencyUsageGraph graph = new DependencyUsageGraph.Builder( new ClassSymbolTable() ).build();
+
+        assertEquals( 0, graph.getDependencyCount() );
+        assertEquals( 0, graph.getUsageCount() );
+        assertTrue( graph.getUsages().isEmpty() );
+        assertFalse( graph.getUsages().iterator().hasNext() );
+    }
+}
@@ -0,0 +1,155 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Tests <code>ImmutableArtifactSet</code>.
+ *
+ * @see ImmutableArtifactSet
+ */
+public class ImmutableArtifactSetTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testOf()
+    {
+        List<Artifact> artifacts = new ArrayList<Artifact>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            artifacts.add( createArtifact( "a" + i, "compile" ) );
+        }
+        // a duplicate is dropped, the order is kept
+        artifacts.add( createArtifact( "a0", "compile" ) );
+
+        ImmutableArtifactSet set = ImmutableArtifactSet.of( artifacts );
+
+        assertEquals( 100, set.size() );
+        assertEquals( artifacts.subList( 0, 100 ), new ArrayList<Artifact>( set ) );
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertEquals( i, set.indexOf( createArtifact( "a" + i, "compile" ) ) );
+            assertSame( artifacts.get( i ), set.get( i ) );
+        }
+        assertFalse( set.contains( createArtifact( "b", "compile" ) ) );
+        assertFalse( set.contains( null ) );
+
+        Set<Artifact> expected = new HashSet<Artifact>( artifacts );
+        assertEquals( expected, set );
+        assertEquals( set, expected );
+        assertEquals( expected.hashCode(), set.hashCode() );
+
+        assertSame( set, ImmutableArtifactSet.of( set ) );
+        assertSame( ImmutableArtifactSet.EMPTY, ImmutableArtifactSet.of( null ) );
+        assertTrue( ImmutableArtifactSet.EMPTY.isEmpty() );
+        assertFalse( ImmutableArtifactSet.EMPTY.contains( artifacts.get( 0 ) ) );
+    }
+
+    public void testOfSetWithOtherEquality()
+    {
+        Artifact a = createArtifact( "a", "compile" );
+        Set<Artifact> identitySet = Collections.newSetFromMap( new IdentityHashMap<Artifact, Boolean>() );
+        identitySet.add( a );
+        identitySet.add( createArtifact( "a", "compile" ) );
+
+        // equal artifacts are kept once
+        ImmutableArtifactSet set = ImmutableArtifactSet.of( identitySet );
+        assertEquals( 1, set.size() );
+        assertEquals( Collections.singleton( a ), set );
+    }
+
+    public void testHashCodeFollowsArtifacts()
+    {
+        Artifact a = createArtifact( "a", "compile" );
+        ImmutableArtifactSet set = ImmutableArtifactSet.of( Arrays.asList( a ) );
+        ImmutableArtifactSet other = ImmutableArtifactSet.of( Arrays.asList( createArtifact( "a", "compile" ) ) );
+
+        a.setVersion( "2.0" );
+
+        assertEquals( a.hashCode(), set.hashCode() );
+        assertFalse( set.equals( other ) );
+        assertFalse( set.hashCode() == other.hashCode() );
+    }
+
+    public void testFilter()
+    {
+        Artifact a = createArtifact( "a", "compile" );
+        Artifact b = createArtifact( "b", "test" );
+        ImmutableArtifactSet set = ImmutableArtifactSet.of( Arrays.asList( a, b ) );
+
+        assertSame( set, set.filter( artifact -> true ) );
+
+        ImmutableArtifactSet filtered = set.filter( artifact -> artifact.getScope().equals( "compile" ) );
+        assertEquals( 1, filtered.size() );
+        assertTrue( filtered.contains( a ) );
+        assertFalse( filtered.contains( b ) );
+        assertFalse( set.equals( filtered ) );
+        assertSame( ImmutableArtifactSet.EMPTY, set.filter( artifact -> false ) );
+    }
+
+    public void testUnmodifiable()
+    {
+        ImmutableArtifactSet set = ImmutableArtifactSet.of( Arrays.asList( createArtifact( "a", "compile" ) ) );
+
+        try
+        {
+            set.add( createArtifact( "b", "compile" ) );
+            fail();
+        }
+        catch ( UnsupportedOperationException exception )
+        {
+            // expected
+        }
+
+        try
+        {
+            set.iterator().remove();
+            fail();
+        }
+        catch ( UnsupportedOperationException | IllegalStateException exception )
+        {
+            // expected
+        }
+        assertEquals( 1, set.size() );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static Artifact createArtifact( String artifactId, String scope )
+    {
+        return new DefaultArtifact( "g", artifactId, VersionRange.createFromVersion( "1.0" ), scope, "jar", null,
+                                    new DefaultArtifactHandler() );
+    }
+}
@@ -0,0 +1,135 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Tests <code>ImmutableArtifactUsageMap</code>.
+ *
+ * @see ImmutableArtifactUsageMap
+ */
+public class ImmutableArtifactUsageMapTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testOf()
+    {
+        Artifact a = createArtifact( "a" );
+        Artifact b = createArtifact( "b" );
+        Map<Artifact, Set<DependencyUsage>> map = new LinkedHashMap<Artifact, Set<DependencyUsage>>();
+        map.put( a, new HashSet<DependencyUsage>( Arrays.asList( new DependencyUsage( "a.A", "x.X" ) ) ) );
+        map.put( b, Collections.<DependencyUsage>emptySet() );
+
+        ImmutableArtifactUsageMap usageMap = ImmutableArtifactUsageMap.of( map );
+
+        assertEquals( map, usageMap );
+        assertEquals( usageMap, map );
+        assertEquals( map.hashCode(), usageMap.hashCode() );
+        assertSame( map.get( b ), usageMap.get( b ) );
+        assertNull( usageMap.get( createArtifact( "c" ) ) );
+        assertTrue( usageMap.containsKey( b ) );
+        assertEquals( map.keySet(), usageMap.keySet() );
+
+        assertSame( usageMap, ImmutableArtifactUsageMap.of( usageMap ) );
+        assertSame( ImmutableArtifactUsageMap.EMPTY, ImmutableArtifactUsageMap.of( null ) );
+
+        try
+        {
+            usageMap.put( createArtifact( "c" ), Collections.<DependencyUsage>emptySet() );
+            fail();
+        }
+        catch ( UnsupportedOperationException exception )
+        {
+            // expected
+        }
+    }
+
+    public void testCopiesModifiableUsages()
+    {
+        Artifact a = createArtifact( "a" );
+        Set<DependencyUsage> usages = new HashSet<DependencyUsage>();
+        usages.add( new DependencyUsage( "a.A", "x.X" ) );
+
+        ImmutableArtifactUsageMap usageMap =
+            ImmutableArtifactUsageMap.of( Collections.<Artifact, Set<DependencyUsage>>singletonMap( a, usages ) );
+
+        // copied, so that later changes do not show, and unmodifiable
+        usages.add( new DependencyUsage( "a.A", "y.Y" ) );
+        assertEquals( Collections.singleton( new DependencyUsage( "a.A", "x.X" ) ), usageMap.get( a ) );
+        try
+        {
+            usageMap.get( a ).clear();
+            fail();
+        }
+        catch ( UnsupportedOperationException exception )
+        {
+            // expected
+        }
+
+        // usages that cannot be modified are shared
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+        builder.add( new DependencyUsage( "a.A", "x.X" ) );
+        Set<DependencyUsage> view = builder.build().getUsages();
+        Set<DependencyUsage> retained = UsageRetention.COUNTS.newRetainer().getUsages();
+        Map<Artifact, Set<DependencyUsage>> map = new LinkedHashMap<Artifact, Set<DependencyUsage>>();
+        map.put( a, view );
+        map.put( createArtifact( "b" ), retained );
+        usageMap = ImmutableArtifactUsageMap.of( map );
+        assertSame( view, usageMap.get( a ) );
+        assertSame( retained, usageMap.get( createArtifact( "b" ) ) );
+    }
+
+    public void testPlus()
+    {
+        Artifact a = createArtifact( "a" );
+        Artifact b = createArtifact( "b" );
+        ImmutableArtifactUsageMap usageMap = ImmutableArtifactUsageMap.withoutUsages( Collections.singleton( a ) );
+
+        assertSame( usageMap, usageMap.plus( Collections.singleton( a ) ) );
+
+        ImmutableArtifactUsageMap plus = usageMap.plus( Arrays.asList( a, b ) );
+        assertEquals( Arrays.asList( a, b ), Arrays.asList( plus.keySet().toArray() ) );
+        assertTrue( plus.get( b ).isEmpty() );
+        assertEquals( 1, usageMap.size() );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static Artifact createArtifact( String artifactId )
+    {
+        return new DefaultArtifact( "g", artifactId, VersionRange.createFromVersion( "1.0" ), "compile", "jar", null,
+                                    new DefaultArtifactHandler() );
+    }
+}
@@ -0,0 +1,173 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>PersistentClassIndexCache</code>.
+ *
+ * @see PersistentClassIndexCache
+ */
+public class PersistentClassIndexCacheTest
+    extends AbstractFileTest
+{
+    // fields -----------------------------------------------------------------
+
+    private File cacheDir;
+
+    // TestCase methods -------------------------------------------------------
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp()
+        throws Exception
+    {
+        cacheDir = createDir();
+    }
+
+    /*
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( cacheDir );
+    }
+
+    // tests ------------------------------------------------------------------
+
+    public void testGetAfterPut()
+        throws IOException
+    {
+        File jar = createJar();
+        Set<String> classes = classes( "a.b.C", "a.b.C$1", "a.b.D", "x.Y", "été.Z" );
+
+        PersistentClassIndexCache cache = new PersistentClassIndexCache( cacheDir );
+        assertNull( cache.get( jar ) );
+
+        cache.put( jar, classes );
+
+        // a new instance stands for another build sharing the directory
+        PersistentClassIndexCache otherCache = new PersistentClassIndexCache( cacheDir );
+        assertEquals( classes, otherCache.get( jar ) );
+
+        assertEquals( 0, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+        assertEquals( 1, otherCache.getHitCount() );
+        assertEquals( 0, otherCache.getMissCount() );
+    }
+
+    public void testGetAfterJarChange()
+        throws IOException
+    {
+        File jar = createJar();
+
+        PersistentClassIndexCache cache = new PersistentClassIndexCache( cacheDir );
+        cache.put( jar, classes( "a.b.C" ) );
+
+        RandomAccessFile raf = new RandomAccessFile( jar, "rw" );
+        raf.setLength( 10 );
+        raf.close();
+
+        assertNull( cache.get( jar ) );
+        assertEquals( 1, cache.getMissCount() );
+    }
+
+    public void testGetWithDamagedEntry()
+        throws IOException
+    {
+        File jar = createJar();
+
+        PersistentClassIndexCache cache = new PersistentClassIndexCache( cacheDir );
+        cache.put( jar, classes( "a.b.C", "a.b.D" ) );
+
+        File[] entries = cacheDir.listFiles();
+        assertEquals( 1, entries.length );
+        RandomAccessFile raf = new RandomAccessFile( entries[0], "rw" );
+        raf.setLength( raf.length() - 3 );
+        raf.close();
+
+        assertNull( cache.get( jar ) );
+    }
+
+    public void testEviction()
+        throws IOException
+    {
+        File jar1 = createJar();
+        File jar2 = createJar();
+        File jar3 = createJar();
+
+        PersistentClassIndexCache cache = new PersistentClassIndexCache( cacheDir );
+        cache.put( jar1, classes( "a.A" ) );
+        File entry1 = cacheDir.listFiles()[0];
+        long entrySize = entry1.length();
+
+        cache = new PersistentClassIndexCache( cacheDir, entrySize * 2 + entrySize / 2 );
+        entry1.setLastModified( System.currentTimeMillis() - 60000 );
+        cache.put( jar2, classes( "b.A" ) );
+        cache.put( jar3, classes( "c.A" ) );
+
+        assertEquals( 1, cache.getEvictionCount() );
+        assertEquals( 2, cacheDir.listFiles().length );
+        assertNull( cache.get( jar1 ) );
+        assertEquals( classes( "b.A" ), cache.get( jar2 ) );
+        assertEquals( classes( "c.A" ), cache.get( jar3 ) );
+    }
+
+    public void testDirectoryListedOnlyWhenNeeded()
+        throws IOException
+    {
+        PersistentClassIndexCache cache = new PersistentClassIndexCache( cacheDir );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( createJar(), classes( "a.A" + i ) );
+        }
+
+        // listed on the first write only, the size of the others being tracked in memory
+        assertEquals( 1, cache.getScanCount() );
+        assertEquals( 10, cacheDir.listFiles().length );
+
+        long entrySize = cacheDir.listFiles()[0].length();
+        cache = new PersistentClassIndexCache( cacheDir, entrySize * 11 + entrySize / 2 );
+        cache.put( createJar(), classes( "b.A" ) );
+        cache.put( createJar(), classes( "b.B" ) );
+
+        // listed again once the tracked size passes the cap
+        assertEquals( 2, cache.getScanCount() );
+        assertEquals( 1, cache.getEvictionCount() );
+        assertEquals( 11, cacheDir.listFiles().length );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private Set<String> classes( String... classNames )
+    {
+        return new HashSet<String>( Arrays.asList( classNames ) );
+    }
+}
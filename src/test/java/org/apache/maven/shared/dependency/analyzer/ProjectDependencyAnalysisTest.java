@@ -19,10 +19,17 @@ package org.apache.maven.shared.dependency.analyzer;
  * under the License.
  */
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
 
 import junit.framework.TestCase;
 
@@ -51,4 +58,108 @@ public class ProjectDependencyAnalysisTest
         assertEquals( usedUndeclaredArtifacts, analysis.getUsedUndeclaredArtifacts() );
         assertEquals( unusedDeclaredArtifacts, analysis.getUnusedDeclaredArtifacts() );
     }
+
+    public void testUsagesCopiedOnce()
+    {
+        Artifact used = createArtifact( "used", "compile" );
+        Artifact unused = createArtifact( "unused", "test" );
+        CountingSet usages = new CountingSet();
+        usages.add( new DependencyUsage( "b.B", "a.A" ) );
+
+        ProjectDependencyAnalysis analysis =
+            new ProjectDependencyAnalysis( Collections.<Artifact, Set<DependencyUsage>>singletonMap( used, usages ),
+                                           null, Collections.singleton( unused ) );
+        assertEquals( 1, usages.iterations );
+
+        // later changes to the given usages do not show
+        usages.add( new DependencyUsage( "c.C", "a.A" ) );
+        Map<Artifact, Set<DependencyUsage>> map = analysis.getUsedDeclaredArtifactToUsageMap();
+        assertEquals( Collections.singleton( new DependencyUsage( "b.B", "a.A" ) ), map.get( used ) );
+        assertSame( map, analysis.getUsedDeclaredArtifactToUsageMap() );
+        assertTrue( analysis.getUsedUndeclaredArtifactToUsageMap().isEmpty() );
+
+        // the analyses derived from it share the copy
+        ProjectDependencyAnalysis derived = analysis.ignoreNonCompile();
+        assertEquals( Collections.singleton( used ), derived.getUsedDeclaredArtifacts() );
+        assertTrue( derived.getUnusedDeclaredArtifacts().isEmpty() );
+        assertFalse( analysis.equals( derived ) );
+        assertSame( map.get( used ), derived.getUsedDeclaredArtifactToUsageMap().get( used ) );
+        assertEquals( 1, usages.iterations );
+    }
+
+    public void testDerivedAnalysesShareUnchangedSets()
+        throws ProjectDependencyAnalyzerException
+    {
+        Artifact usedDeclared = createArtifact( "usedDeclared", "compile" );
+        Artifact usedUndeclared = createArtifact( "usedUndeclared", "compile" );
+        Artifact unusedCompile = createArtifact( "unusedCompile", "compile" );
+        Artifact unusedTest = createArtifact( "unusedTest", "test" );
+
+        ProjectDependencyAnalysis analysis =
+            new ProjectDependencyAnalysis( Collections.singleton( usedDeclared ),
+                                           Collections.singleton( usedUndeclared ),
+                                           new HashSet<Artifact>( Arrays.asList( unusedCompile, unusedTest ) ) );
+
+        ProjectDependencyAnalysis compileOnly = analysis.ignoreNonCompile();
+        assertSame( analysis.getUsedDeclaredArtifacts(), compileOnly.getUsedDeclaredArtifacts() );
+        assertSame( analysis.getUsedUndeclaredArtifacts(), compileOnly.getUsedUndeclaredArtifacts() );
+        assertEquals( Collections.singleton( unusedCompile ), compileOnly.getUnusedDeclaredArtifacts() );
+        assertSame( compileOnly.getUnusedDeclaredArtifacts(),
+                    compileOnly.ignoreNonCompile().getUnusedDeclaredArtifacts() );
+
+        ProjectDependencyAnalysis forced =
+            compileOnly.forceDeclaredDependenciesUsage( new String[] { "g:unusedCompile" } );
+        assertSame( compileOnly.getUsedUndeclaredArtifacts(), forced.getUsedUndeclaredArtifacts() );
+        assertEquals( new HashSet<Artifact>( Arrays.asList( usedDeclared, unusedCompile ) ),
+                      forced.getUsedDeclaredArtifacts() );
+        assertTrue( forced.getUsedDeclaredArtifactToUsageMap().get( unusedCompile ).isEmpty() );
+        assertTrue( forced.getUnusedDeclaredArtifacts().isEmpty() );
+
+        ProjectDependencyAnalysis expected =
+            new ProjectDependencyAnalysis( new HashSet<Artifact>( Arrays.asList( usedDeclared, unusedCompile ) ),
+                                           Collections.singleton( usedUndeclared ), null );
+        assertEquals( expected, forced );
+        assertEquals( expected.hashCode(), forced.hashCode() );
+    }
+
+    public void testHashCodeFollowsArtifacts()
+    {
+        Artifact used = createArtifact( "used", "compile" );
+        ProjectDependencyAnalysis analysis =
+            new ProjectDependencyAnalysis( Collections.singleton( used ), null, null );
+        ProjectDependencyAnalysis other =
+            new ProjectDependencyAnalysis( Collections.singleton( createArtifact( "used", "compile" ) ), null, null );
+        assertEquals( other, analysis );
+        assertEquals( other.hashCode(), analysis.hashCode() );
+
+        // the analysis hashes and compares the artifacts as they are now
+        used.setVersion( "2.0" );
+        ProjectDependencyAnalysis changed =
+            new ProjectDependencyAnalysis( Collections.singleton( createArtifact( "used", "compile" ) ), null, null );
+        changed.getUsedDeclaredArtifacts().iterator().next().setVersion( "2.0" );
+        assertEquals( changed.hashCode(), analysis.hashCode() );
+        assertFalse( other.equals( analysis ) );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static Artifact createArtifact( String artifactId, String scope )
+    {
+        return new DefaultArtifact( "g", artifactId, VersionRange.createFromVersion( "1.0" ), scope, "jar", null,
+                                    new DefaultArtifactHandler() );
+    }
+
+    // inner classes ----------------------------------------------------------
+
+    private static class CountingSet
+        extends HashSet<DependencyUsage>
+    {
+        private int iterations;
+
+        public Iterator<DependencyUsage> iterator()
+        {
+            iterations++;
+            return super.iterator();
+        }
+    }
 }
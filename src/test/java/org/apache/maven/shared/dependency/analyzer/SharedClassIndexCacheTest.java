@@ -0,0 +1,171 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>SharedClassIndexCache</code>.
+ *
+ * @see SharedClassIndexCache
+ */
+public class SharedClassIndexCacheTest
+    extends AbstractFileTest
+{
+    // tests ------------------------------------------------------------------
+
+    public void testGetAfterPut()
+        throws IOException
+    {
+        File jar = createJar();
+        Set<String> classes = classes( "a.A", "a.B" );
+
+        SharedClassIndexCache cache = new SharedClassIndexCache( 100 );
+        assertNull( cache.get( cache.getKey( jar ) ) );
+
+        cache.put( cache.getKey( jar ), classes );
+
+        assertEquals( classes, cache.get( cache.getKey( jar ) ) );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+        assertEquals( 2, cache.getWeight() );
+    }
+
+    public void testGetAfterJarChange()
+        throws IOException
+    {
+        File jar = createJar();
+
+        SharedClassIndexCache cache = new SharedClassIndexCache( 100 );
+        cache.put( cache.getKey( jar ), classes( "a.A" ) );
+
+        RandomAccessFile raf = new RandomAccessFile( jar, "rw" );
+        raf.setLength( 10 );
+        raf.close();
+
+        assertNull( cache.get( cache.getKey( jar ) ) );
+    }
+
+    public void testGetAfterDirectoryChange()
+        throws IOException
+    {
+        File dir = createDir();
+        File abDir = mkdirs( dir, "a/b" );
+        createFile( abDir, "C.class", "class a.b.C" );
+
+        SharedClassIndexCache cache = new SharedClassIndexCache( 100 );
+        cache.put( cache.getKey( dir ), classes( "a.b.C" ) );
+        assertNotNull( cache.get( cache.getKey( dir ) ) );
+
+        createFile( abDir, "D.class", "class a.b.D" );
+        abDir.setLastModified( abDir.lastModified() + 2000 );
+
+        assertNull( cache.get( cache.getKey( dir ) ) );
+
+        FileUtils.deleteDirectory( dir );
+    }
+
+    public void testGetAfterDirectoryChangeWithinTimestampGranularity()
+        throws IOException
+    {
+        File dir = createDir();
+        File abDir = mkdirs( dir, "a/b" );
+        createFile( abDir, "C.class", "class a.b.C" );
+        long lastModified = abDir.lastModified();
+
+        SharedClassIndexCache cache = new SharedClassIndexCache( 100 );
+        cache.put( cache.getKey( dir ), classes( "a.b.C" ) );
+
+        // the number of class files changes the key even if the modification time does not
+        createFile( abDir, "D.class", "class a.b.D" );
+        abDir.setLastModified( lastModified );
+
+        assertNull( cache.get( cache.getKey( dir ) ) );
+
+        FileUtils.deleteDirectory( dir );
+    }
+
+    public void testNotUsedByDefault()
+    {
+        assertNull( new DefaultProjectDependencyAnalyzer().getSharedClassIndexCache() );
+    }
+
+    public void testGetKeyWithMissingFile()
+        throws IOException
+    {
+        assertNull( new SharedClassIndexCache( 100 ).getKey( new File( createDir(), "missing.jar" ) ) );
+    }
+
+    public void testEviction()
+        throws IOException
+    {
+        File jar1 = createJar();
+        File jar2 = createJar();
+        File jar3 = createJar();
+
+        SharedClassIndexCache cache = new SharedClassIndexCache( 4 );
+        cache.put( cache.getKey( jar1 ), classes( "a.A", "a.B" ) );
+        cache.put( cache.getKey( jar2 ), classes( "b.A", "b.B" ) );
+
+        // jar1 becomes the most recently used
+        assertNotNull( cache.get( cache.getKey( jar1 ) ) );
+
+        cache.put( cache.getKey( jar3 ), classes( "c.A" ) );
+
+        assertEquals( 1, cache.getEvictionCount() );
+        assertEquals( 3, cache.getWeight() );
+        assertNotNull( cache.get( cache.getKey( jar1 ) ) );
+        assertNull( cache.get( cache.getKey( jar2 ) ) );
+        assertNotNull( cache.get( cache.getKey( jar3 ) ) );
+    }
+
+    public void testPutReturnsUnmodifiableSet()
+        throws IOException
+    {
+        File jar = createJar();
+
+        SharedClassIndexCache cache = new SharedClassIndexCache( 100 );
+        Set<String> classes = cache.put( cache.getKey( jar ), classes( "a.A" ) );
+
+        try
+        {
+            classes.add( "a.B" );
+            fail( "Exception expected" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            assertEquals( classes( "a.A" ), cache.get( cache.getKey( jar ) ) );
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private Set<String> classes( String... classNames )
+    {
+        return new HashSet<String>( Arrays.asList( classNames ) );
+    }
+}
@@ -0,0 +1,163 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>UsageRetention</code>.
+ *
+ * @see UsageRetention
+ */
+public class UsageRetentionTest
+    extends TestCase
+{
+    // fields -----------------------------------------------------------------
+
+    private DependencyUsageGraph graph;
+
+    // TestCase methods -------------------------------------------------------
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        DependencyUsageGraph.Builder builder = new DependencyUsageGraph.Builder( symbols );
+        for ( String usage : new String[] { "a.A b.B", "x.X b.B", "a.A c.C", "a.A d.D" } )
+        {
+            String[] names = usage.split( " " );
+            builder.add( new DependencyUsage( names[1], names[0] ) );
+        }
+        graph = builder.build();
+    }
+
+    // tests ------------------------------------------------------------------
+
+    public void testFull()
+    {
+        Set<DependencyUsage> usages = UsageRetention.FULL.retain( graph, new int[] { 0, 1 } );
+
+        assertEquals( graph.getUsages( new int[] { 0, 1 } ), usages );
+        assertEquals( 3, UsageRetention.getUsageCount( usages ) );
+    }
+
+    public void testNone()
+    {
+        Set<DependencyUsage> usages = UsageRetention.NONE.retain( graph, new int[] { 0, 1 } );
+
+        assertTrue( usages.isEmpty() );
+        assertEquals( 0, UsageRetention.getUsageCount( usages ) );
+    }
+
+    public void testCounts()
+    {
+        Set<DependencyUsage> usages = UsageRetention.COUNTS.retain( graph, new int[] { 0, 1, 2 } );
+
+        assertTrue( usages.isEmpty() );
+        assertFalse( usages.iterator().hasNext() );
+        assertEquals( 4, UsageRetention.getUsageCount( usages ) );
+    }
+
+    public void testSamples()
+    {
+        Set<DependencyUsage> usages = UsageRetention.samples( 2 ).retain( graph, new int[] { 0, 1, 2 } );
+
+        // a usage of each of the first using classes
+        assertEquals( new HashSet<DependencyUsage>( Arrays.asList( new DependencyUsage( "b.B", "a.A" ),
+                                                                   new DependencyUsage( "b.B", "x.X" ) ) ),
+                      usages );
+        assertEquals( 4, UsageRetention.getUsageCount( usages ) );
+
+        // fewer usages than samples
+        usages = UsageRetention.samples( 10 ).retain( graph, new int[] { 2 } );
+        assertEquals( 1, usages.size() );
+        assertEquals( 1, UsageRetention.getUsageCount( usages ) );
+
+        // one sample per using class, that of its first dependency class
+        usages = UsageRetention.samples( 2 ).retain( graph, new int[] { 1, 2 } );
+        assertEquals( Collections.singleton( new DependencyUsage( "c.C", "a.A" ) ), usages );
+        assertEquals( 2, UsageRetention.getUsageCount( usages ) );
+
+        try
+        {
+            UsageRetention.samples( 0 );
+            fail();
+        }
+        catch ( IllegalArgumentException exception )
+        {
+            // expected
+        }
+    }
+
+    public void testRetainerIgnoresUsageOrder()
+    {
+        List<DependencyUsage> usages = new ArrayList<DependencyUsage>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            usages.add( new DependencyUsage( "b.B" + i % 3, "a.A" + i ) );
+        }
+
+        Set<DependencyUsage> expected = null;
+        for ( int seed = 0; seed < 5; seed++ )
+        {
+            Collections.shuffle( usages, new Random( seed ) );
+            UsageRetention.Retainer retainer = UsageRetention.samples( 3 ).newRetainer();
+            for ( DependencyUsage usage : usages )
+            {
+                retainer.add( usage );
+            }
+
+            Set<DependencyUsage> retained = retainer.getUsages();
+            assertEquals( 3, retained.size() );
+            assertEquals( 100, UsageRetention.getUsageCount( retained ) );
+            if ( expected == null )
+            {
+                expected = retained;
+            }
+            assertEquals( expected, retained );
+        }
+
+        // the first using classes by name
+        assertEquals( new HashSet<DependencyUsage>( Arrays.asList( new DependencyUsage( "b.B0", "a.A0" ),
+                                                                   new DependencyUsage( "b.B1", "a.A1" ),
+                                                                   new DependencyUsage( "b.B1", "a.A10" ) ) ),
+                      expected );
+    }
+
+    public void testEqualsAndToString()
+    {
+        assertEquals( UsageRetention.samples( 3 ), UsageRetention.samples( 3 ) );
+        assertEquals( UsageRetention.samples( 3 ).hashCode(), UsageRetention.samples( 3 ).hashCode() );
+        assertFalse( UsageRetention.samples( 3 ).equals( UsageRetention.samples( 4 ) ) );
+        assertFalse( UsageRetention.NONE.equals( UsageRetention.COUNTS ) );
+        assertEquals( "SAMPLES(3)", UsageRetention.samples( 3 ).toString() );
+        assertEquals( "COUNTS", UsageRetention.COUNTS.toString() );
+    }
+}
@@ -0,0 +1,404 @@
+package org.apache.maven.shared.dependency.analyzer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Tests <code>ZipCentralDirectory</code>.
+ *
+ * @see ZipCentralDirectory
+ */
+public class ZipCentralDirectoryTest
+    extends AbstractFileTest
+{
+    // tests ------------------------------------------------------------------
+
+    public void testAcceptClassNames()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        writeEntry( out, "a/b/c.class", "class a.b.c" );
+        writeEntry( out, "a/b/c.jpg", "jpeg a.b.c" );
+        out.putNextEntry( new ZipEntry( "x/" ) );
+        writeEntry( out, "x/y/z.class", "class x.y.z" );
+        writeEntry( out, "x/y/été.class", "class x.y.été" );
+        writeEntry( out, "x/y/package-info.class", "package x.y" );
+        writeEntry( out, ".class", "no name" );
+        out.close();
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+
+        assertEquals( 7, directory.getEntryCount() );
+        assertEquals( classes( "a.b.c", "x.y.z", "x.y.été", "x.y.package-info" ),
+                      acceptClassNames( directory ) );
+    }
+
+    public void testAcceptClassNamesWithEmptyJar()
+        throws IOException
+    {
+        File file = createJar();
+        new JarOutputStream( new FileOutputStream( file ) ).close();
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+
+        assertEquals( 0, directory.getEntryCount() );
+        assertTrue( acceptClassNames( directory ).isEmpty() );
+    }
+
+    public void testAcceptClassNamesWithZip64()
+        throws IOException
+    {
+        // more than 0xFFFF entries forces the zip64 end of central directory records
+        int count = 0x10000 + 10;
+
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        Set<String> expected = new HashSet<String>();
+        for ( int i = 0; i < count; i++ )
+        {
+            writeEntry( out, "p/C" + i + ".class", "" );
+            expected.add( "p.C" + i );
+        }
+        out.close();
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+
+        assertEquals( count, directory.getEntryCount() );
+        assertEquals( expected, acceptClassNames( directory ) );
+    }
+
+    public void testAcceptClassNamesWithPrependedData()
+        throws IOException
+    {
+        File jar = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+        writeEntry( out, "a/b/c.class", "class a.b.c" );
+        out.close();
+
+        // executable jars start with a launch script
+        File file = createJar();
+        OutputStream fileOut = new FileOutputStream( file );
+        IOUtil.copy( "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n", fileOut );
+        FileInputStream in = new FileInputStream( jar );
+        IOUtil.copy( in, fileOut );
+        in.close();
+        fileOut.close();
+
+        assertEquals( classes( "a.b.c" ), acceptClassNames( ZipCentralDirectory.open( file ) ) );
+    }
+
+    public void testAcceptClassNamesWithZip64AndPrependedData()
+        throws IOException
+    {
+        int count = 0x10000 + 10;
+
+        File jar = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+        Set<String> expected = new HashSet<String>();
+        for ( int i = 0; i < count; i++ )
+        {
+            writeEntry( out, "p/C" + i + ".class", "" );
+            expected.add( "p.C" + i );
+        }
+        out.close();
+
+        // the offset of the zip64 end record stored in its locator does not account for the launch script
+        File file = createJar();
+        OutputStream fileOut = new FileOutputStream( file );
+        IOUtil.copy( "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n", fileOut );
+        FileInputStream in = new FileInputStream( jar );
+        IOUtil.copy( in, fileOut );
+        in.close();
+        fileOut.close();
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+
+        assertEquals( count, directory.getEntryCount() );
+        assertEquals( expected, acceptClassNames( directory ) );
+    }
+
+    public void testAcceptClassNamesMatchesJarFile()
+        throws IOException
+    {
+        File rt = new File( System.getProperty( "java.home" ), "lib/rt.jar" );
+        File asm = new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() );
+
+        for ( File jar : Arrays.asList( rt, asm ) )
+        {
+            if ( !jar.isFile() )
+            {
+                continue;
+            }
+
+            Set<String> expected = new HashSet<String>();
+            JarFile jarFile = new JarFile( jar );
+            try
+            {
+                for ( ZipEntry entry : Collections.list( jarFile.entries() ) )
+                {
+                    if ( entry.getName().endsWith( ".class" ) )
+                    {
+                        String name = entry.getName().replace( '/', '.' );
+                        expected.add( name.substring( 0, name.length() - ".class".length() ) );
+                    }
+                }
+            }
+            finally
+            {
+                jarFile.close();
+            }
+
+            assertEquals( expected, acceptClassNames( ZipCentralDirectory.open( jar ) ) );
+        }
+    }
+
+    public void testReadEntriesMatchesJarFile()
+        throws IOException
+    {
+        File rt = new File( System.getProperty( "java.home" ), "lib/rt.jar" );
+        File asm = new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() );
+
+        for ( File jar : Arrays.asList( rt, asm ) )
+        {
+            if ( jar.isFile() )
+            {
+                assertReadEntriesMatchesJarFile( jar, jar );
+            }
+        }
+    }
+
+    public void testReadEntriesWithStoredEntriesAndPrependedData()
+        throws IOException
+    {
+        File jar = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ) );
+        writeEntry( out, "a/b/c.class", "class a.b.c" );
+        out.setMethod( ZipEntry.STORED );
+        byte[] bytes = "class x.y.z".getBytes( "UTF-8" );
+        ZipEntry entry = new ZipEntry( "x/y/z.class" );
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+        entry.setSize( bytes.length );
+        entry.setCrc( crc.getValue() );
+        out.putNextEntry( entry );
+        out.write( bytes );
+        out.close();
+
+        File file = createJar();
+        OutputStream fileOut = new FileOutputStream( file );
+        IOUtil.copy( "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n", fileOut );
+        FileInputStream in = new FileInputStream( jar );
+        IOUtil.copy( in, fileOut );
+        in.close();
+        fileOut.close();
+
+        assertReadEntriesMatchesJarFile( file, jar );
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+        List<ZipCentralDirectory.Entry> entries = directory.getClassEntries();
+        assertFalse( entries.get( 0 ).isStored() );
+        assertTrue( entries.get( 1 ).isStored() );
+
+        FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        try
+        {
+            ByteBuffer mapping = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            ByteBuffer slice = directory.sliceEntry( mapping, entries.get( 1 ) );
+            assertEquals( ByteBuffer.wrap( bytes ), slice );
+
+            try
+            {
+                directory.sliceEntry( mapping, entries.get( 0 ) );
+                fail( "Exception expected" );
+            }
+            catch ( ZipException e )
+            {
+                assertTrue( e.getMessage().startsWith( "Cannot slice compressed zip entry a/b/c.class in " ) );
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    public void testReadEntryReusesBuffer()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        writeEntry( out, "a/b/c.class", "class a.b.c, the larger entry" );
+        writeEntry( out, "x/y/z.class", "class x.y.z" );
+        out.close();
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+        List<ZipCentralDirectory.Entry> entries = directory.getClassEntries();
+        directory.close();
+
+        // entries listed before the directory is closed remain readable
+        FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        Inflater inflater = new Inflater( true );
+        try
+        {
+            ZipCentralDirectory.EntryBuffer buffer = new ZipCentralDirectory.EntryBuffer();
+            byte[] first = directory.readEntry( channel, entries.get( 0 ), inflater, buffer );
+            assertEquals( "class a.b.c, the larger entry", new String( first, 0, entries.get( 0 ).getSize() ) );
+
+            byte[] second = directory.readEntry( channel, entries.get( 1 ), inflater, buffer );
+            assertSame( first, second );
+            assertEquals( "class x.y.z", new String( second, 0, entries.get( 1 ).getSize() ) );
+        }
+        finally
+        {
+            inflater.end();
+            channel.close();
+        }
+    }
+
+    public void testClose()
+        throws IOException
+    {
+        File file = createJar();
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( file ) );
+        writeEntry( out, "a/b/c.class", "class a.b.c" );
+        out.close();
+
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+        assertEquals( classes( "a.b.c" ), acceptClassNames( directory ) );
+        directory.close();
+        directory.close();
+
+        try
+        {
+            directory.getClassEntries();
+            fail( "Exception expected" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertTrue( e.getMessage().startsWith( "Zip central directory is closed for " ) );
+        }
+    }
+
+    public void testOpenWithNonZipFile()
+        throws IOException
+    {
+        File file = createJar();
+        OutputStream out = new FileOutputStream( file );
+        IOUtil.copy( "not a zip file", out );
+        out.close();
+
+        try
+        {
+            ZipCentralDirectory.open( file );
+            fail( "Exception expected" );
+        }
+        catch ( ZipException e )
+        {
+            assertTrue( e.getMessage().startsWith( "Cannot find zip end of central directory in " ) );
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private Set<String> acceptClassNames( ZipCentralDirectory directory )
+        throws ZipException
+    {
+        Set<String> classes = new HashSet<String>();
+        directory.acceptClassNames( classes::add );
+        return classes;
+    }
+
+    private void assertReadEntriesMatchesJarFile( File file, File jar )
+        throws IOException
+    {
+        ZipCentralDirectory directory = ZipCentralDirectory.open( file );
+        List<ZipCentralDirectory.Entry> entries = directory.getClassEntries();
+
+        JarFile jarFile = new JarFile( jar );
+        FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        Inflater inflater = new Inflater( true );
+        try
+        {
+            List<String> expected = new ArrayList<String>();
+            for ( ZipEntry entry : Collections.list( jarFile.entries() ) )
+            {
+                if ( entry.getName().endsWith( ".class" ) )
+                {
+                    expected.add( entry.getName() );
+                }
+            }
+            assertEquals( expected.toString(), entries.toString() );
+
+            ZipCentralDirectory.EntryBuffer buffer = new ZipCentralDirectory.EntryBuffer();
+            for ( ZipCentralDirectory.Entry entry : entries )
+            {
+                byte[] data = directory.readEntry( channel, entry, inflater, buffer );
+
+                InputStream in = jarFile.getInputStream( jarFile.getEntry( entry.getName() ) );
+                try
+                {
+                    byte[] b = IOUtil.toByteArray( in );
+                    assertEquals( entry.getName(), b.length, entry.getSize() );
+                    assertTrue( entry.getName(), Arrays.equals( b, Arrays.copyOf( data, entry.getSize() ) ) );
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        finally
+        {
+            inflater.end();
+            channel.close();
+            jarFile.close();
+        }
+    }
+
+    private Set<String> classes( String... classNames )
+    {
+        return new HashSet<String>( Arrays.asList( classNames ) );
+    }
+}
@@ -19,9 +19,29 @@ package org.apache.maven.shared.dependency.analyzer.asm;
  * under the License.
  */
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
+import org.apache.maven.shared.dependency.analyzer.DependencyUsage;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
 
 public class ASMDependencyAnalyzerTest
 {
@@ -37,4 +57,191 @@ public class ASMDependencyAnalyzerTest
         analyzer.analyze( new URL(fileUrl) );
     }
 
+    @Test
+    public void testParallelDirectory() throws Exception
+    {
+        File directory = Files.createTempDirectory( "classes" ).toFile();
+        try
+        {
+            int classCount = extractClasses( directory );
+            URL url = directory.toURI().toURL();
+
+            ASMDependencyAnalyzerWithUsages sequential = new ASMDependencyAnalyzerWithUsages();
+            Set<DependencyUsage> expected = sequential.analyze( url );
+
+            ASMDependencyAnalyzerWithUsages parallel = new ASMDependencyAnalyzerWithUsages();
+            parallel.setParallelism( 4 );
+            assertEquals( expected, parallel.analyze( url ) );
+            assertEquals( classCount, parallel.getStatistics().getVisitedCount() );
+
+            analyzer.setParallelism( 4 );
+            analyzer.setFastScanning( true );
+            assertEquals( new ASMDependencyAnalyzer().analyze( url ), analyzer.analyze( url ) );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+    @Test
+    public void testParallelJar() throws Exception
+    {
+        URL url = ClassReader.class.getProtectionDomain().getCodeSource().getLocation();
+
+        ASMDependencyAnalyzerWithUsages sequential = new ASMDependencyAnalyzerWithUsages();
+        Set<DependencyUsage> expected = sequential.analyze( url );
+
+        ASMDependencyAnalyzerWithUsages parallel = new ASMDependencyAnalyzerWithUsages();
+        parallel.setParallelism( 4 );
+        assertEquals( expected, parallel.analyze( url ) );
+        assertEquals( sequential.getStatistics().getVisitedCount(), parallel.getStatistics().getVisitedCount() );
+
+        analyzer.setParallelism( 4 );
+        analyzer.setFastScanning( true );
+        assertEquals( new ASMDependencyAnalyzer().analyze( url ), analyzer.analyze( url ) );
+    }
+
+    @Test
+    public void testSignatureCacheHitRate() throws Exception
+    {
+        URL url = ClassReader.class.getProtectionDomain().getCodeSource().getLocation();
+
+        for ( boolean fastScanning : new boolean[] { false, true } )
+        {
+            ASMDependencyAnalyzer analyzer = new ASMDependencyAnalyzer();
+            analyzer.setFastScanning( fastScanning );
+            analyzer.analyze( url );
+
+            // descriptors repeat across the classes of a library
+            assertTrue( analyzer.getStatistics().toString(),
+                        analyzer.getStatistics().getSignatureCacheHitRate() > 0.5 );
+        }
+    }
+
+    @Test
+    public void testAnalyzePath() throws Exception
+    {
+        URL url = ClassReader.class.getProtectionDomain().getCodeSource().getLocation();
+
+        assertEquals( analyzer.analyze( url ), analyzer.analyze( Paths.get( url.toURI() ) ) );
+    }
+
+    @Test
+    public void testStreamUsages() throws Exception
+    {
+        URL url = ClassReader.class.getProtectionDomain().getCodeSource().getLocation();
+
+        ASMDependencyAnalyzerWithUsages analyzer = new ASMDependencyAnalyzerWithUsages();
+        Set<DependencyUsage> expected = analyzer.analyze( url, new ClassSymbolTable() );
+
+        for ( int parallelism : new int[] { 1, 4 } )
+        {
+            analyzer.setParallelism( parallelism );
+            final List<DependencyUsage> usages = new ArrayList<DependencyUsage>();
+            analyzer.analyze( url, usages::add );
+
+            // distinct, and the usages of each class pushed together
+            assertEquals( expected, new HashSet<DependencyUsage>( usages ) );
+            assertEquals( expected.size(), usages.size() );
+            Set<String> pushedClasses = new HashSet<String>();
+            for ( int i = 0; i < usages.size(); i++ )
+            {
+                String usedBy = usages.get( i ).getUsedBy();
+                assertTrue( usedBy, i > 0 && usedBy.equals( usages.get( i - 1 ).getUsedBy() )
+                    || pushedClasses.add( usedBy ) );
+            }
+        }
+
+        assertEquals( expected, analyzer.analyze( url ) );
+    }
+
+    @Test
+    public void testStreamUsagesParallelDirectory() throws Exception
+    {
+        File directory = Files.createTempDirectory( "classes" ).toFile();
+        try
+        {
+            extractClasses( directory );
+            URL url = directory.toURI().toURL();
+
+            Set<DependencyUsage> expected = new ASMDependencyAnalyzerWithUsages().analyze( url );
+
+            ASMDependencyAnalyzerWithUsages analyzer = new ASMDependencyAnalyzerWithUsages();
+            analyzer.setParallelism( 4 );
+            final AtomicInteger callers = new AtomicInteger();
+            final List<DependencyUsage> usages = new ArrayList<DependencyUsage>();
+            analyzer.analyze( url, usage ->
+            {
+                // never called from two threads at once
+                assertEquals( 1, callers.incrementAndGet() );
+                usages.add( usage );
+                callers.decrementAndGet();
+            } );
+
+            assertEquals( expected, new HashSet<DependencyUsage>( usages ) );
+            assertEquals( expected.size(), usages.size() );
+            assertEquals( expected, analyzer.analyze( url ) );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+    @Test
+    public void testAnalyzeDependencyClasses() throws Exception
+    {
+        URL url = ClassReader.class.getProtectionDomain().getCodeSource().getLocation();
+
+        Set<String> expected = new HashSet<String>();
+        for ( DependencyUsage usage : new ASMDependencyAnalyzerWithUsages().analyze( url ) )
+        {
+            expected.add( usage.getDependencyClass() );
+        }
+        assertEquals( expected, new ASMDependencyAnalyzer().analyze( url ) );
+
+        for ( int parallelism : new int[] { 1, 4 } )
+        {
+            ASMDependencyAnalyzerWithUsages analyzer = new ASMDependencyAnalyzerWithUsages();
+            analyzer.setParallelism( parallelism );
+            assertEquals( expected, analyzer.analyzeDependencyClasses( url, new ClassSymbolTable() ) );
+        }
+    }
+
+    private static int extractClasses( File directory ) throws IOException
+    {
+        File asm = new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() );
+
+        int count = 0;
+        ZipFile zip = new ZipFile( asm );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.getName().endsWith( ".class" ) )
+                {
+                    File file = new File( directory, entry.getName() );
+                    file.getParentFile().mkdirs();
+                    InputStream in = zip.getInputStream( entry );
+                    try
+                    {
+                        Files.copy( in, file.toPath() );
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                    count++;
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return count;
+    }
+
 }
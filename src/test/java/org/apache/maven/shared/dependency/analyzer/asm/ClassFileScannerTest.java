@@ -0,0 +1,172 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Tests <code>ClassFileScanner</code> against the ASM visitors.
+ */
+public class ClassFileScannerTest
+    extends TestCase
+{
+    // fields -----------------------------------------------------------------
+
+    private int scannedCount;
+
+    private int declinedCount;
+
+    // tests ------------------------------------------------------------------
+
+    public void testMatchesAsmOnAsmJar()
+        throws IOException
+    {
+        assertMatchesAsm( new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() ) );
+    }
+
+    public void testMatchesAsmOnRuntimeJar()
+        throws IOException
+    {
+        File rt = new File( System.getProperty( "java.home" ), "lib/rt.jar" );
+        if ( rt.isFile() )
+        {
+            assertMatchesAsm( rt );
+        }
+    }
+
+    public void testMatchesAsmOnCompiledClasses()
+        throws IOException
+    {
+        // test classes have debug information, generics and annotations
+        for ( String path : new String[] { "target/classes", "target/test-classes" } )
+        {
+            File directory = new File( System.getProperty( "basedir", "." ), path );
+
+            for ( Object file : FileUtils.getFiles( directory, "**/*.class", null ) )
+            {
+                assertMatchesAsm( file.toString(), Files.readAllBytes( ( (File) file ).toPath() ) );
+            }
+        }
+
+        assertTrue( scannedCount > 0 );
+    }
+
+    public void testDeclinesDefaultPackageClass()
+    {
+        ClassWriter writer = new ClassWriter( 0 );
+        writer.visit( Opcodes.V1_8, Opcodes.ACC_PUBLIC, "a/A", null, "java/lang/Object", null );
+        MethodVisitor method = writer.visitMethod( Opcodes.ACC_PUBLIC, "m", "()V", null, null );
+        method.visitCode();
+        method.visitTypeInsn( Opcodes.NEW, "B" );
+        method.visitInsn( Opcodes.RETURN );
+        method.visitMaxs( 1, 1 );
+        method.visitEnd();
+        writer.visitEnd();
+        byte[] b = writer.toByteArray();
+
+        ResultCollector resultCollector = new ResultCollector();
+        assertFalse( ClassFileScanner.scan( b, resultCollector ) );
+        assertTrue( resultCollector.getDependencies().isEmpty() );
+
+        assertTrue( visit( "a.A", b, true ).contains( "B" ) );
+        assertMatchesAsm( "a.A", b );
+    }
+
+    public void testRejectsNonClassData()
+    {
+        ResultCollector resultCollector = new ResultCollector();
+
+        assertFalse( ClassFileScanner.scan( new byte[] { 1, 2, 3, 4 }, resultCollector ) );
+        assertFalse( ClassFileScanner.scan( new byte[16], resultCollector ) );
+        assertTrue( resultCollector.getDependencies().isEmpty() );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private void assertMatchesAsm( File jar )
+        throws IOException
+    {
+        ZipFile zip = new ZipFile( jar );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.getName().endsWith( ".class" ) )
+                {
+                    InputStream in = zip.getInputStream( entry );
+                    try
+                    {
+                        assertMatchesAsm( entry.getName(), IOUtil.toByteArray( in ) );
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        // the fallback is for odd classes only
+        assertTrue( scannedCount > declinedCount * 10 );
+    }
+
+    private void assertMatchesAsm( String className, byte[] b )
+    {
+        if ( ClassFileScanner.scan( b, new ResultCollector() ) )
+        {
+            scannedCount++;
+        }
+        else
+        {
+            declinedCount++;
+        }
+
+        assertEquals( className, visit( className, b, false ), visit( className, b, true ) );
+    }
+
+    private static Set<String> visit( String className, byte[] b, boolean fastScanning )
+    {
+        DependencyClassFileVisitor visitor = new DependencyClassFileVisitor( fastScanning );
+        visitor.visitClass( className, new ByteArrayInputStream( b ) );
+        return visitor.getDependencies();
+    }
+}
@@ -0,0 +1,230 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the constant pool class reference extraction with its previous implementation, which decoded every UTF8
+ * entry into a map and boxed class indexes, on every class of the ASM jar.
+ * <p>
+ * Not a unit test: run {@link #main(String[])} from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ConstantPoolParserBenchmark
+{
+    // fields -----------------------------------------------------------------
+
+    private List<byte[]> classes;
+
+    // public methods ---------------------------------------------------------
+
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( ConstantPoolParserBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+    @Setup
+    public void setUp()
+        throws IOException
+    {
+        classes = new ArrayList<byte[]>();
+
+        File asm = new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() );
+        ZipFile zip = new ZipFile( asm );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.getName().endsWith( ".class" ) )
+                {
+                    InputStream in = zip.getInputStream( entry );
+                    try
+                    {
+                        classes.add( IOUtil.toByteArray( in ) );
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Benchmark
+    public void lazyUtf8( Blackhole blackhole )
+    {
+        for ( byte[] b : classes )
+        {
+            blackhole.consume( ConstantPoolParser.getConstantPoolClassReferences( b ) );
+        }
+    }
+
+    @Benchmark
+    public void eagerUtf8( Blackhole blackhole )
+    {
+        for ( byte[] b : classes )
+        {
+            blackhole.consume( parseEagerly( ByteBuffer.wrap( b ) ) );
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    /**
+     * The implementation preceding lazy UTF8 decoding, kept as the baseline.
+     */
+    private static Set<String> parseEagerly( ByteBuffer buf )
+    {
+        if ( buf.order( ByteOrder.BIG_ENDIAN ).getInt() != ConstantPoolParser.HEAD )
+        {
+            return Collections.emptySet();
+        }
+        buf.getChar();
+        buf.getChar();
+        Set<Integer> classes = new HashSet<Integer>();
+        Map<Integer, String> stringConstants = new HashMap<Integer, String>();
+        for ( int ix = 1, num = buf.getChar(); ix < num; ix++ )
+        {
+            byte tag = buf.get();
+            switch ( tag )
+            {
+                default:
+                    throw new RuntimeException( "Unknown constant pool type '" + tag + "'" );
+                case ConstantPoolParser.CONSTANT_UTF8:
+                    stringConstants.put( ix, decodeString( buf ) );
+                    continue;
+                case ConstantPoolParser.CONSTANT_CLASS:
+                case ConstantPoolParser.CONSTANT_STRING:
+                case ConstantPoolParser.CONSTANT_METHOD_TYPE:
+                    classes.add( (int) buf.getChar() );
+                    break;
+                case ConstantPoolParser.CONSTANT_FIELDREF:
+                case ConstantPoolParser.CONSTANT_METHODREF:
+                case ConstantPoolParser.CONSTANT_INTERFACEMETHODREF:
+                case ConstantPoolParser.CONSTANT_NAME_AND_TYPE:
+                case ConstantPoolParser.CONSTANT_INTEGER:
+                case ConstantPoolParser.CONSTANT_FLOAT:
+                case ConstantPoolParser.CONSTANT_INVOKE_DYNAMIC:
+                    buf.getInt();
+                    break;
+                case ConstantPoolParser.CONSTANT_DOUBLE:
+                case ConstantPoolParser.CONSTANT_LONG:
+                    buf.getLong();
+                    ix++;
+                    break;
+                case ConstantPoolParser.CONSTANT_METHODHANDLE:
+                    buf.get();
+                    buf.getChar();
+                    break;
+                case ConstantPoolParser.CONSTANT_MODULE:
+                case ConstantPoolParser.CONSTANT_PACKAGE:
+                    buf.getChar();
+                    break;
+            }
+        }
+        Set<String> result = new HashSet<String>();
+        for ( Integer aClass : classes )
+        {
+            String className = stringConstants.get( aClass );
+            if ( className.indexOf( '/' ) != -1 )
+            {
+                result.add( className );
+            }
+        }
+        return result;
+    }
+
+    private static String decodeString( ByteBuffer buf )
+    {
+        int size = buf.getChar();
+        int oldLimit = ( (Buffer) buf ).limit();
+        ( (Buffer) buf ).limit( buf.position() + size );
+        StringBuilder sb = new StringBuilder( size + ( size >> 1 ) + 16 );
+        while ( buf.hasRemaining() )
+        {
+            byte b = buf.get();
+            if ( b > 0 )
+            {
+                sb.append( (char) b );
+            }
+            else
+            {
+                int b2 = buf.get();
+                if ( ( b & 0xf0 ) != 0xe0 )
+                {
+                    sb.append( (char) ( ( b & 0x1F ) << 6 | b2 & 0x3F ) );
+                }
+                else
+                {
+                    int b3 = buf.get();
+                    sb.append( (char) ( ( b & 0x0F ) << 12 | ( b2 & 0x3F ) << 6 | b3 & 0x3F ) );
+                }
+            }
+        }
+        ( (Buffer) buf ).limit( oldLimit );
+        return sb.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Tests <code>ConstantPoolParser</code>.
+ */
+public class ConstantPoolParserTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testClassReferences()
+    {
+        ClassWriter writer = new ClassWriter( 0 );
+        writer.visit( Opcodes.V1_8, Opcodes.ACC_PUBLIC, "a/A", null, "java/lang/Object", null );
+        MethodVisitor method = writer.visitMethod( Opcodes.ACC_PUBLIC, "m", "()V", null, null );
+        method.visitCode();
+        method.visitLdcInsn( Long.valueOf( 1 ) );
+        method.visitLdcInsn( "b/B" );
+        method.visitLdcInsn( Type.getMethodType( "(Lc/C;)V" ) );
+        method.visitTypeInsn( Opcodes.NEW, "D" );
+        method.visitInsn( Opcodes.RETURN );
+        method.visitMaxs( 2, 1 );
+        method.visitEnd();
+        writer.visitEnd();
+        byte[] b = writer.toByteArray();
+
+        Set<String> references = ConstantPoolParser.getConstantPoolClassReferences( new ClassReader( b ) );
+
+        assertTrue( references.contains( "a/A" ) );
+        assertTrue( references.contains( "java/lang/Object" ) );
+        assertTrue( references.contains( "b/B" ) );
+        assertTrue( references.contains( "(Lc/C;)V" ) );
+        assertFalse( references.contains( "D" ) );
+        assertEquals( ConstantPoolParser.getConstantPoolClassReferences( b ), references );
+    }
+
+    public void testNonAsciiClassNames()
+    {
+        ClassWriter writer = new ClassWriter( 0 );
+        writer.visit( Opcodes.V1_8, Opcodes.ACC_PUBLIC, "caf\u00e9/Cr\u00e8me", null, "java/lang/Object",
+                      new String[] { "\u65e5\u672c/\u8a9e", "\u00e9t\u00e9" } );
+        writer.visitEnd();
+        byte[] b = writer.toByteArray();
+
+        Set<String> references = ConstantPoolParser.getConstantPoolClassReferences( b );
+
+        assertEquals( 3, references.size() );
+        assertTrue( references.contains( "caf\u00e9/Cr\u00e8me" ) );
+        assertTrue( references.contains( "\u65e5\u672c/\u8a9e" ) );
+        assertTrue( references.contains( "java/lang/Object" ) );
+    }
+
+    public void testUnparseableConstantPool()
+    {
+        byte[] header = { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 52 };
+
+        // unknown tag
+        assertNull( ConstantPoolParser.getConstantPoolClassReferences( concat( header, 0, 2, 99, 0, 0 ) ) );
+        // truncated entries
+        assertNull( ConstantPoolParser.getConstantPoolClassReferences( concat( header, 0, 2, 1, 0, 9, 'a' ) ) );
+        assertNull( ConstantPoolParser.getConstantPoolClassReferences( concat( header, 0, 3, 7, 0, 2 ) ) );
+        // not a class file
+        assertTrue( ConstantPoolParser.getConstantPoolClassReferences( new byte[] { 1, 2, 3 } ).isEmpty() );
+    }
+
+    public void testClassReaderMatchesConstantPoolWalk()
+        throws IOException
+    {
+        File asm = new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() );
+
+        ZipFile zip = new ZipFile( asm );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.getName().endsWith( ".class" ) )
+                {
+                    InputStream in = zip.getInputStream( entry );
+                    try
+                    {
+                        byte[] b = IOUtil.toByteArray( in );
+                        ClassReader reader = new ClassReader( b );
+
+                        int[] items = new int[reader.getItemCount()];
+                        assertTrue( ConstantPoolParser.readItemOffsets( b, items ) > 0 );
+                        for ( int i = 1; i < items.length; i++ )
+                        {
+                            assertEquals( entry.getName(), reader.getItem( i ), items[i] );
+                        }
+
+                        assertEquals( entry.getName(), ConstantPoolParser.getConstantPoolClassReferences( b ),
+                                      ConstantPoolParser.getConstantPoolClassReferences( new ClassReader( b ) ) );
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static byte[] concat( byte[] header, int... bytes )
+    {
+        byte[] b = new byte[header.length + bytes.length];
+        System.arraycopy( header, 0, b, 0, header.length );
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            b[header.length + i] = (byte) bytes[i];
+        }
+        return b;
+    }
+}
@@ -0,0 +1,317 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
+import org.apache.maven.shared.dependency.analyzer.DependencyUsage;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Tests <code>DependencyClassFileVisitor</code> fallbacks.
+ */
+public class DependencyClassFileVisitorTest
+    extends TestCase
+{
+    // constants --------------------------------------------------------------
+
+    private static final int WARMUP_CLASS_COUNT = 20000;
+
+    private static final int CLASS_COUNT = 10000;
+
+    private static final int ALLOCATED_BYTES_PER_CLASS = 1000;
+
+    // tests ------------------------------------------------------------------
+
+    public void testConstantDynamic()
+    {
+        byte[] b = createClass( Opcodes.V11, true );
+
+        for ( boolean fastScanning : new boolean[] { false, true } )
+        {
+            DependencyClassFileVisitor visitor = visit( b, fastScanning );
+
+            assertTrue( visitor.getDependencies().contains( "b.B" ) );
+            assertTrue( visitor.getDependencies().contains( "c.C" ) );
+            assertEquals( 0, visitor.getStatistics().getFailedCount() );
+            assertEquals( 0, visitor.getStatistics().getConstantPoolOnlyCount() );
+        }
+
+        assertEquals( 1, visit( b, true ).getStatistics().getScannedCount() );
+    }
+
+    public void testClassFileVersionUnknownToAsm()
+    {
+        byte[] b = createClass( Opcodes.V11, false );
+        // major version 60, Java 16
+        b[7] = 60;
+
+        DependencyClassFileVisitor visitor = visit( b, false );
+        assertEquals( 1, visitor.getStatistics().getConstantPoolOnlyCount() );
+        assertTrue( visitor.getDependencies().contains( "b.B" ) );
+
+        visitor = visit( b, true );
+        assertEquals( 1, visitor.getStatistics().getScannedCount() );
+        assertTrue( visitor.getDependencies().contains( "b.B" ) );
+        assertTrue( visitor.getDependencies().contains( "c.C" ) );
+    }
+
+    public void testUnknownConstantTag()
+    {
+        byte[] b = { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 52, 0, 2, 99, 0, 0, 0, 0 };
+
+        for ( boolean fastScanning : new boolean[] { false, true } )
+        {
+            DependencyClassFileVisitor visitor = visit( b, fastScanning );
+
+            assertTrue( visitor.getDependencies().isEmpty() );
+            assertEquals( 1, visitor.getStatistics().getFailedCount() );
+        }
+    }
+
+    public void testNonClassData()
+    {
+        for ( boolean fastScanning : new boolean[] { false, true } )
+        {
+            DependencyClassFileVisitor visitor = visit( new byte[64], fastScanning );
+
+            // neither scanned nor visited as an empty class
+            assertTrue( visitor.getDependencies().isEmpty() );
+            assertEquals( 1, visitor.getStatistics().getFailedCount() );
+        }
+    }
+
+    public void testSharedStatistics()
+    {
+        ScanStatistics statistics = new ScanStatistics();
+        byte[] b = createClass( Opcodes.V1_8, false );
+
+        new DependencyClassFileVisitor( false, statistics ).visitClass( "a.A", new ByteArrayInputStream( b ) );
+        new DependencyClassFileVisitor( true, statistics ).visitClass( "a.A", new ByteArrayInputStream( b ) );
+
+        assertEquals( 1, statistics.getVisitedCount() );
+        assertEquals( 1, statistics.getScannedCount() );
+    }
+
+    public void testVisitByteBuffers()
+    {
+        byte[] b = createClass( Opcodes.V1_8, false );
+        DependencyClassFileVisitor expected = visit( b, false );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect( b.length );
+        direct.put( b ).flip();
+        byte[] padded = new byte[b.length + 10];
+        System.arraycopy( b, 0, padded, 5, b.length );
+
+        for ( ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap( b ), direct,
+            ByteBuffer.wrap( padded, 5, b.length ) } )
+        {
+            DependencyClassFileVisitor visitor = new DependencyClassFileVisitor();
+            visitor.visitClass( "a.A", buffer );
+
+            assertEquals( expected.getDependencies(), visitor.getDependencies() );
+            assertEquals( expected.getDependencyUsages(), visitor.getDependencyUsages() );
+        }
+    }
+
+    public void testVisitByteBufferInPlace()
+    {
+        byte[] b = createClass( Opcodes.V1_8, false );
+        byte[] other = createClass( Opcodes.V11, true );
+
+        // the class file between two others, the bytes around it being read by neither ASM nor the scanner
+        byte[] array = new byte[other.length * 2 + b.length];
+        System.arraycopy( other, 0, array, 0, other.length );
+        System.arraycopy( b, 0, array, other.length, b.length );
+        System.arraycopy( other, 0, array, other.length + b.length, other.length );
+
+        for ( boolean fastScanning : new boolean[] { false, true } )
+        {
+            DependencyClassFileVisitor expected = visit( b, fastScanning );
+
+            DependencyClassFileVisitor visitor = new DependencyClassFileVisitor( fastScanning );
+            visitor.visitClass( "a.A", ByteBuffer.wrap( array, other.length, b.length ) );
+            assertEquals( expected.getDependencyUsages(), visitor.getDependencyUsages() );
+
+            // truncated, followed by the bytes of another class file
+            visitor = new DependencyClassFileVisitor( fastScanning );
+            visitor.visitClass( "a.B", ByteBuffer.wrap( array, other.length, b.length - 1 ) );
+            assertEquals( 1, visitor.getStatistics().getFailedCount() );
+            assertTrue( visitor.getDependencyUsages().isEmpty() );
+        }
+    }
+
+    public void testVisitShorterByteBufferAfterLongerOne()
+    {
+        byte[] b = createClass( Opcodes.V1_8, false );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect( b.length );
+        direct.put( b ).flip();
+
+        DependencyClassFileVisitor visitor = new DependencyClassFileVisitor();
+        visitor.visitClass( "a.A", direct );
+        visitor.visitClass( "a.B", ByteBuffer.wrap( b, 0, 8 ).slice() );
+
+        // the copy of the first class is not read again for the truncated one
+        assertEquals( 1, visitor.getStatistics().getVisitedCount() );
+        for ( DependencyUsage usage : visitor.getDependencyUsages() )
+        {
+            assertEquals( "a.A", usage.getUsedBy() );
+        }
+    }
+
+    public void testSealedSymbolTable()
+    {
+        byte[] b = createClass( Opcodes.V1_8, false );
+
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        String name = "c.C";
+        symbols.intern( name );
+        symbols.seal();
+
+        for ( boolean fastScanning : new boolean[] { false, true } )
+        {
+            ScanStatistics statistics = new ScanStatistics();
+            DependencyClassFileVisitor visitor =
+                new DependencyClassFileVisitor( fastScanning, statistics, new SignatureCache( symbols, statistics ) );
+            visitor.visitClass( "a.A", ByteBuffer.wrap( b ) );
+
+            // only the classes of the table are resolved, and named by its strings
+            assertEquals( Collections.singleton( name ), visitor.getDependencies() );
+            assertSame( name, visitor.getDependencyUsages().iterator().next().getDependencyClass() );
+            assertEquals( 1, symbols.size() );
+        }
+    }
+
+    public void testUsageConsumer()
+    {
+        byte[] b = createClass( Opcodes.V1_8, false );
+        DependencyClassFileVisitor expected = visit( b, true );
+
+        ScanStatistics statistics = new ScanStatistics();
+        Set<DependencyUsage> usages = new HashSet<DependencyUsage>();
+        DependencyClassFileVisitor visitor =
+            new DependencyClassFileVisitor( true, statistics, new SignatureCache( statistics ), usages::add );
+        visitor.visitClass( "a.A", ByteBuffer.wrap( b ) );
+
+        // the usages are pushed as the class is read rather than kept, only the referenced classes are
+        assertEquals( expected.getDependencyUsages(), usages );
+        assertTrue( visitor.getDependencyUsages().isEmpty() );
+        assertEquals( expected.getDependencies(), visitor.getDependencies() );
+    }
+
+    public void testDependencyClassesOnly()
+    {
+        byte[] b = createClass( Opcodes.V1_8, false );
+        DependencyClassFileVisitor expected = new DependencyClassFileVisitor( true );
+        expected.visitClass( "a.A", ByteBuffer.wrap( b ) );
+        expected.visitClass( "a.B", ByteBuffer.wrap( b ) );
+
+        ScanStatistics statistics = new ScanStatistics();
+        DependencyClassFileVisitor visitor =
+            new DependencyClassFileVisitor( true, statistics, new SignatureCache( statistics ), false );
+        visitor.visitClass( "a.A", ByteBuffer.wrap( b ) );
+        assertTrue( visitor.getDependencies().contains( "b.B" ) );
+        visitor.visitClass( "a.B", ByteBuffer.wrap( b ) );
+
+        // the referenced classes only, neither usages nor the names of the visited classes
+        assertEquals( expected.getDependencies(), visitor.getDependencies() );
+        assertTrue( visitor.getDependencyUsages().isEmpty() );
+    }
+
+    public void testAllocationPerScannedClass()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if ( !( threads instanceof com.sun.management.ThreadMXBean )
+            || !( (com.sun.management.ThreadMXBean) threads ).isThreadAllocatedMemorySupported() )
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+        byte[] b = createClass( Opcodes.V1_8, false );
+        DependencyClassFileVisitor visitor = new DependencyClassFileVisitor( true );
+        ByteArrayInputStream in = new ByteArrayInputStream( b );
+        for ( int i = 0; i < WARMUP_CLASS_COUNT; i++ )
+        {
+            in.reset();
+            visitor.visitClass( "a.A", in );
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap( b );
+        long threadId = Thread.currentThread().getId();
+        long allocated = allocations.getThreadAllocatedBytes( threadId );
+        for ( int i = 0; i < CLASS_COUNT; i++ )
+        {
+            visitor.visitClass( "a.A", buffer );
+        }
+        allocated = allocations.getThreadAllocatedBytes( threadId ) - allocated;
+
+        // the visitor chain and its collector are reused: what remains are the strings of the class and its usages
+        assertEquals( CLASS_COUNT, visitor.getStatistics().getScannedCount() - WARMUP_CLASS_COUNT );
+        assertTrue( "allocated " + allocated / CLASS_COUNT + " bytes per class",
+                    allocated / CLASS_COUNT < ALLOCATED_BYTES_PER_CLASS );
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static DependencyClassFileVisitor visit( byte[] b, boolean fastScanning )
+    {
+        DependencyClassFileVisitor visitor = new DependencyClassFileVisitor( fastScanning );
+        visitor.visitClass( "a.A", new ByteArrayInputStream( b ) );
+        return visitor;
+    }
+
+    private static byte[] createClass( int version, boolean constantDynamic )
+    {
+        ClassWriter writer = new ClassWriter( 0 );
+        writer.visit( version, Opcodes.ACC_PUBLIC, "a/A", null, "java/lang/Object", null );
+        writer.visitField( Opcodes.ACC_PUBLIC, "f", "Lc/C;", null, null ).visitEnd();
+        MethodVisitor method = writer.visitMethod( Opcodes.ACC_PUBLIC, "m", "()V", null, null );
+        method.visitCode();
+        method.visitTypeInsn( Opcodes.NEW, "b/B" );
+        if ( constantDynamic )
+        {
+            Handle bootstrap = new Handle( Opcodes.H_INVOKESTATIC, "a/A", "bootstrap",
+                                           "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;"
+                                               + "Ljava/lang/Class;)Ljava/lang/Object;", false );
+            method.visitLdcInsn( new ConstantDynamic( "value", "Ljava/lang/Object;", bootstrap ) );
+        }
+        method.visitInsn( Opcodes.RETURN );
+        method.visitMaxs( 2, 1 );
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,290 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.shared.dependency.analyzer.ClassSymbolTable;
+import org.codehaus.plexus.util.IOUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Tests <code>ResultCollector</code> descriptor parsing against ASM <code>Type</code>.
+ */
+public class ResultCollectorTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testAddDesc()
+    {
+        assertDesc( "Lfoo/Bar;", "foo.Bar" );
+        assertDesc( "[[Lfoo/Bar$Baz;", "foo.Bar$Baz" );
+        assertDesc( "LBar;", "Bar" );
+        assertDesc( "I" );
+        assertDesc( "[J" );
+    }
+
+    public void testAddMethodDesc()
+    {
+        assertMethodDesc( "()V" );
+        assertMethodDesc( "(I[J)[Z" );
+        assertMethodDesc( "(ILfoo/Bar;[[Lbaz/Qux;D)Lr/R;", "foo.Bar", "baz.Qux", "r.R" );
+        assertMethodDesc( "([Lfoo/Bar;)[[Lr/R;", "foo.Bar", "r.R" );
+    }
+
+    public void testAddNameDecodesArrays()
+    {
+        ResultCollector resultCollector = new ResultCollector();
+        resultCollector.addName( "[Lfoo/Bar;" );
+        resultCollector.addName( "a/b/C" );
+        resultCollector.addName( null );
+
+        assertEquals( classes( "foo.Bar", "a.b.C" ), resultCollector.getDependencies() );
+    }
+
+    public void testInvalidDescriptors()
+    {
+        for ( String desc : new String[] { "", "X", "[", "java/lang/Object" } )
+        {
+            try
+            {
+                new ResultCollector().addDesc( desc );
+                fail( "Exception expected for " + desc );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                // expected
+            }
+        }
+
+        for ( String desc : new String[] { "", "I", "(", "(X)V", "(Lfoo/Bar)V", "()" } )
+        {
+            try
+            {
+                new ResultCollector().addMethodDesc( desc );
+                fail( "Exception expected for " + desc );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                // expected
+            }
+        }
+    }
+
+    public void testCachedDescriptorsAndSignatures()
+    {
+        ScanStatistics statistics = new ScanStatistics();
+        SignatureCache cache = new SignatureCache( statistics );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            ResultCollector resultCollector = new ResultCollector( cache );
+            DefaultSignatureVisitor signatureVisitor = new DefaultSignatureVisitor( resultCollector );
+
+            resultCollector.addDesc( "[Lfoo/Bar;" );
+            resultCollector.addMethodDesc( "(I)V" );
+            resultCollector.addSignature( "Lfoo/A<Lfoo/T;>;Lfoo/B;", signatureVisitor );
+            resultCollector.addTypeSignature( "Lfoo/A<Lfoo/T;>;Lfoo/B;", signatureVisitor );
+
+            assertEquals( classes( "foo.Bar", "foo.A", "foo.T", "foo.B" ), resultCollector.getDependencies() );
+        }
+
+        // a type signature is only the first type
+        ResultCollector resultCollector = new ResultCollector( cache );
+        resultCollector.addTypeSignature( "Lfoo/A<Lfoo/T;>;Lfoo/B;", new DefaultSignatureVisitor( resultCollector ) );
+        assertEquals( classes( "foo.A", "foo.T" ), resultCollector.getDependencies() );
+
+        assertEquals( 4, cache.size() );
+        assertEquals( 5, statistics.getSignatureCacheHitCount() );
+        assertEquals( 4, statistics.getSignatureCacheMissCount() );
+    }
+
+    public void testSharedSymbolTable()
+    {
+        SignatureCache cache = new SignatureCache( new ScanStatistics() );
+        ResultCollector first = new ResultCollector( cache );
+        ResultCollector second = new ResultCollector( cache );
+
+        first.addName( "foo/Bar" );
+        second.addDesc( "[Lfoo/Bar;" );
+        second.addName( "x[Lfoo/Baz;".getBytes( StandardCharsets.UTF_8 ), 1, 10 );
+
+        // both collectors name the class with the string of the symbol table
+        String name = first.getDependencies().iterator().next();
+        assertSame( name, second.getDependencies().iterator().next() );
+        assertSame( name, cache.getSymbols().getName( second.getDependencyId( 0 ) ) );
+        assertEquals( classes( "foo.Bar", "foo.Baz" ), second.getDependencies() );
+
+        second.clear();
+        assertTrue( second.getDependencies().isEmpty() );
+        assertFalse( second.getDependencies().contains( "foo.Bar" ) );
+        second.addName( "foo/Baz" );
+        assertEquals( classes( "foo.Baz" ), second.getDependencies() );
+    }
+
+    public void testAddToSealedSymbolTable()
+    {
+        ClassSymbolTable symbols = new ClassSymbolTable();
+        symbols.intern( "foo.Bar" );
+        symbols.seal();
+        ResultCollector collector = new ResultCollector( symbols, null );
+
+        // names the table does not know are still collected by add, as given
+        collector.add( "foo.Bar" );
+        collector.add( "foo.Baz" );
+        collector.addName( "foo/Qux" );
+
+        assertEquals( classes( "foo.Bar", "foo.Baz" ), collector.getDependencies() );
+        assertTrue( collector.getDependencies().contains( "foo.Baz" ) );
+        assertFalse( collector.getDependencies().contains( "foo.Qux" ) );
+        assertEquals( 1, collector.getDependencyCount() );
+
+        collector.clear();
+        assertTrue( collector.getDependencies().isEmpty() );
+    }
+
+    public void testMatchesTypeOnAsmJar()
+        throws IOException
+    {
+        File asm = new File( ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath() );
+        final List<String> descs = new ArrayList<String>();
+        final List<String> methodDescs = new ArrayList<String>();
+
+        ZipFile zip = new ZipFile( asm );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.getName().endsWith( ".class" ) )
+                {
+                    InputStream in = zip.getInputStream( entry );
+                    try
+                    {
+                        new ClassReader( IOUtil.toByteArray( in ) ).accept( new ClassVisitor( Opcodes.ASM7 )
+                        {
+                            public FieldVisitor visitField( int access, String name, String desc, String signature,
+                                                            Object value )
+                            {
+                                descs.add( desc );
+                                return null;
+                            }
+
+                            public MethodVisitor visitMethod( int access, String name, String desc,
+                                                              String signature, String[] exceptions )
+                            {
+                                methodDescs.add( desc );
+                                return null;
+                            }
+                        }, ClassReader.SKIP_CODE );
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        assertFalse( descs.isEmpty() );
+        for ( String desc : descs )
+        {
+            Set<String> expected = new HashSet<String>();
+            addType( expected, Type.getType( desc ) );
+            assertDesc( desc, expected.toArray( new String[0] ) );
+        }
+
+        for ( String desc : methodDescs )
+        {
+            Set<String> expected = new HashSet<String>();
+            addType( expected, Type.getReturnType( desc ) );
+            for ( Type type : Type.getArgumentTypes( desc ) )
+            {
+                addType( expected, type );
+            }
+            assertMethodDesc( desc, expected.toArray( new String[0] ) );
+        }
+    }
+
+    // private methods --------------------------------------------------------
+
+    private static void assertDesc( String desc, String... classNames )
+    {
+        ResultCollector resultCollector = new ResultCollector();
+        resultCollector.addDesc( desc );
+
+        assertEquals( desc, classes( classNames ), resultCollector.getDependencies() );
+    }
+
+    private static void assertMethodDesc( String desc, String... classNames )
+    {
+        ResultCollector resultCollector = new ResultCollector();
+        resultCollector.addMethodDesc( desc );
+
+        assertEquals( desc, classes( classNames ), resultCollector.getDependencies() );
+    }
+
+    /**
+     * The classes ResultCollector used to add through ASM types.
+     */
+    private static void addType( Set<String> classes, Type type )
+    {
+        if ( type.getSort() == Type.ARRAY )
+        {
+            addType( classes, type.getElementType() );
+        }
+        else if ( type.getSort() == Type.OBJECT )
+        {
+            classes.add( type.getClassName() );
+        }
+    }
+
+    private static Set<String> classes( String... classNames )
+    {
+        Set<String> classes = new HashSet<String>();
+        for ( String className : classNames )
+        {
+            classes.add( className );
+        }
+        return classes;
+    }
+}
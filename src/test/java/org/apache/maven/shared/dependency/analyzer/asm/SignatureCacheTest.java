@@ -0,0 +1,79 @@
+package org.apache.maven.shared.dependency.analyzer.asm;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>SignatureCache</code>.
+ */
+public class SignatureCacheTest
+    extends TestCase
+{
+    // tests ------------------------------------------------------------------
+
+    public void testGetAndPut()
+    {
+        ScanStatistics statistics = new ScanStatistics();
+        SignatureCache cache = new SignatureCache( statistics );
+
+        assertNull( cache.get( SignatureCache.FIELD_DESCRIPTOR, "Lfoo/Bar;" ) );
+        int id = cache.getSymbols().intern( "foo.Bar" );
+        cache.put( SignatureCache.FIELD_DESCRIPTOR, "Lfoo/Bar;", new int[] { id } );
+        assertEquals( id, cache.get( SignatureCache.FIELD_DESCRIPTOR, "Lfoo/Bar;" )[0] );
+        assertEquals( "foo.Bar", cache.getSymbols().getName( id ) );
+        assertNull( cache.get( SignatureCache.FIELD_DESCRIPTOR, "I" ) );
+
+        assertEquals( 1, statistics.getSignatureCacheHitCount() );
+        assertEquals( 2, statistics.getSignatureCacheMissCount() );
+        assertEquals( 1.0 / 3, statistics.getSignatureCacheHitRate(), 1e-9 );
+    }
+
+    public void testKindsAreCachedSeparately()
+    {
+        SignatureCache cache = new SignatureCache( new ScanStatistics() );
+
+        // as a class signature, both types are read, as a type signature only the first one
+        String signature = "Lfoo/A;Lfoo/B;";
+        cache.put( SignatureCache.SIGNATURE, signature, new int[] { 0, 1 } );
+
+        assertNull( cache.get( SignatureCache.TYPE_SIGNATURE, signature ) );
+        assertEquals( 2, cache.get( SignatureCache.SIGNATURE, signature ).length );
+    }
+
+    public void testCapacity()
+    {
+        SignatureCache cache = new SignatureCache( 2, new ScanStatistics() );
+
+        cache.put( SignatureCache.FIELD_DESCRIPTOR, "La/A;", new int[] { 0 } );
+        cache.put( SignatureCache.FIELD_DESCRIPTOR, "La/A;", new int[] { 0 } );
+        cache.put( SignatureCache.METHOD_DESCRIPTOR, "()V", new int[0] );
+        cache.put( SignatureCache.FIELD_DESCRIPTOR, "Lb/B;", new int[] { 1 } );
+
+        assertEquals( 2, cache.size() );
+        assertNotNull( cache.get( SignatureCache.METHOD_DESCRIPTOR, "()V" ) );
+        assertNull( cache.get( SignatureCache.FIELD_DESCRIPTOR, "Lb/B;" ) );
+    }
+
+    public void testNoLookup()
+    {
+        assertEquals( 0.0, new ScanStatistics().getSignatureCacheHitRate(), 0 );
+    }
+}